@@ -14,3 +14,9 @@ for G in graph vertx activemq-rpc utils-zero zkBasedInit coordworkers; do
 	popd
 done
 
+# benchmarks are only compiled, against the vertx module installed above; run them with: gradle jmh
+if [ "$ACTION" = install ]; then
+	pushd vertx-jmh
+	gradle jmhJar
+	popd
+fi
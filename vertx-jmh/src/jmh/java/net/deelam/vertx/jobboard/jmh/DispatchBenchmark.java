@@ -0,0 +1,66 @@
+package net.deelam.vertx.jobboard.jmh;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures jobs/sec through JobBoard with queueDepth jobs kept in the system:
+ * each operation waits for a job to complete and then adds another job.
+ * Run with -prof gc to report allocation per job (gc.alloc.rate.norm).
+ * StartLatencyBenchmark reports add-to-start latency percentiles for a given queueDepth.
+ *
+ * The default params keep a run to 16 trials.  Deeper queues and larger payloads are set with JMH's -p option,
+ * e.g., -p queueDepth=1000000 -p payloadBytes=0, or -p queueDepth=1000 -p payloadBytes=65536;
+ * queueDepth * payloadBytes must fit in the heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DispatchBenchmark {
+
+  @Param({"1000", "100000"})
+  int queueDepth;
+
+  @Param({"1", "16"})
+  int workers;
+
+  @Param({"0", "1024"})
+  int payloadBytes;
+
+  @Param({"false", "true"})
+  boolean pushAssignment;
+
+  private JobBoardFixture fixture;
+  private byte[] payload;
+  private final Semaphore completions = new Semaphore(0);
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    payload = new byte[payloadBytes];
+    fixture = new JobBoardFixture(workers, pushAssignment, job -> {}, job -> completions.release());
+    for (int i = 0; i < queueDepth; ++i)
+      fixture.addJob(payload, false);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    fixture.close();
+  }
+
+  @Benchmark
+  public void dispatchJob() throws InterruptedException {
+    completions.acquire();
+    fixture.addJob(payload, false);
+  }
+}
@@ -0,0 +1,97 @@
+package net.deelam.vertx.jobboard.jmh;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Verticle;
+import io.vertx.core.Vertx;
+import net.deelam.vertx.jobboard.JobBoard;
+import net.deelam.vertx.jobboard.JobConsumer;
+import net.deelam.vertx.jobboard.JobDTO;
+import net.deelam.vertx.jobboard.JobProducer;
+
+/**
+ * Runs a JobBoard, a JobProducer, and several JobConsumers in a local Vertx instance.
+ * Completed jobs are removed from the JobBoard so that long runs don't accumulate DONE jobs.
+ */
+class JobBoardFixture {
+  static final String JOB_TYPE = "benchJob";
+
+  /**
+   * JobDTO request that marks the jobs whose start a benchmark waits for.
+   */
+  public static class BenchRequest {
+    public boolean timed;
+    public byte[] payload;
+  }
+
+  private static final int MAX_UNACKED_ADDS = 1000;
+
+  final Vertx vertx = Vertx.vertx();
+  final JobProducer producer;
+  private final Semaphore unackedAdds = new Semaphore(MAX_UNACKED_ADDS);
+  private final AtomicLong jobCounter = new AtomicLong();
+
+  /**
+   * @param startedListener called on the worker's thread with each job added with timed=true
+   * @param completedListener called on the producer's event-loop with each completed job
+   */
+  JobBoardFixture(int workers, boolean pushAssignment, Consumer<JobDTO> startedListener,
+      Consumer<JobDTO> completedListener) throws Exception {
+    String serviceType = "jmh-" + System.nanoTime();
+    JobBoard board = new JobBoard(serviceType, serviceType + "-board");
+    deploy(board, new DeploymentOptions());
+
+    for (int i = 0; i < workers; ++i) {
+      JobConsumer consumer = new JobConsumer(serviceType, JOB_TYPE);
+      consumer.setPushAssignment(pushAssignment);
+      consumer.setWorker(job -> {
+        if (((BenchRequest) job.getRequest()).timed)
+          startedListener.accept(job);
+        return true;
+      });
+      deploy(consumer, new DeploymentOptions().setWorker(true));
+    }
+
+    producer = new JobProducer(serviceType);
+    deploy(producer, new DeploymentOptions());
+    producer.getJobBoardPrefix(); // wait for JobBoard
+    producer.setAddJobReplyHandler(reply -> unackedAdds.release());
+    producer.addJobCompletionHandler(msg -> {
+      completedListener.accept(msg.body());
+      producer.removeJob(msg.body().getId(), null);
+    });
+  }
+
+  private void deploy(Verticle verticle, DeploymentOptions options) throws Exception {
+    CompletableFuture<String> deployed = new CompletableFuture<>();
+    vertx.deployVerticle(verticle, options, res -> {
+      if (res.succeeded())
+        deployed.complete(res.result());
+      else
+        deployed.completeExceptionally(res.cause());
+    });
+    deployed.get(30, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Blocks if too many added jobs have not been acknowledged by the JobBoard.
+   */
+  void addJob(byte[] payload, boolean timed) throws InterruptedException {
+    unackedAdds.acquire();
+    BenchRequest request = new BenchRequest();
+    request.payload = payload;
+    request.timed = timed;
+    producer.addJob(new JobDTO("job" + jobCounter.incrementAndGet(), JOB_TYPE, request));
+  }
+
+  void close() throws Exception {
+    CompletableFuture<Void> closed = new CompletableFuture<>();
+    vertx.close(res -> closed.complete(null));
+    closed.get(30, TimeUnit.SECONDS);
+  }
+}
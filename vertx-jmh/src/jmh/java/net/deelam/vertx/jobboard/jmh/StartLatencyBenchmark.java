@@ -0,0 +1,73 @@
+package net.deelam.vertx.jobboard.jmh;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the time from adding a job to a worker starting it, with queueDepth other jobs added before it.
+ * With queueDepth=0, this is the JobBoard's dispatch overhead.  JMH reports p50 and p99 in SampleTime mode.
+ * Jobs that complete are replaced before each operation, so each timed job is added behind queueDepth jobs.
+ * Each operation then takes about queueDepth / (jobs/sec of DispatchBenchmark), so deeper queues need
+ * longer iterations (JMH's -r option) for enough samples.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StartLatencyBenchmark {
+
+  @Param({"0", "100"})
+  int queueDepth;
+
+  @Param({"1", "4", "16"})
+  int workers;
+
+  @Param({"0", "1024", "65536"})
+  int payloadBytes;
+
+  @Param({"false", "true"})
+  boolean pushAssignment;
+
+  private JobBoardFixture fixture;
+  private byte[] payload;
+  private final Semaphore started = new Semaphore(0);
+  private final Semaphore completions = new Semaphore(0);
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    payload = new byte[payloadBytes];
+    fixture = new JobBoardFixture(workers, pushAssignment, job -> started.release(),
+        job -> completions.release());
+    for (int i = 0; i < queueDepth; ++i)
+      fixture.addJob(payload, false);
+    completions.release(); // no previous job
+  }
+
+  @Setup(Level.Invocation)
+  public void refillQueue() throws InterruptedException {
+    completions.acquire(); // for the previous timed job, or a job ahead of it, to complete
+    for (int i = completions.drainPermits(); i > 0; --i)
+      fixture.addJob(payload, false);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    fixture.close();
+  }
+
+  @Benchmark
+  public void addToStart() throws InterruptedException {
+    fixture.addJob(payload, true);
+    started.acquire();
+  }
+}
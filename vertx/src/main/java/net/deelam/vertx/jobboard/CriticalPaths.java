@@ -0,0 +1,115 @@
+package net.deelam.vertx.jobboard;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Estimates, for each job in a DepJobGraph, the runtime of the longest path from the job through the jobs that
+ * depend on it, i.e., how long the job's descendants will take to finish after it starts, with unlimited workers.
+ * A job's runtime is estimated as an exponentially weighted moving average of runtimes of its job type, or
+ * the mean estimate of all job types if its type has no runtimes.
+ *
+ * Path lengths are computed with an iterative depth-first search and reused until a job or input is added to
+ * the graph, or a job type's estimate changes by more than REESTIMATE_RATIO.  DepJobService rejects cycles,
+ * but should one exist, the edge that closes it is ignored rather than followed forever.
+ *
+ * Not thread-safe; DepJobService serializes all access.
+ */
+class CriticalPaths {
+  private static final double SMOOTHING = 0.2; // weight of the latest runtime
+  private static final double REESTIMATE_RATIO = 0.2;
+
+  private final DepJobGraph graph;
+
+  // estimated runtime of each job type, and the estimate when path lengths were last computed
+  private final Map<String, double[]> estimates = new HashMap<>();
+  private double defaultEstimate = 1;
+  private boolean estimatesChanged = false;
+
+  private int version = 0; // incremented when computed path lengths are discarded
+  private int graphModCount = -1;
+  private long[] pathMillis = new long[0];
+  private int[] pathVersions = new int[0]; // version when pathMillis was computed
+  private int[] stack = new int[16];
+  private int[] stackOutputs = new int[16]; // index of the next output to visit
+  private final BitSet onStack = new BitSet();
+
+  CriticalPaths(DepJobGraph graph) {
+    this.graph = graph;
+  }
+
+  void recordRuntime(String jobType, long runMillis) {
+    double[] estimate = estimates.get(jobType);
+    if (estimate == null) {
+      estimates.put(jobType, new double[] {runMillis, runMillis});
+      estimatesChanged = true;
+    } else {
+      estimate[0] += SMOOTHING * (runMillis - estimate[0]);
+      if (Math.abs(estimate[0] - estimate[1]) > REESTIMATE_RATIO * estimate[1])
+        estimatesChanged = true;
+    }
+    if (estimatesChanged)
+      defaultEstimate = estimates.values().stream().mapToDouble(e -> e[0]).average().orElse(1);
+  }
+
+  long estimatedRuntime(String jobType) {
+    double[] estimate = estimates.get(jobType);
+    return Math.round((estimate == null) ? defaultEstimate : estimate[1]);
+  }
+
+  /**
+   * @return estimated runtime of the job plus that of the longest path of jobs depending on it
+   */
+  long pathMillis(int job) {
+    if (estimatesChanged || graphModCount != graph.modCount()) {
+      ++version;
+      graphModCount = graph.modCount();
+      if (estimatesChanged) {
+        estimates.values().forEach(e -> e[1] = e[0]);
+        estimatesChanged = false;
+      }
+      if (pathMillis.length < graph.size()) {
+        int capacity = Math.max(graph.size(), pathMillis.length * 2);
+        pathMillis = Arrays.copyOf(pathMillis, capacity);
+        pathVersions = Arrays.copyOf(pathVersions, capacity);
+      }
+    }
+    if (pathVersions[job] == version)
+      return pathMillis[job];
+
+    // post-order traversal; a job's outputs are computed before the job
+    int depth = 0;
+    stack[0] = job;
+    stackOutputs[0] = 0;
+    onStack.set(job);
+    while (depth >= 0) {
+      int top = stack[depth];
+      if (stackOutputs[depth] < graph.outputCount(top)) {
+        int outJob = graph.output(top, stackOutputs[depth]++);
+        if (pathVersions[outJob] != version && !onStack.get(outJob)) {
+          if (++depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+            stackOutputs = Arrays.copyOf(stackOutputs, depth * 2);
+          }
+          stack[depth] = outJob;
+          stackOutputs[depth] = 0;
+          onStack.set(outJob);
+        }
+      } else {
+        long longest = 0;
+        for (int i = 0; i < graph.outputCount(top); ++i) {
+          int outJob = graph.output(top, i);
+          if (pathVersions[outJob] == version) // i.e., not an edge back to a job on the stack
+            longest = Math.max(longest, pathMillis[outJob]);
+        }
+        pathMillis[top] = estimatedRuntime(graph.getType(top)) + longest;
+        pathVersions[top] = version;
+        onStack.clear(top);
+        --depth;
+      }
+    }
+    return pathMillis[job];
+  }
+}
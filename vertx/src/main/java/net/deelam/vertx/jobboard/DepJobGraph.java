@@ -0,0 +1,207 @@
+package net.deelam.vertx.jobboard;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.deelam.vertx.jobboard.DepJobFrame.STATE;
+
+/**
+ * Dependency graph of DepJobService's jobs, held in arrays indexed by the order in which jobs were added.
+ * Each job keeps a count of its inputs that are not DONE, updated whenever an input enters or leaves DONE,
+ * so whether a job is ready is known without visiting its inputs.
+ *
+ * Not thread-safe; DepJobService serializes all access.
+ */
+class DepJobGraph {
+  private static final STATE[] STATES = STATE.values();
+  private static final byte UNSUBMITTED = -1;
+  private static final int[] NONE = new int[0];
+
+  /**
+   * Notified after each change, e.g., to persist the graph.
+   */
+  interface Listener {
+    void jobAdded(String jobId, boolean updatable, int order);
+
+    void inputAdded(String jobId, String inJobId);
+
+    void stateChanged(String jobId, STATE state);
+
+    void orderChanged(String jobId, int order);
+  }
+
+  private final Map<String, Integer> indices = new HashMap<>();
+  private String[] ids = new String[16];
+  private String[] types = new String[16];
+  private byte[] states = new byte[16];
+  private boolean[] updatables = new boolean[16];
+  private int[] orders = new int[16];
+  private int[] unmetInputs = new int[16]; // number of inputs that are not DONE
+  private int[][] inputs = new int[16][];
+  private int[] inputCounts = new int[16];
+  private int[][] outputs = new int[16][];
+  private int[] outputCounts = new int[16];
+  private int size = 0;
+  private int modCount = 0; // incremented when a job or input is added
+
+  private Listener listener;
+
+  void setListener(Listener listener) {
+    this.listener = listener;
+  }
+
+  int size() {
+    return size;
+  }
+
+  int modCount() {
+    return modCount;
+  }
+
+  /**
+   * @return index of the new job, which starts unsubmitted (i.e., with a null state)
+   */
+  int add(String jobId, String jobType, boolean updatable, int order) {
+    checkArgument(!indices.containsKey(jobId), "Job with id already exists: %s", jobId);
+    if (size == ids.length)
+      grow();
+    int job = size++;
+    indices.put(jobId, job);
+    ids[job] = jobId;
+    types[job] = jobType;
+    states[job] = UNSUBMITTED;
+    updatables[job] = updatable;
+    orders[job] = order;
+    inputs[job] = NONE;
+    outputs[job] = NONE;
+    ++modCount;
+    if (listener != null)
+      listener.jobAdded(jobId, updatable, order);
+    return job;
+  }
+
+  private void grow() {
+    int capacity = ids.length * 2;
+    ids = Arrays.copyOf(ids, capacity);
+    types = Arrays.copyOf(types, capacity);
+    states = Arrays.copyOf(states, capacity);
+    updatables = Arrays.copyOf(updatables, capacity);
+    orders = Arrays.copyOf(orders, capacity);
+    unmetInputs = Arrays.copyOf(unmetInputs, capacity);
+    inputs = Arrays.copyOf(inputs, capacity);
+    inputCounts = Arrays.copyOf(inputCounts, capacity);
+    outputs = Arrays.copyOf(outputs, capacity);
+    outputCounts = Arrays.copyOf(outputCounts, capacity);
+  }
+
+  /**
+   * @return index of the job, or -1 if unknown
+   */
+  int indexOf(String jobId) {
+    Integer job = indices.get(jobId);
+    return (job == null) ? -1 : job;
+  }
+
+  String getId(int job) {
+    return ids[job];
+  }
+
+  String getType(int job) {
+    return types[job];
+  }
+
+  /**
+   * @return false if inJob already feeds job
+   */
+  boolean addInput(int job, int inJob) {
+    // scan the shorter list, so that adding many inputs to a job (or outputs to an input) isn't quadratic
+    if (inputCounts[job] <= outputCounts[inJob]) {
+      if (contains(inputs[job], inputCounts[job], inJob))
+        return false;
+    } else if (contains(outputs[inJob], outputCounts[inJob], job)) {
+      return false;
+    }
+    inputs[job] = append(inputs[job], inputCounts[job]++, inJob);
+    outputs[inJob] = append(outputs[inJob], outputCounts[inJob]++, job);
+    if (states[inJob] != STATE.DONE.ordinal())
+      ++unmetInputs[job];
+    ++modCount;
+    if (listener != null)
+      listener.inputAdded(ids[job], ids[inJob]);
+    return true;
+  }
+
+  private static boolean contains(int[] array, int count, int value) {
+    for (int i = 0; i < count; ++i)
+      if (array[i] == value)
+        return true;
+    return false;
+  }
+
+  private static int[] append(int[] array, int count, int value) {
+    if (count == array.length)
+      array = Arrays.copyOf(array, Math.max(4, count * 2));
+    array[count] = value;
+    return array;
+  }
+
+  int inputCount(int job) {
+    return inputCounts[job];
+  }
+
+  int input(int job, int i) {
+    return inputs[job][i];
+  }
+
+  int outputCount(int job) {
+    return outputCounts[job];
+  }
+
+  int output(int job, int i) {
+    return outputs[job][i];
+  }
+
+  /**
+   * @return null if the job hasn't been submitted
+   */
+  STATE getState(int job) {
+    return (states[job] == UNSUBMITTED) ? null : STATES[states[job]];
+  }
+
+  void setState(int job, STATE state) {
+    boolean wasDone = states[job] == STATE.DONE.ordinal();
+    states[job] = (state == null) ? UNSUBMITTED : (byte) state.ordinal();
+    boolean isDone = state == STATE.DONE;
+    if (wasDone != isDone) {
+      int delta = isDone ? -1 : 1;
+      for (int i = 0; i < outputCounts[job]; ++i)
+        unmetInputs[outputs[job][i]] += delta;
+    }
+    if (listener != null)
+      listener.stateChanged(ids[job], state);
+  }
+
+  /**
+   * @return whether all of the job's inputs are DONE
+   */
+  boolean isReady(int job) {
+    return unmetInputs[job] == 0;
+  }
+
+  boolean isUpdatable(int job) {
+    return updatables[job];
+  }
+
+  int getOrder(int job) {
+    return orders[job];
+  }
+
+  void setOrder(int job, int order) {
+    orders[job] = order;
+    if (listener != null)
+      listener.orderChanged(ids[job], order);
+  }
+}
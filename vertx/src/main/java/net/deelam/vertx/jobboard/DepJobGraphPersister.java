@@ -0,0 +1,120 @@
+package net.deelam.vertx.jobboard;
+
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.util.wrappers.id.IdGraph;
+import com.tinkerpop.frames.FramedTransactionalGraph;
+
+import lombok.extern.slf4j.Slf4j;
+import net.deelam.graph.FramedGrafSupplier;
+import net.deelam.graph.GrafTxn;
+import net.deelam.vertx.jobboard.DepJobFrame.STATE;
+
+/**
+ * Copies changes to a DepJobGraph into a Blueprints graph as DepJobFrame vertices, on a separate thread
+ * so that DepJobService doesn't wait for graph transactions.  Changes are written in the order they were made;
+ * changes made while the previous ones were being written are written together in one transaction.
+ * Jobs already in the graph, e.g., from a previous run, are updated rather than added.
+ */
+@Slf4j
+class DepJobGraphPersister implements DepJobGraph.Listener {
+  private final FramedTransactionalGraph<TransactionalGraph> graph;
+  private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+    Thread t = new Thread(r, "DepJobGraphPersister");
+    t.setDaemon(true);
+    return t;
+  });
+
+  DepJobGraphPersister(IdGraph<?> dependencyGraph) {
+    Class<?>[] typedClasses = {DepJobFrame.class};
+    FramedGrafSupplier provider = new FramedGrafSupplier(typedClasses);
+    graph = provider.get(dependencyGraph);
+  }
+
+  private final Queue<Runnable> changes = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean flushQueued = new AtomicBoolean();
+  // jobs whose vertex already had input edges, e.g., from a previous run; only accessed by the executor
+  private final Set<String> jobsWithOldInputs = new HashSet<>();
+
+  private void write(String jobId, Consumer<DepJobFrame> op) {
+    changes.add(() -> {
+      try {
+        DepJobFrame jobV = graph.getVertex(jobId, DepJobFrame.class);
+        if (jobV == null)
+          jobV = graph.addVertex(jobId, DepJobFrame.class);
+        op.accept(jobV);
+      } catch (RuntimeException e) {
+        log.error("Could not persist change to job=" + jobId, e);
+      }
+    });
+    if (flushQueued.compareAndSet(false, true))
+      executor.execute(this::flush);
+  }
+
+  private void flush() {
+    flushQueued.set(false); // changes added from now on are written by the next flush
+    try {
+      GrafTxn.tryOn(graph, () -> {
+        for (Runnable change = changes.poll(); change != null; change = changes.poll())
+          change.run();
+      });
+    } catch (RuntimeException e) {
+      log.error("Could not persist changes to dependency graph", e);
+    }
+  }
+
+  @Override
+  public void jobAdded(String jobId, boolean updatable, int order) {
+    write(jobId, jobV -> {
+      if (jobV.getInputJobs().iterator().hasNext())
+        jobsWithOldInputs.add(jobId);
+      jobV.setUpdatable(updatable);
+      jobV.setOrder(order);
+    });
+  }
+
+  @Override
+  public void inputAdded(String jobId, String inJobId) {
+    write(jobId, jobV -> {
+      DepJobFrame inputJobV = graph.getVertex(inJobId, DepJobFrame.class);
+      if (jobsWithOldInputs.contains(jobId)) // DepJobGraph only reports new edges
+        for (DepJobFrame inV : jobV.getInputJobs())
+          if (inV.equals(inputJobV))
+            return;
+      jobV.addInputJob(inputJobV);
+    });
+  }
+
+  @Override
+  public void stateChanged(String jobId, STATE state) {
+    write(jobId, jobV -> jobV.setState(state));
+  }
+
+  @Override
+  public void orderChanged(String jobId, int order) {
+    write(jobId, jobV -> jobV.setOrder(order));
+  }
+
+  /**
+   * Waits for queued changes to be written, then shuts down the graph.
+   */
+  void close() {
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(1, TimeUnit.MINUTES))
+        log.warn("Timed out persisting changes to dependency graph");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    graph.shutdown();
+  }
+}
@@ -1,48 +1,70 @@
 package net.deelam.vertx.jobboard;
 
-import static com.google.common.base.Preconditions.checkNotNull;
-import static net.deelam.graph.GrafTxn.begin;
-import static net.deelam.graph.GrafTxn.commit;
-import static net.deelam.graph.GrafTxn.rollback;
+import static com.google.common.base.Preconditions.checkArgument;
+import static net.deelam.vertx.jobboard.SerialInbox.await;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
-import com.google.common.collect.Iterables;
-import com.tinkerpop.blueprints.Element;
-import com.tinkerpop.blueprints.TransactionalGraph;
-import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.util.wrappers.id.IdGraph;
-import com.tinkerpop.frames.FramedTransactionalGraph;
 
 import io.vertx.core.eventbus.Message;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import net.deelam.graph.FramedGrafSupplier;
-import net.deelam.graph.GrafTxn;
 import net.deelam.vertx.jobboard.DepJobFrame.STATE;
-
-
+import net.deelam.vertx.jobboard.JobBoard.JobItem.JobState;
+import net.deelam.vertx.jobboard.JobUpdatesDTO.JobUpdate;
+
+
+/**
+ * Submits jobs to a JobBoard once the jobs they depend on are DONE.
+ * The dependency graph is held in memory by a DepJobGraph; if a Blueprints graph is given,
+ * changes are also copied into it asynchronously.
+ *
+ * A submitted job becomes PROCESSING when the JobBoard reports that a worker has started it.
+ *
+ * Changes to the graph are made by a SerialInbox, one at a time, rather than under a lock,
+ * so job completions from the JobBoard and calls from other threads don't block one another.
+ * Methods that return a CompletableFuture don't wait for the change to be made.
+ */
 @Slf4j
 public class DepJobService implements DepJobService_I {
 
-  private final FramedTransactionalGraph<TransactionalGraph> graph;
+  private final DepJobGraph graph = new DepJobGraph();
+  private final CriticalPaths criticalPaths = new CriticalPaths(graph);
+  private boolean prioritizeCriticalPaths = false;
+  private final DepJobGraphPersister persister;
+  private final SerialInbox inbox = new SerialInbox();
   
   private final Supplier<JobProducer> jobProdS;
   
   @Getter(lazy=true)
   private final JobProducer jobProducer=getJobProducerWithMsgHandlers();
  
+  // jobId -> latest update from the JobBoard for submitted jobs, for queryJobStats()
+  private final Map<String, JobUpdate> jobBoardUpdates = new HashMap<>();
+  // submitted jobs whose JobBoard updates are still needed
+  private final Set<String> subscribedJobs = new HashSet<>();
+  private String subscriberAddr; // of the subscription that is extended with each submitted job
+
   boolean removeOnCompletion = true;
   boolean removeOnFailure = false;
   
@@ -54,39 +76,67 @@ public class DepJobService implements DepJobService_I {
       String jobId = msg.body().getId();
       if (removeOnCompletion)
         jobProducer.removeJob(jobId, null);
-      DepJobFrame jobV = graph.getVertex(jobId, DepJobFrame.class);
-      //log.debug("all jobs: {}", this);
-      jobDone(jobV);
-      if(log.isDebugEnabled())
-        log.debug("Done jobId={} \n {}", jobId, toStringRemainingJobs(DepJobFrame.STATE_PROPKEY));
+      long runMillis = JobBoard.getJobRunMillis(msg);
+      inbox.tell(() -> {
+        if (runMillis >= 0)
+          criticalPaths.recordRuntime(msg.body().getType(), runMillis);
+        //log.debug("all jobs: {}", this);
+        jobDone(jobId);
+        if(log.isDebugEnabled())
+          log.debug("Done jobId={} \n {}", jobId, toStringRemainingJobs(DepJobFrame.STATE_PROPKEY));
+      });
     });
     jobProducer.addJobFailureHandler((Message<JobDTO> msg) -> {
       log.warn("DISPATCHER: Job failed: {}", msg.body());
       String jobId = msg.body().getId();
       if (removeOnFailure)
         jobProducer.removeJob(jobId, null);
-      cancelJobsDependentOn(jobId, null);
-      DepJobFrame jobV = graph.getVertex(jobId, DepJobFrame.class);
-      //log.debug("all jobs: {}", this);
-      jobFailed(jobV);
-      if(log.isDebugEnabled())
-        log.debug("Failed jobId={} \n {}", jobId, toStringRemainingJobs(DepJobFrame.STATE_PROPKEY));
+      inbox.tell(() -> {
+        cancelJobsDependentOn(jobId, null);
+        //log.debug("all jobs: {}", this);
+        jobFailed(jobId);
+        if(log.isDebugEnabled())
+          log.debug("Failed jobId={} \n {}", jobId, toStringRemainingJobs(DepJobFrame.STATE_PROPKEY));
+      });
     });
     return jobProducer;
   }
     
+  public DepJobService(Supplier<JobProducer> jobProdS) {
+    this(null, jobProdS);
+  }
+
+  /**
+   * @param dependencyGraph where the dependency graph is persisted; may be null
+   */
   public DepJobService(IdGraph<?> dependencyGraph, Supplier<JobProducer> jobProdS) {
-    Class<?>[] typedClasses = {DepJobFrame.class};
-    FramedGrafSupplier provider = new FramedGrafSupplier(typedClasses);
-    graph = provider.get(dependencyGraph);
+    if (dependencyGraph == null) {
+      persister = null;
+    } else {
+      persister = new DepJobGraphPersister(dependencyGraph);
+      graph.setListener(persister);
+    }
     this.jobProdS=jobProdS;
   }
 
-  public synchronized void close() {
-    synchronized (graph) {
+  /**
+   * Submits each job with JobDTO.priority set to the estimated runtime of the longest path (in milliseconds)
+   * through the job and the jobs that depend on it, so jobs on the critical path of a DAG are offered first.
+   * Runtimes are estimated per job type from completed jobs.
+   */
+  public void prioritizeCriticalPaths() {
+    inbox.tell(() -> prioritizeCriticalPaths = true);
+  }
+
+  public void close() {
+    await(inbox.ask(() -> {
       log.info("Closing {}", this);
-      graph.shutdown();
-    }
+      if (subscriberAddr != null)
+        getJobProducer().unsubscribe(subscriberAddr);
+      if (persister != null)
+        persister.close();
+      return null;
+    }));
   }
 
   @Getter
@@ -105,110 +155,196 @@ public class DepJobService implements DepJobService_I {
   }
 
   public String toStringRemainingJobs(String... propsToPrint) {
-    StringBuilder sb = new StringBuilder("Incomplete jobs:\n");
-    GrafTxn.tryOn(graph, () -> {
+    return await(inbox.ask(() -> {
+      StringBuilder sb = new StringBuilder("Incomplete jobs:\n");
       int nodeCount = 0;
-      //log.info(GraphUtils.toString(graph, 100, "state", "order"));
-      for (DepJobFrame jobV : graph.getVertices(DepJobFrame.TYPE_KEY, DepJobFrame.TYPE_VALUE,
-          DepJobFrame.class)) {
-        if (jobV.getState() != STATE.DONE) {
+      for (int job = 0; job < graph.size(); ++job) {
+        if (graph.getState(job) != STATE.DONE) {
           ++nodeCount;
-          Vertex n = jobV.asVertex();
-          sb.append("  ").append(n.getId()).append(": ");
-          sb.append(n.getPropertyKeys()).append("\n");
-          if (propsToPrint != null && propsToPrint.length > 0) {
-            String propValuesStr = toString(n, "\n    ", propsToPrint);
-            if (propValuesStr.length() > 0)
-              sb.append("    ").append(propValuesStr).append("\n");
-          }
+          sb.append("  ").append(graph.getId(job)).append(": ");
+          sb.append(toString(job, ", ", propsToPrint)).append("\n");
         }
       }
       sb.append(" (").append(nodeCount).append(" incomplete jobs)");
-    });
-    return (sb.toString());
+      return (sb.toString());
+    }));
   }
 
-  private static String toString(Element n, String delim, String... propsToPrint) {
+  private String toString(int job, String delim, String... propsToPrint) {
     StringBuilder sb = new StringBuilder();
-    if (propsToPrint != null) {
-      if (propsToPrint.length == 0) {
-        propsToPrint = (String[]) n.getPropertyKeys().toArray(propsToPrint);
-      }
-      boolean first = true;
-      for (String propKey : propsToPrint) {
-        if (n.getProperty(propKey) != null) {
-          if (first) {
-            first = false;
-          } else {
-            sb.append(delim);
-          }
-          sb.append(propKey).append("=").append(n.getProperty(propKey).toString());
-        }
-      }
-    }
+    boolean all = propsToPrint == null || propsToPrint.length == 0;
+    if (all || Arrays.asList(propsToPrint).contains(DepJobFrame.STATE_PROPKEY))
+      sb.append(DepJobFrame.STATE_PROPKEY).append("=").append(graph.getState(job));
+    if (all || Arrays.asList(propsToPrint).contains("order"))
+      sb.append(sb.length() > 0 ? delim : "").append("order=").append(graph.getOrder(job));
     return sb.toString();
   }
 
+
   public int counter = 0;
 
-  public synchronized CompletableFuture<Boolean> addJob(JobDTO job) {
+  public CompletableFuture<Boolean> addJob(JobDTO job) {
     return addJob(true, job);
   }
-  public synchronized CompletableFuture<Boolean> addDepJob(JobDTO job, String[] inJobIds) {
+  public CompletableFuture<Boolean> addDepJob(JobDTO job, String[] inJobIds) {
     return addJob(true, job, inJobIds);
   }
 
-  public synchronized CompletableFuture<Boolean> addJob(boolean addToQueue, JobDTO job, String... inJobIds) {
-    String jobId = job.getId();
-    log.info("DISPATCHER: addJob: {}", jobId);
-    // add to graph
-    GrafTxn.tryOn(graph, () -> {
-      DepJobFrame jobV = graph.getVertex(jobId, DepJobFrame.class);
-      if (jobV == null) {
-        jobV = graph.addVertex(jobId, DepJobFrame.class);
-        //        jobV.setJobType(job.getJobType());
-        jobV.setUpdatable(job.isUpdatable());
-        jobV.setOrder(++counter);
-        graph.commit();
-      } else {
-        throw new IllegalArgumentException("Job with id already exists: " + jobId);
-      }
-      addDependentJobs(jobV, inJobIds);
+  /**
+   * @return completes when the job is added; fails with IllegalArgumentException if the job already exists
+   *     or an input job doesn't
+   */
+  public CompletableFuture<Boolean> addJob(boolean addToQueue, JobDTO job, String... inJobIds) {
+    return inbox.ask(() -> {
+      String jobId = job.getId();
+      log.info("DISPATCHER: addJob: {}", jobId);
+      checkArgument(graph.indexOf(jobId) < 0, "Job with id already exists: %s", jobId);
+      int[] inJobs = indicesOf(inJobIds);
+      int jobV = graph.add(jobId, job.getType(), job.isUpdatable(), ++counter);
+      addDependentJobs(jobV, inJobs);
 
       if (addToQueue)
         addToQueue(job, jobV);
       else
         unsubmittedJobs.put(jobId, job);
+      return true;
     });
-    return CompletableFuture.completedFuture(true);
   }
 
-  private void addToQueue(JobDTO job, DepJobFrame jobV) {
-    synchronized (graph) {
-      if (isJobReady(jobV)) {
-        log.info("DISPATCHER: Submitting jobId={}", jobV.getNodeId());
-        submitJob(jobV, job);
-      } else {
-        log.info("DISPATCHER: Input to job={} is not ready; setting state=WAITING.", job.getId());
-        putJobInWaitingArea(jobV, job);
+  /**
+   * Adds jobs and the dependencies among them at once, and submits the jobs that are ready
+   * in one JobProducer.addJobs() call.
+   * @param inJobIds jobId -> ids of the jobs it depends on, which are either in jobs or were added earlier
+   * @return completes when the jobs are added; fails with IllegalArgumentException, without adding any job,
+   *     if a job already exists, an input job doesn't, or the dependencies form a cycle
+   */
+  public CompletableFuture<Boolean> submitDag(Collection<JobDTO> jobs, Map<String, String[]> inJobIds) {
+    return inbox.ask(() -> {
+      log.info("DISPATCHER: submitDag: {} jobs", jobs.size());
+      Map<String, JobDTO> newJobs = new LinkedHashMap<>();
+      for (JobDTO job : jobs)
+        checkArgument(graph.indexOf(job.getId()) < 0 && newJobs.put(job.getId(), job) == null,
+            "Job with id already exists: %s", job.getId());
+      for (Entry<String, String[]> e : inJobIds.entrySet()) {
+        checkArgument(newJobs.containsKey(e.getKey()), "jobId=%s is not in jobs", e.getKey());
+        for (String inJobId : e.getValue())
+          checkArgument(newJobs.containsKey(inJobId) || graph.indexOf(inJobId) >= 0, "Unknown input jobId=%s",
+              inJobId);
       }
-    }
+      checkAcyclic(newJobs.keySet(), inJobIds);
+
+      int first = graph.size();
+      for (JobDTO job : newJobs.values())
+        graph.add(job.getId(), job.getType(), job.isUpdatable(), ++counter);
+      for (Entry<String, String[]> e : inJobIds.entrySet())
+        addDependentJobs(graph.indexOf(e.getKey()), indicesOf(e.getValue()));
+
+      List<Integer> readyJobs = new ArrayList<>();
+      for (int jobV = first; jobV < graph.size(); ++jobV) {
+        if (graph.isReady(jobV))
+          readyJobs.add(jobV);
+        else
+          markWaiting(jobV, newJobs.get(graph.getId(jobV)));
+      }
+      log.info("DISPATCHER: Submitting {} of {} jobs; {} jobs are waiting", readyJobs.size(), newJobs.size(),
+          waitingJobs.size());
+      submitJobs(readyJobs, newJobs);
+      return true;
+    });
   }
 
-  public synchronized Collection<String> listJobs(DepJobFrame.STATE state) {
-    Collection<String> col = new ArrayList<>();
-    GrafTxn.tryOn(graph, () -> {
-      if (state == null) {
-        for (Vertex v : graph.getVertices()) {
-          col.add((String) v.getId());
+  /**
+   * Checks that the dependencies among jobIds don't form a cycle by removing jobs whose inputs
+   * have been removed (Kahn's algorithm).  Jobs added earlier can't depend on jobIds, so they can't be in a cycle.
+   */
+  static void checkAcyclic(Set<String> jobIds, Map<String, String[]> inJobIds) {
+    Map<String, Integer> inputCounts = new HashMap<>();
+    Map<String, List<String>> outJobIds = new HashMap<>();
+    for (Entry<String, String[]> e : inJobIds.entrySet())
+      for (String inJobId : e.getValue())
+        if (jobIds.contains(inJobId)) {
+          inputCounts.merge(e.getKey(), 1, Integer::sum);
+          outJobIds.computeIfAbsent(inJobId, k -> new ArrayList<>()).add(e.getKey());
         }
-      } else {
-        for (Vertex v : graph.getVertices(DepJobFrame.STATE_PROPKEY, state.name())) {
-          col.add((String) v.getId());
+    Deque<String> sources = new ArrayDeque<>();
+    for (String jobId : jobIds)
+      if (!inputCounts.containsKey(jobId))
+        sources.add(jobId);
+    int removed = 0;
+    while (!sources.isEmpty()) {
+      String jobId = sources.poll();
+      ++removed;
+      for (String outJobId : outJobIds.getOrDefault(jobId, Collections.emptyList()))
+        if (inputCounts.merge(outJobId, -1, Integer::sum) == 0)
+          sources.add(outJobId);
+    }
+    checkArgument(removed == jobIds.size(), "Dependencies among %s jobs form a cycle", jobIds.size() - removed);
+  }
+
+  /**
+   * Checks that making inJobs inputs to jobV doesn't form a cycle, i.e., that no inJob is jobV or downstream of it.
+   */
+  private void checkAcyclic(int jobV, int[] inJobs) {
+    BitSet inputs = new BitSet(graph.size());
+    for (int inJob : inJobs)
+      inputs.set(inJob);
+    BitSet visited = new BitSet(graph.size());
+    int[] queue = new int[16];
+    int head = 0, tail = 0;
+    queue[tail++] = jobV;
+    visited.set(jobV);
+    while (head < tail) {
+      int job = queue[head++];
+      checkArgument(!inputs.get(job), "Adding input jobId=%s to %s would form a cycle", graph.getId(job),
+          graph.getId(jobV));
+      for (int i = 0; i < graph.outputCount(job); ++i) {
+        int outV = graph.output(job, i);
+        if (!visited.get(outV)) {
+          visited.set(outV);
+          if (tail == queue.length)
+            queue = Arrays.copyOf(queue, tail * 2);
+          queue[tail++] = outV;
         }
       }
-    });
-    return col;
+    }
+  }
+
+  private int[] indicesOf(String... inJobIds) {
+    if (inJobIds == null)
+      return new int[0];
+    int[] inJobs = new int[inJobIds.length];
+    for (int i = 0; i < inJobIds.length; ++i) {
+      inJobs[i] = graph.indexOf(inJobIds[i]);
+      if (inJobs[i] < 0)
+        throw new IllegalArgumentException("Unknown input jobId=" + inJobIds[i]);
+    }
+    return inJobs;
+  }
+
+  private int indexOf(String jobId) {
+    int jobV = graph.indexOf(jobId);
+    checkArgument(jobV >= 0, "Cannot find %s", jobId);
+    return jobV;
+  }
+
+  private void addToQueue(JobDTO job, int jobV) {
+    if (graph.isReady(jobV)) {
+      log.info("DISPATCHER: Submitting jobId={}", job.getId());
+      submitJob(jobV, job);
+    } else {
+      log.info("DISPATCHER: Input to job={} is not ready; setting state=WAITING.", job.getId());
+      putJobInWaitingArea(jobV, job);
+    }
+  }
+
+  public Collection<String> listJobs(DepJobFrame.STATE state) {
+    return await(inbox.ask(() -> {
+      Collection<String> col = new ArrayList<>();
+      for (int job = 0; job < graph.size(); ++job)
+        if (state == null || graph.getState(job) == state)
+          col.add(graph.getId(job));
+      return col;
+    }));
   }
 
   /**
@@ -216,20 +352,20 @@ public class DepJobService implements DepJobService_I {
    * If job has been submitted, 
    * @param jobId
    */
-  public synchronized void reAddJob(String jobId) {
-    log.info("DISPATCHER: reAddJob: {}", jobId);
-    GrafTxn.tryOn(graph, () -> {
-      // add to graph
-      DepJobFrame jobV = graph.getVertex(jobId, DepJobFrame.class);
-      if (jobV == null) {
+  public void reAddJob(String jobId) {
+    await(inbox.ask(() -> {
+      log.info("DISPATCHER: reAddJob: {}", jobId);
+      int jobV = graph.indexOf(jobId);
+      if (jobV < 0) {
         throw new IllegalArgumentException("Job doesn't exist: " + jobId);
       }
 
       JobDTO job;
-      if (jobV.getState() == null)
+      STATE state = graph.getState(jobV);
+      if (state == null)
         job = unsubmittedJobs.get(jobId);
       else
-        switch (jobV.getState()) {
+        switch (state) {
           case CANCELLED:
           case DONE:
           case FAILED:
@@ -238,230 +374,282 @@ public class DepJobService implements DepJobService_I {
             job = submittedJobs.get(jobId);
             break;
           case WAITING:
-            jobV.setOrder(++counter);
+            graph.setOrder(jobV, ++counter);
             log.info("re-add job: {} is currently waiting; adjusting order to {}", jobId, counter);
-            return;
+            return null;
           case SUBMITTED:
           case PROCESSING:
           default:
-            throw new IllegalStateException("Cannot re-add job " + jobId + " with state=" + jobV.getState());
+            throw new IllegalStateException("Cannot re-add job " + jobId + " with state=" + state);
         }
 
       addToQueue(job, jobV);
-    });
+      return null;
+    }));
   }
 
-  public synchronized void addDependentJobs(String jobId, String... inJobIds) {
-    log.info("DISPATCHER: addDependentJobs jobId={}", jobId);
-    synchronized (graph) {
-      GrafTxn.tryOn(graph, () -> {
-        DepJobFrame jobV = graph.getVertex(jobId, DepJobFrame.class);
-        if (jobV == null) {
-          throw new IllegalArgumentException("Job with id does not exist: " + jobId);
-        } else {
-          if (jobV.getState() != null)
-            switch (jobV.getState()) {
-              case CANCELLED:
-              case DONE:
-              case FAILED:
-              case SUBMITTED:
-              case PROCESSING:
-                log.warn("Job={} in state={}; adding dependent jobs at this point may be ineffectual: {}", jobV,
-                    jobV.getState(), inJobIds);
-                break;
-              default:
-                // okay
-            }
-          //log.info("addInputJobs " + jobId);
-          addDependentJobs(jobV, inJobIds);
-        }
-      });
-    }
+  /**
+   * @throws IllegalArgumentException if a job doesn't exist or an input job depends on jobId
+   */
+  public void addDependentJobs(String jobId, String... inJobIds) {
+    await(inbox.ask(() -> {
+      log.info("DISPATCHER: addDependentJobs jobId={}", jobId);
+      int jobV = graph.indexOf(jobId);
+      if (jobV < 0) {
+        throw new IllegalArgumentException("Job with id does not exist: " + jobId);
+      } else {
+        STATE state = graph.getState(jobV);
+        if (state != null)
+          switch (state) {
+            case CANCELLED:
+            case DONE:
+            case FAILED:
+            case SUBMITTED:
+            case PROCESSING:
+              log.warn("Job={} in state={}; adding dependent jobs at this point may be ineffectual: {}", jobId,
+                  state, inJobIds);
+              break;
+            default:
+              // okay
+          }
+        //log.info("addInputJobs " + jobId);
+        int[] inJobs = indicesOf(inJobIds);
+        checkAcyclic(jobV, inJobs);
+        addDependentJobs(jobV, inJobs);
+      }
+      return null;
+    }));
   }
 
   public boolean hasJob(String jobId) {
-    return GrafTxn.tryOn(graph, (graph) -> {
-      Vertex inputJobV = graph.getVertex(jobId);
-      boolean exists = (inputJobV != null);
-      return exists;
-    });
+    return await(inbox.ask(() -> {
+      return graph.indexOf(jobId) >= 0;
+    }));
   }
 
-  private void addDependentJobs(DepJobFrame jobV, String... inJobIds) {
-    if (inJobIds != null) {
-      for (String inputJobId : inJobIds) {
-        DepJobFrame inputJobV = graph.getVertex(inputJobId, DepJobFrame.class);
-        if (inputJobV == null)
-          throw new IllegalArgumentException("Unknown input jobId=" + inputJobId);
-        if (!Iterables.contains(jobV.getInputJobs(), inputJobV))
-          jobV.addInputJob(inputJobV);
-      }
-      graph.commit();
-    }
+  private void addDependentJobs(int jobV, int[] inJobs) {
+    for (int inputJobV : inJobs)
+      graph.addInput(jobV, inputJobV);
   }
 
-  public synchronized boolean cancelJob(String jobId) {
-    log.info("DISPATCHER: cancelJob: {}", jobId);
-    return GrafTxn.tryOn(graph, (graph) -> {
-      DepJobFrame jobV = graph.getVertex(jobId, DepJobFrame.class);
-      if (jobV == null)
+  /**
+   * @return whether the job was cancelled; jobs that are PROCESSING or have ended are not cancelled
+   */
+  public boolean cancelJob(String jobId) {
+    return await(inbox.ask(() -> {
+      log.info("DISPATCHER: cancelJob: {}", jobId);
+      int jobV = graph.indexOf(jobId);
+      if (jobV < 0)
         throw new IllegalArgumentException("Unknown jobId=" + jobId);
-      if (jobV.getState() == null) {
-        unsubmittedJobs.remove(jobId);
-        setJobCancelled(jobV);
-      } else {
-        switch (jobV.getState()) {
-          case CANCELLED:
-          case FAILED:
-          case NEEDS_UPDATE:
-          case DONE:
-            log.info("Not cancelling {}. Job's current state={}", jobId, jobV.getState());
-            break;
-          case PROCESSING:
-            log.info("Not cancelling {}. Job's current state={}.  Ask jobProcessor to cancel job.", jobId,
-                jobV.getState());
-            break;
-          case WAITING:
-            waitingJobs.remove(jobV.getNodeId());
-            setJobCancelled(jobV);
-            break;
-          case SUBMITTED:
-            log.info("Attempting to cancel submitted job={}", jobId);
-            getJobProducer().removeJob(jobId, null); // may fail
-            submittedJobs.remove(jobId);
-            setJobCancelled(jobV);
-            break;
-        }
-      }
-      return true;
-    });
+      List<String> submittedJobIds = new ArrayList<>(1);
+      boolean cancelled = cancel(jobV, submittedJobIds);
+      if (!submittedJobIds.isEmpty())
+        getJobProducer().removeJob(jobId, null); // may fail
+      return cancelled;
+    }));
   }
 
-  private void setJobCancelled(DepJobFrame jobV) {
-    synchronized (graph) {
-      jobV.setState(STATE.CANCELLED);
-      log.info("Cancelled job={}", jobV);
-      graph.commit();
+  /**
+   * @param submittedJobIds to which the job's id is added if it should be removed from the JobBoard
+   */
+  private boolean cancel(int jobV, List<String> submittedJobIds) {
+    String jobId = graph.getId(jobV);
+    STATE state = graph.getState(jobV);
+    if (state == null) {
+      unsubmittedJobs.remove(jobId);
+    } else {
+      switch (state) {
+        case CANCELLED:
+        case FAILED:
+        case NEEDS_UPDATE:
+        case DONE:
+          log.info("Not cancelling {}. Job's current state={}", jobId, state);
+          return false;
+        case PROCESSING:
+          log.info("Not cancelling {}. Job's current state={}.  Ask jobProcessor to cancel job.", jobId, state);
+          return false;
+        case WAITING:
+          waitingJobs.remove(jobId);
+          break;
+        case SUBMITTED:
+          log.info("Attempting to cancel submitted job={}", jobId);
+          submittedJobs.remove(jobId);
+          submittedJobIds.add(jobId);
+          unsubscribeFromJob(jobId);
+          break;
+      }
     }
+    graph.setState(jobV, STATE.CANCELLED);
+    log.info("Cancelled job={}", jobId);
+    return true;
   }
 
+  /**
+   * Cancels all jobs downstream of jobId, visiting each once in breadth-first order.
+   * Cancelled jobs that were submitted are removed from the JobBoard in one JobProducer.removeJobs() call.
+   * @param canceledJobs to which ids of cancelled jobs are added; may be null
+   */
   public void cancelJobsDependentOn(String jobId, List<String> canceledJobs) {
-    log.info("DISPATCHER: cancelJobsDependentOn failedJob: {}", jobId);
-    GrafTxn.tryOn(graph, (graph) -> {
-      DepJobFrame jobV = graph.getVertex(jobId, DepJobFrame.class);
-      for (DepJobFrame outJ : jobV.getOutputJobs()) {
-        boolean cancelled = cancelJob(outJ.getNodeId());
-        if (canceledJobs != null && cancelled)
-          canceledJobs.add(outJ.getNodeId());
-        cancelJobsDependentOn(outJ.getNodeId(), canceledJobs);
+    await(inbox.ask(() -> {
+      log.info("DISPATCHER: cancelJobsDependentOn failedJob: {}", jobId);
+      int jobV = indexOf(jobId);
+      BitSet visited = new BitSet(graph.size());
+      int[] queue = new int[16];
+      int head = 0, tail = 0;
+      queue[tail++] = jobV;
+      visited.set(jobV);
+      List<String> submittedJobIds = new ArrayList<>();
+      int cancelledCount = 0;
+      while (head < tail) {
+        int job = queue[head++];
+        for (int i = 0; i < graph.outputCount(job); ++i) {
+          int outV = graph.output(job, i);
+          if (visited.get(outV))
+            continue;
+          visited.set(outV);
+          if (tail == queue.length)
+            queue = Arrays.copyOf(queue, tail * 2);
+          queue[tail++] = outV;
+          if (cancel(outV, submittedJobIds)) {
+            ++cancelledCount;
+            if (canceledJobs != null)
+              canceledJobs.add(graph.getId(outV));
+          }
+        }
       }
-    });
+      log.info("Cancelled {} of {} jobs dependent on {}", cancelledCount, tail - 1, jobId);
+      if (!submittedJobIds.isEmpty())
+        getJobProducer().removeJobs(submittedJobIds, null); // may partly fail
+      return null;
+    }));
   }
 
-  private void submitJob(DepJobFrame jobV, JobDTO job) {
-    synchronized (graph) {
-      log.debug("submitJob: {}", jobV);
-      jobV.setState(STATE.SUBMITTED);
-      graph.commit();
-    }
+  private void submitJob(int jobV, JobDTO job) {
+    markSubmitted(jobV, job);
+    getJobProducer().addJob(job);
+    subscribeToJobs(Collections.singletonList(job.getId()));
+  }
+
+  private void markSubmitted(int jobV, JobDTO job) {
+    if (prioritizeCriticalPaths)
+      job.setPriority((int) Math.min(criticalPaths.pathMillis(jobV), Integer.MAX_VALUE));
+    log.debug("submitJob: {} priority={}", job.getId(), job.getPriority());
+    graph.setState(jobV, STATE.SUBMITTED);
 
     //log.debug("----------------------  submitJob: {} {}", job.getClass(), job);
-    if (submittedJobs.containsKey(jobV.getNodeId())) {
+    if (submittedJobs.containsKey(job.getId())) {
       // NEEDED?: jobProd.removeJob(jobV.getNodeId(), null);
     }
-    submittedJobs.put(jobV.getNodeId(), job);
-    getJobProducer().addJob(job);
+    submittedJobs.put(job.getId(), job);
   }
 
-  public STATE getJobStatus(String jobId) {
-    return GrafTxn.tryOn(graph, (graph) -> {
-      DepJobFrame jobV = graph.getVertex(jobId, DepJobFrame.class);
-      checkNotNull(jobV, "Cannot find " + jobId);
-      return jobV.getState();
-    });
+  /**
+   * Submits jobs in one JobProducer.addJobs() call.
+   */
+  private void submitJobs(Collection<Integer> jobVs, Map<String, JobDTO> jobs) {
+    if (jobVs.isEmpty())
+      return;
+    List<JobDTO> toSubmit = new ArrayList<>(jobVs.size());
+    for (int jobV : jobVs) {
+      JobDTO job = jobs.remove(graph.getId(jobV));
+      markSubmitted(jobV, job);
+      toSubmit.add(job);
+    }
+    getJobProducer().addJobs(toSubmit);
+    subscribeToJobs(toSubmit.stream().map(JobDTO::getId).collect(Collectors.toList()));
+  }
+
+  /**
+   * Adds just-submitted jobs to this service's subscription to the JobBoard's updates, so that a job
+   * becomes PROCESSING once a worker starts it.  The subscription is opened with the first submitted jobs
+   * and extended with later ones; the JobBoard drops job ids from it as their jobs are removed.
+   */
+  private void subscribeToJobs(List<String> jobIds) {
+    subscribedJobs.addAll(jobIds);
+    if (subscriberAddr == null)
+      subscriberAddr = getJobProducer().subscribe(JobSubscriptionDTO.forJobIds(jobIds),
+          updates -> inbox.tell(() -> jobBoardUpdated(updates)));
+    else
+      getJobProducer().extendSubscription(subscriberAddr, jobIds);
+  }
+
+  private void jobBoardUpdated(JobUpdatesDTO updates) {
+    for (JobUpdate update : updates.getUpdates()) {
+      String jobId = update.getJobId();
+      if (!subscribedJobs.contains(jobId))
+        continue; // job has ended
+      String state = update.getState();
+      if (state.equals(JobState.DONE.name()) || state.equals(JobState.FAILED.name())
+          || state.equals(JobUpdatesDTO.REMOVED)) {
+        unsubscribeFromJob(jobId);
+        continue;
+      }
+      jobBoardUpdates.put(jobId, update);
+      int jobV = graph.indexOf(jobId);
+      if ((state.equals(JobState.STARTED.name()) || state.equals(JobState.PROGRESSING.name()))
+          && graph.getState(jobV) == STATE.SUBMITTED) {
+        log.debug("Job started on JobBoard: {}", jobId);
+        graph.setState(jobV, STATE.PROCESSING);
+      }
+    }
   }
 
-  private ExecutorService threadPool = Executors.newCachedThreadPool();
+  private void unsubscribeFromJob(String jobId) {
+    jobBoardUpdates.remove(jobId);
+    subscribedJobs.remove(jobId);
+  }
+
+  public STATE getJobStatus(String jobId) {
+    return await(inbox.ask(() -> {
+      int jobV = indexOf(jobId);
+      return graph.getState(jobV);
+    }));
+  }
 
+  /**
+   * Does not block: a submitted job's state on the JobBoard is taken from this service's subscription
+   * to its submitted jobs rather than requested with getProgress().
+   */
   public Map<String, Object> queryJobStats(String jobId) {
-    int tx = begin(graph);
-    try {
-      DepJobFrame jobV = graph.getVertex(jobId, DepJobFrame.class);
-      checkNotNull(jobV, "Cannot find " + jobId);
+    return await(inbox.ask(() -> {
+      int jobV = indexOf(jobId);
 
       Map<String, Object> map = new HashMap<>();
-      if (jobV.getState() == STATE.PROCESSING) {
-        threadPool.execute(() -> {
-          getJobProducer().getProgress(jobId, reply -> {
-            synchronized (map) {
-              JobDTO bodyJO = reply.result().body();
-              //job = Json.decodeValue(bodyJO.toString(), DependentJob.class);
-              //Do we need to do this?: bodyJO.getRequest().forEach(e->map.put(e.getKey(), e.getValue()));
-              //new JsonObject(Json.encode(bodyJO.getRequest()))
-              map.notify();
-            }
-          });
-        });
-
-        // wait for reply
-        synchronized (map) {
-          while (map.size() == 0)
-            try {
-              map.wait();
-            } catch (InterruptedException e) {
-              e.printStackTrace();
-            }
-          commit(tx);
-          return map;
-        }
-      } else {
-        map.put("_jobState", jobV.getState());
-        //map.put("_jobProgress", jobV.getProgress());
-        commit(tx);
-        return map;
+      STATE state = graph.getState(jobV);
+      map.put("_jobState", state);
+      //map.put("_jobProgress", jobV.getProgress());
+      JobUpdate update = jobBoardUpdates.get(jobId);
+      if (update != null) {
+        map.put("_jobBoardState", update.getState());
+        map.put("_jobFailedCount", update.getJobFailedCount());
       }
-    } catch (RuntimeException re) {
-      rollback(tx);
-      throw re;
-    }
+      return map;
+    }));
   }
 
-  private void putJobInWaitingArea(DepJobFrame jobV, JobDTO job) {
-    synchronized (graph) {
-      jobV.setState(STATE.WAITING);
-      graph.commit();
-    }
-    waitingJobs.put(jobV.getNodeId(), job);
+  private void putJobInWaitingArea(int jobV, JobDTO job) {
+    markWaiting(jobV, job);
     log.info("{} Waiting jobs: {}", waitingJobs.size(), waitingJobs.keySet());
   }
 
-  private boolean isJobReady(DepJobFrame jobV) {
-    synchronized (graph) {
-      for (DepJobFrame inV : jobV.getInputJobs()) {
-        if (inV.getState() != STATE.DONE)
-          return false;
-      }
-      graph.commit();
-    }
-    return true;
+  private void markWaiting(int jobV, JobDTO job) {
+    graph.setState(jobV, STATE.WAITING);
+    waitingJobs.put(job.getId(), job);
   }
 
-  private void jobDone(DepJobFrame job) {
-    synchronized (graph) {
-      job.setState(STATE.DONE);
-      markDependants(job);
-      graph.commit();
-    }
+  private void jobDone(String jobId) {
+    unsubscribeFromJob(jobId);
+    int job = indexOf(jobId);
+    graph.setState(job, STATE.DONE);
+    markDependants(job);
   }
 
-  private void jobFailed(DepJobFrame job) {
-    synchronized (graph) {
-      job.setState(STATE.FAILED);
-      graph.commit();
-    }
+  private void jobFailed(String jobId) {
+    unsubscribeFromJob(jobId);
+    graph.setState(indexOf(jobId), STATE.FAILED);
   }
 
-  private void markDependants(DepJobFrame doneJob) {
+  private void markDependants(int doneJob) {
     /**
      * When a task is DONE, it iterate through each dependee (i.e., task that it feeds):
     If dependee is DONE, change its state to NEEDS_UPDATE if it is not QUEUED.
@@ -469,55 +657,51 @@ public class DepJobService implements DepJobService_I {
     If dependee NEEDS_UPDATE, do nothing; Client would have to check for task with this state after all submitted relevant requests are complete.
     If dependee is WAITING (was popped earlier), put it in head of queue to be assessed next and if possible processed.
      */
-    synchronized (waitingJobs) {
-      Iterable<DepJobFrame> outJobs = doneJob.getOutputJobs();
-      if (outJobs != null) {
-        SortedSet<DepJobFrame> readyJobs = new TreeSet<>((e1, e2) -> {
-          return Integer.compare(e1.getOrder(), e2.getOrder());
-        });
-        for (DepJobFrame outV : outJobs) {
-          if (outV.getState() == null) {
-            log.info("Not marking job={} as NEEDS_UPDATE since job's current state={} (hasn't been submitted)",
-                outV.getNodeId(), outV.getState());
-          } else {
-            switch (outV.getState()) {
-              case SUBMITTED:
-              case DONE:
-                if(outV.getUpdatable()){
-                  log.info("Job dependent on {} has state={}. Marking {} as NEEDS_UPDATE.", doneJob.getNodeId(),
-                      outV.getState(), outV.getNodeId());
-                  outV.setState(STATE.NEEDS_UPDATE);
-                }
-                break;
-              case NEEDS_UPDATE:
-                break;
-              case WAITING:
-                if (isJobReady(outV))
-                  readyJobs.add(outV);
-                break;
-              case PROCESSING:
-                if(outV.getUpdatable()){
-                  log.info("Job dependent on {} is currently processing. Marking {} as NEEDS_UPDATE.",
-                      doneJob.getNodeId(), outV.getNodeId());
-                  outV.setState(STATE.NEEDS_UPDATE);
-                }
-                break;
-              case CANCELLED:
-              case FAILED:
-                log.info("Not marking job={} as NEEDS_UPDATE since job's current state={}", outV.getNodeId(),
-                    outV.getState());
-                break;
+    String doneJobId = graph.getId(doneJob);
+    SortedSet<Integer> readyJobs = new TreeSet<>((e1, e2) -> {
+      return Integer.compare(graph.getOrder(e1), graph.getOrder(e2));
+    });
+    for (int i = 0; i < graph.outputCount(doneJob); ++i) {
+      int outV = graph.output(doneJob, i);
+      STATE state = graph.getState(outV);
+      if (state == null) {
+        log.info("Not marking job={} as NEEDS_UPDATE since job's current state={} (hasn't been submitted)",
+            graph.getId(outV), state);
+      } else {
+        switch (state) {
+          case SUBMITTED:
+          case DONE:
+            if(graph.isUpdatable(outV)){
+              log.info("Job dependent on {} has state={}. Marking {} as NEEDS_UPDATE.", doneJobId,
+                  state, graph.getId(outV));
+              graph.setState(outV, STATE.NEEDS_UPDATE);
             }
-          }
-        }
-        for (DepJobFrame readyV : readyJobs) { // submit in order
-          log.info("Waiting job is now ready; submitting: {}", readyV.getNodeId());
-          JobDTO job = waitingJobs.remove(readyV.getNodeId());
-          submitJob(readyV, job);
+            break;
+          case NEEDS_UPDATE:
+            break;
+          case WAITING:
+            if (graph.isReady(outV)) // all inputs are DONE
+              readyJobs.add(outV);
+            break;
+          case PROCESSING:
+            if(graph.isUpdatable(outV)){
+              log.info("Job dependent on {} is currently processing. Marking {} as NEEDS_UPDATE.",
+                  doneJobId, graph.getId(outV));
+              graph.setState(outV, STATE.NEEDS_UPDATE);
+            }
+            break;
+          case CANCELLED:
+          case FAILED:
+            log.info("Not marking job={} as NEEDS_UPDATE since job's current state={}", graph.getId(outV),
+                state);
+            break;
         }
-        log.debug("Waiting jobs: {}", waitingJobs.keySet());
       }
     }
+    for (int readyV : readyJobs)
+      log.info("Waiting job is now ready; submitting: {}", graph.getId(readyV));
+    submitJobs(readyJobs, waitingJobs); // in order
+    log.debug("Waiting jobs: {}", waitingJobs.keySet());
   }
 
 }
@@ -1,5 +1,7 @@
 package net.deelam.vertx.jobboard;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 public interface DepJobService_I {
@@ -8,4 +10,6 @@ public interface DepJobService_I {
   
   CompletableFuture<Boolean> addDepJob(JobDTO job, String[] inJobIds);
 
+  CompletableFuture<Boolean> submitDag(Collection<JobDTO> jobs, Map<String, String[]> inJobIds);
+
 }
@@ -0,0 +1,73 @@
+package net.deelam.vertx.jobboard;
+
+import net.deelam.vertx.jobboard.JobBoardStatsDTO.HistogramSummary;
+
+/**
+ * Fixed-size histogram of non-negative values with buckets that grow exponentially,
+ * so recording is a few arithmetic operations and an array increment.
+ * Each power of two is split into SUB_BUCKETS buckets, so percentiles are within 1/SUB_BUCKETS of the actual value.
+ *
+ * Not thread-safe; only accessed from the JobBoard's event-loop.
+ */
+class Histogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // values below 2*SUB_BUCKETS have their own bucket
+  private static final int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+
+  private final long[] counts = new long[LINEAR_BUCKETS + (64 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS];
+  private long count = 0;
+  private long sum = 0;
+  private long max = 0;
+
+  public void record(long value) {
+    if (value < 0)
+      value = 0;
+    ++counts[bucketOf(value)];
+    ++count;
+    sum += value;
+    if (value > max)
+      max = value;
+  }
+
+  public long count() {
+    return count;
+  }
+
+  static int bucketOf(long value) {
+    if (value < LINEAR_BUCKETS)
+      return (int) value;
+    int exponent = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BUCKET_BITS + 1
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return LINEAR_BUCKETS + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * @return largest value that falls in the bucket
+   */
+  static long upperBoundOf(int bucket) {
+    if (bucket < LINEAR_BUCKETS)
+      return bucket;
+    int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+    long subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+    long lowerBound = (1L << exponent) + (subBucket << (exponent - SUB_BUCKET_BITS));
+    return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+
+  public long percentile(double fraction) {
+    if (count == 0)
+      return 0;
+    long rank = Math.max(1, (long) Math.ceil(fraction * count));
+    long seen = 0;
+    for (int i = 0; i < counts.length; ++i) {
+      seen += counts[i];
+      if (seen >= rank)
+        return Math.min(upperBoundOf(i), max);
+    }
+    return max;
+  }
+
+  public HistogramSummary summarize() {
+    return new HistogramSummary(count, (count == 0) ? 0 : (double) sum / count, percentile(0.5), percentile(0.99), max);
+  }
+}
@@ -0,0 +1,58 @@
+package net.deelam.vertx.jobboard;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Default JobBoardMetrics, which keeps a Histogram per job type for each duration and counts worker refusals.
+ */
+public class HistogramJobBoardMetrics implements JobBoardMetrics {
+  public static final String WAITED_MILLIS = "jobWaitedMillis";
+  public static final String RAN_MILLIS = "jobRanMillis";
+  public static final String FAILED_RAN_MILLIS = "jobFailedRanMillis";
+  public static final String NEGOTIATION_MILLIS = "negotiationMillis";
+  public static final String WORKER_REFUSALS = "workerRefusals";
+  public static final String NEGOTIATIONS = "negotiations";
+
+  // name -> jobType -> histogram
+  private final Map<String, Map<String, Histogram>> histograms = new LinkedHashMap<>();
+  private long workerRefusals = 0;
+
+  private Histogram histogram(String name, String jobType) {
+    return histograms.computeIfAbsent(name, k -> new HashMap<>()).computeIfAbsent(jobType, k -> new Histogram());
+  }
+
+  @Override
+  public void jobWaited(String jobType, long millis) {
+    histogram(WAITED_MILLIS, jobType).record(millis);
+  }
+
+  @Override
+  public void jobRan(String jobType, long millis, boolean succeeded) {
+    histogram(succeeded ? RAN_MILLIS : FAILED_RAN_MILLIS, jobType).record(millis);
+  }
+
+  @Override
+  public void negotiated(String workerAddr, long millis) {
+    histogram(NEGOTIATION_MILLIS, "").record(millis);
+  }
+
+  @Override
+  public void workerRefused(String workerAddr) {
+    ++workerRefusals;
+  }
+
+  @Override
+  public void addTo(JobBoardStatsDTO stats) {
+    Histogram negotiations = histogram(NEGOTIATION_MILLIS, "");
+    stats.counters.put(NEGOTIATIONS, negotiations.count());
+    stats.counters.put(WORKER_REFUSALS, workerRefusals);
+    histograms.forEach((name, byType) -> {
+      Map<String, JobBoardStatsDTO.HistogramSummary> summaries = new TreeMap<>();
+      byType.forEach((jobType, histogram) -> summaries.put(jobType, histogram.summarize()));
+      stats.histograms.put(name, summaries);
+    });
+  }
+}
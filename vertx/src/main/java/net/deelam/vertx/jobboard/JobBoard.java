@@ -1,25 +1,36 @@
 package net.deelam.vertx.jobboard;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static java.util.stream.Collectors.toList;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
-import com.google.common.collect.Iterables;
-
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
 import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
 import io.vertx.core.json.JsonObject;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -28,10 +39,13 @@ import lombok.extern.slf4j.Slf4j;
 import net.deelam.vertx.KryoMessageCodec;
 import net.deelam.vertx.VerticleUtils;
 import net.deelam.vertx.jobboard.JobBoard.JobItem.JobState;
+import net.deelam.vertx.jobboard.JobStatusBatchDTO.JobStatus;
+import net.deelam.vertx.jobboard.JobTombstones.Tombstone;
 
 /**
  * JobProducer calls:
  * -addJob(id,completionAddr,job)
+ * -addJobs(jobs)
  * -getProgress(id)
  * -removeJob(id)
  * 
@@ -42,18 +56,55 @@ import net.deelam.vertx.jobboard.JobBoard.JobItem.JobState;
  * -fail(job)
  * 
  * JobConsumers register and JobProducers addJobs.  For each of these events, a list of available jobs are sent to the next idle Worker to choose a job.
+ * A batch of jobs sent with ADD_JOBS is added in one handler call, after which workers are negotiated with once.
  * (If no job is chosen and the availableJobList has changed, the latest list is sent to the Worker.)
  * When a Worker is done or has failed the job, it is sent the latest availableJobList.
+ * A Worker that registers a capacity greater than 1 remains idle (i.e., is offered more jobs) 
+ * until that many jobs are assigned to it.
  * 
  * Workers can submit setProgress to update the job JsonObject.  
  * Calling done(job) will send a notification to the completionAddress set in the job JsonObject.
+ * Workers can also send these updates in a JobStatusBatchDTO, which is applied in one handler call.
+ * Producers can provide batch addresses, which are notified with JobListDTOs of completed or failed jobs.
+ * Instead of polling getProgress(id), producers can SUBSCRIBE to state changes of jobs with given ids or of a given type
+ * and receive them in batches (JobUpdatesDTO) with credit-based flow control; see JobSubscriptionDTO.
+ * A subscription to job ids can be extended with more job ids (EXTEND_SUBSCRIPTION) rather than adding subscriptions.
  * Upon completion, a job is simply marked as DONE.  To delete the job entry, call removeJob(id). 
+ * Alternatively, setRetentionPolicy() removes old DONE and FAILED jobs automatically.
+ * If enableDeduplication() is called, jobs with the same JobDTO.contentKey run once: identical jobs added while
+ * one is unfinished end with it, and identical jobs added soon after one completes are DONE immediately.
  * 
  * If job fails, a failCount is incremented and the JOB_FAILEDCOUNT_ATTRIBUTE property set on the job JsonObject.
+ * If a RetryPolicy applies to the failed job (see setRetryPolicy()), the job waits for a backoff delay 
+ * before becoming AVAILABLE and can be kept from the worker that failed it.
  * 
  * --
  * 
- * JobBoard negotiates with one worker at a time so multiple workers cannot choose the same job.
+ * Jobs offered to a worker are reserved for that worker until it replies so multiple workers cannot choose the same job.
+ * By default, JobBoard negotiates with one worker at a time; call negotiateConcurrently() to offer disjoint
+ * subsets of jobs to several idle workers at once.
+ * 
+ * Available jobs are offered in order of JobDTO priority (highest first), then deadline (earliest first),
+ * then the time the job became available.
+ * When jobs from several tenants are available, tenants take turns by weight (see setTenantShare()).
+ * Jobs can prefer workers on the hosts or with the cached resources given in JobDTO.preferredLocations
+ * (see preferLocalWorkers()).
+ * 
+ * Workers that register for push assignment are not sent a jobList; instead, JobBoard chooses a job 
+ * matching the worker's jobType and capabilities and sends that single job, which the worker only ACKs.
+ * If the worker refuses the job because it cannot do it, the worker is assigned its next matching job instead.
+ * To spread dispatch across event-loops, several JobBoards can be deployed as shards (see JobBoardShards).
+ * Offers and assignments carry this JobBoard's address so consumers send job updates to the right shard.
+ * Job and worker counts and the measurements recorded by JobBoardMetrics can be queried with GET_STATS
+ * (see JobBoardMetricsExporter).
+ * If setScaler() is called, each job type's backlog, workers, and arrival and drain rates are periodically
+ * sent to a WorkerScaler (e.g., LocalConsumerScaler) so the number of workers can follow the load.
+ * If leaseJobs() is called, a started job whose worker stops sending progress updates or heartbeats
+ * is made AVAILABLE again.
+ * For job types with a SpeculationPolicy, a job that runs much longer than usual is also offered to another worker,
+ * and the copy that finishes first wins.
+ * If enableJournal() is called, jobs are journaled to disk and recovered when JobBoard restarts;
+ * recovered jobs that had been started are made AVAILABLE again.
  * pickyWorkers holds workers who did not pick any existing job, and so will not be notified until a new job is added.
  * When a new job is added, all workers in pickyIdleWorkers will be added to idleWorkers.
  * 
@@ -68,14 +119,15 @@ public class JobBoard extends AbstractVerticle {
   private final String addressBase;
 
   public enum BUS_ADDR {
-    ADD_JOB, REMOVE_JOB, GET_PROGRESS, // for producers 
-    UNREGISTER, SET_PROGRESS, DONE, PARTLY_DONE, FAIL // for consumers
+    ADD_JOB, ADD_JOBS, REMOVE_JOB, REMOVE_JOBS, GET_PROGRESS, SUBSCRIBE, EXTEND_SUBSCRIPTION, UNSUBSCRIBE, // for producers 
+    GET_STATS, // for monitoring
+    UNREGISTER, SET_PROGRESS, HEARTBEAT, DONE, PARTLY_DONE, FAIL, STATUS_BATCH // for consumers
   };
 
   private static final Object OK_REPLY = "ACK";
 
-  // jobId -> JobItem
-  private Map<String, JobItem> jobItems = new LinkedHashMap<>();
+  // jobId -> JobItem, indexed by state and jobType
+  private final JobItemIndex jobItems = new JobItemIndex();
 
   private HashMap<String,Worker> knownWorkers = new HashMap<>();
   private LinkedHashSet<String> idleWorkers = new LinkedHashSet<>();
@@ -98,6 +150,33 @@ public class JobBoard extends AbstractVerticle {
     EventBus eb = vertx.eventBus();
     KryoMessageCodec.register(eb, JobDTO.class);
     KryoMessageCodec.register(eb, JobListDTO.class);
+    KryoMessageCodec.register(eb, JobIdListDTO.class);
+    KryoMessageCodec.register(eb, JobStatusBatchDTO.class);
+    KryoMessageCodec.register(eb, JobBoardStatsDTO.class);
+    KryoMessageCodec.register(eb, JobSubscriptionDTO.class);
+    KryoMessageCodec.register(eb, JobUpdatesDTO.class);
+
+    jobItems.addListener(tenantScheduler);
+    if (retentionPolicy != null) {
+      retention = new JobBoardRetention(retentionPolicy, jobItems);
+      jobItems.addListener(retention); // before recovering jobs so they are counted
+    }
+    if (journal != null)
+      journal.open(vertx, jobItems); // recover jobs before accepting messages
+    if (scaler != null) {
+      loadTracker = new JobLoadTracker(0.5, System.currentTimeMillis());
+      jobItems.addListener(loadTracker); // after recovering jobs so they are not counted as arrivals
+      vertx.setPeriodic(scalingIntervalMillis, id -> sendScalingSignals());
+    }
+    if (dedup != null) {
+      for (JobItem ji : jobItems.getJobs(JobState.AVAILABLE).toArray(new JobItem[0]))
+        if (ji.jobJO.contentKey != null && dedup.addJob(ji) != null)
+          jobItems.setState(ji, JobState.COALESCED);
+    }
+    subscriptions = new JobBoardSubscriptions(vertx);
+    jobItems.addListener(subscriptions);
+    if (retention != null)
+      vertx.setPeriodic(retentionPolicy.intervalMillis, id -> retention.compact(System.currentTimeMillis()));
     
     vertx.eventBus().consumer(serviceType, (Message<String> clientAddr) -> {
       log.debug("Got client broadcast from {}", clientAddr.body());
@@ -113,10 +192,24 @@ public class JobBoard extends AbstractVerticle {
         return;
       }
       
-      if (knownWorkers.containsKey(workerAddr))
+      Worker worker = knownWorkers.get(workerAddr);
+      if (worker != null) {
         log.info("Worker already registered: {}", workerAddr);
-      else 
-        knownWorkers.put(workerAddr, new Worker(workerAddr, workerType));
+        if (!worker.unregistered)
+          workerLocations.workerRemoved(worker.type, worker.host, worker.resources);
+        worker.unregistered = false;
+      } else {
+        worker = new Worker(workerAddr, workerType);
+        knownWorkers.put(workerAddr, worker);
+      }
+      worker.capabilities = getWorkerCapabilities(message);
+      worker.pushAssignment = isPushAssignment(message);
+      worker.capacity = getWorkerCapacity(message);
+      worker.stealing = isStealingWorker(message);
+      worker.host = getWorkerHost(message);
+      worker.resources = getWorkerResources(message);
+      workerLocations.workerAdded(worker.type, worker.host, worker.resources);
+      pickyWorkers.remove(workerAddr); // re-registering worker has capacity
       
       if (idleWorkers.contains(workerAddr))
         log.info("Worker already registered and is idle: {}", workerAddr);
@@ -128,155 +221,207 @@ public class JobBoard extends AbstractVerticle {
     
     eb.consumer(addressBase + BUS_ADDR.UNREGISTER, message -> {
       String workerAddr = getWorkerAddress(message);
-      log.debug("Received UNREGISTER message from {}", workerAddr);
-      if (!idleWorkers.remove(workerAddr))
-        log.error("Could not remove {} from idleWorkers={}", workerAddr, idleWorkers);
+      log.info("Received UNREGISTER message from {}", workerAddr);
+      idleWorkers.remove(workerAddr);
+      pickyWorkers.remove(workerAddr);
+      Worker worker = knownWorkers.get(workerAddr);
+      if (worker != null && !worker.unregistered) {
+        workerLocations.workerRemoved(worker.type, worker.host, worker.resources);
+        worker.unregistered = true; // forgotten once its assigned jobs end
+        if (worker.assignedJobs.isEmpty())
+          knownWorkers.remove(workerAddr);
+      }
     });
 
     eb.consumer(addressBase + BUS_ADDR.ADD_JOB, (Message<JobDTO> message) -> {
       log.debug("Received ADD_JOB message: {}", message.body());
-      JobItem ji = new JobItem(message);
-      ji.state = JobState.AVAILABLE;
-      JobItem existingJI = jobItems.get(ji.getId());
-      boolean addJob = true;
-      if (existingJI != null) {
-        switch (existingJI.state) {
-          case AVAILABLE:
-          case DONE:
-          case FAILED:
-            log.info("Job with id=" + ji.getId() + " already exists but has state=" + existingJI.state
-                + ".  Adding job again.");
-            addJob = true;
-            break;
-          case STARTED:
-          case PROGRESSING:
-            message.fail(-11, "Job with id=" + ji.getId() + " already exists and has started!");
-            addJob = false;
-            break;
-        }
-      }
-      if (addJob) {
-        log.info("Adding job: {}", ji);
+      JobItem ji = new JobItem(message.body(), message.headers());
+      if (addJob(ji)) {
         message.reply(OK_REPLY);
-        jobItems.put(ji.getId(), ji);
-
-        jobAdded = true; // in case in the middle of negotiating
-
-        log.debug("Moving all pickyWorkers {} to idleWorkers: {}", pickyWorkers, idleWorkers);
-        for (Iterator<String> itr = pickyWorkers.iterator(); itr.hasNext();) {
-          idleWorkers.add(itr.next());
-          itr.remove();
-        }
-        asyncNegotiateJobWithNextIdleWorker();
+        asyncNegotiateNewJobs();
+      } else {
+        message.fail(-11, "Job with id=" + ji.getId() + " already exists and has started!");
       }
     });
+    eb.consumer(addressBase + BUS_ADDR.ADD_JOBS, (Message<JobListDTO> message) -> {
+      List<JobDTO> jobs = message.body().getJobs();
+      log.debug("Received ADD_JOBS message with {} jobs", jobs.size());
+      List<String> startedJobIds = new ArrayList<>();
+      for (JobDTO job : jobs) {
+        JobItem ji = new JobItem(job, message.headers());
+        if (!addJob(ji))
+          startedJobIds.add(ji.getId());
+      }
+      if (startedJobIds.isEmpty())
+        message.reply(OK_REPLY);
+      else
+        message.fail(-11, "Jobs already exist and have started: " + startedJobIds);
+      if (startedJobIds.size() < jobs.size())
+        asyncNegotiateNewJobs(); // once for the whole batch
+    });
     eb.consumer(addressBase + BUS_ADDR.REMOVE_JOB, message -> {
       String jobId = readJobId(message);
       log.info("Received REMOVE_JOB message: jobId={}", jobId);
       JobItem ji = jobItems.get(jobId);
       if (ji == null) {
-        message.fail(-12, "Cannot find job with id=" + jobId);
+        if (retention != null && retention.removeTombstone(jobId))
+          message.reply(OK_REPLY);
+        else
+          message.fail(-12, "Cannot find job with id=" + jobId);
+      } else if (removeUnstartedJob(ji)) {
+        message.reply(OK_REPLY);
       } else {
-        switch (ji.state) {
-          case AVAILABLE:
-          case DONE:
-          case FAILED:
-            jobItems.remove(jobId);
-            ++removeCounter;
-            message.reply(OK_REPLY);
-            break;
-          case STARTED:
-          case PROGRESSING:
-            message.fail(-121, "Cannot remove job id=" + jobId + " with state=" + ji.state);
-        }
+        message.fail(-121, "Cannot remove job id=" + jobId + " with state=" + ji.state);
       }
     });
+    eb.consumer(addressBase + BUS_ADDR.REMOVE_JOBS, (Message<JobIdListDTO> message) -> {
+      List<String> jobIds = message.body().getJobIds();
+      log.info("Received REMOVE_JOBS message with {} jobs", jobIds.size());
+      List<String> notRemoved = new ArrayList<>();
+      for (String jobId : jobIds) {
+        JobItem ji = jobItems.get(jobId);
+        boolean removed = (ji == null) ? (retention != null && retention.removeTombstone(jobId))
+            : removeUnstartedJob(ji);
+        if (!removed)
+          notRemoved.add(jobId);
+      }
+      if (notRemoved.isEmpty())
+        message.reply(OK_REPLY);
+      else
+        message.fail(-12, "Cannot find or remove started jobs: " + notRemoved);
+    });
 
     eb.consumer(addressBase + BUS_ADDR.SET_PROGRESS, (Message<JobDTO> message) -> {
       log.debug("Received SET_PROGRESS message: {}", message.body());
-      JobItem job = getJobItem(message.body());
-      job.mergeIn(message.body());
-      job.state = JobState.PROGRESSING;
+      workerProgressedJob(message.body(), getWorkerAddress(message));
+    });
+    eb.consumer(addressBase + BUS_ADDR.HEARTBEAT, (Message<JobDTO> message) -> {
+      log.debug("Received HEARTBEAT message: {}", message.body());
+      workerHeartbeatJob(message.body(), getWorkerAddress(message));
     });
     eb.consumer(addressBase + BUS_ADDR.GET_PROGRESS, message -> {
       String jobId = readJobId(message);
       log.debug("Received GET_PROGRESS message: jobId={}", jobId);
       JobItem job = jobItems.get(jobId);
       if (job == null) {
-        message.fail(-13, "Cannot find job with id=" + jobId);
+        Tombstone tombstone = (retention == null) ? null : retention.getTombstone(jobId);
+        if (tombstone == null)
+          message.fail(-13, "Cannot find job with id=" + jobId);
+        else // job was removed by the retention policy, so reply without its request
+          message.reply(new JobDTO(jobId, tombstone.getJobType(), null),
+              new DeliveryOptions().addHeader(JOB_STATE, tombstone.getState().name()));
       } else {
         JobDTO dto = job.jobJO;
-        //dto.getParams().put("JOB_STATE", job.state);
-        message.reply(dto);
+        message.reply(dto, new DeliveryOptions().addHeader(JOB_STATE, job.state.name()));
       }
     });
 
+    eb.consumer(addressBase + BUS_ADDR.SUBSCRIBE, (Message<JobSubscriptionDTO> message) -> {
+      subscriptions.subscribe(message.body(), jobItems);
+      message.reply(OK_REPLY);
+    });
+    eb.consumer(addressBase + BUS_ADDR.EXTEND_SUBSCRIPTION, (Message<JobSubscriptionDTO> message) -> {
+      if (subscriptions.extend(message.body(), jobItems))
+        message.reply(OK_REPLY);
+      else
+        message.fail(-14, "Cannot find subscription to job ids for " + message.body().getSubscriberAddr());
+    });
+    eb.consumer(addressBase + BUS_ADDR.UNSUBSCRIBE, (Message<String> message) -> {
+      log.info("Received UNSUBSCRIBE message: {}", message.body());
+      if (subscriptions.unsubscribe(message.body()))
+        message.reply(OK_REPLY);
+      else
+        message.fail(-14, "Cannot find subscription for " + message.body());
+    });
+
+    eb.consumer(addressBase + BUS_ADDR.GET_STATS, message -> {
+      message.reply(getStats());
+    });
+
     eb.consumer(addressBase + BUS_ADDR.PARTLY_DONE, (Message<JobDTO> message) -> {
       // worker completed its part of the job
       log.debug("Received PARTLY_DONE message: {}", message.body());
-      JobItem ji = workerEndedJob(message, JobState.AVAILABLE);
-      log.debug("Partly done: {}", ji.jobJO);
-
       String workerAddr = getWorkerAddress(message);
+      workerPartlyDoneJob(message.body(), workerAddr);
       asyncNegotiateJobWith(workerAddr);
     });
     eb.consumer(addressBase + BUS_ADDR.DONE, (Message<JobDTO> message) -> {
       log.debug("Received DONE message: {}", message.body());
-      JobItem ji = workerEndedJob(message, JobState.DONE);
-
       String workerAddr = getWorkerAddress(message);
+      workerDoneJob(message.body(), workerAddr);
       asyncNegotiateJobWith(workerAddr);
-
-      if (ji.completionAddr != null) {
-        log.debug("Notifying {} that job is done: {}", ji.completionAddr, ji.jobJO);
-        vertx.eventBus().send(ji.completionAddr, ji.jobJO);
-      }
     });
     eb.consumer(addressBase + BUS_ADDR.FAIL, (Message<JobDTO> message) -> {
       log.info("Received FAIL message: {}", message.body());
-      JobDTO jobJO = message.body();
-      JobItem job = getJobItem(jobJO);
-      int failCount = incrementFailCount(job);
-
-      JobState endState;
-      if (failCount >= job.retryLimit) {
-        endState = JobState.FAILED;
-      } else {
-        endState = JobState.AVAILABLE;
-      }
-      JobItem ji = workerEndedJob(message, endState);
-
       String workerAddr = getWorkerAddress(message);
+      workerFailedJob(message.body(), workerAddr);
       asyncNegotiateJobWith(workerAddr);
-
-      if (endState == JobState.FAILED && ji.failureAddr != null) {
-        log.info("Notifying {} that job failed: {}", ji.failureAddr, ji.jobJO);
-        vertx.eventBus().send(ji.failureAddr, ji.jobJO);
+    });
+    eb.consumer(addressBase + BUS_ADDR.STATUS_BATCH, (Message<JobStatusBatchDTO> message) -> {
+      String workerAddr = getWorkerAddress(message);
+      List<JobStatus> statuses = message.body().getStatuses();
+      log.debug("Received STATUS_BATCH message with {} updates from {}", statuses.size(), workerAddr);
+      boolean jobEnded = false; // as with individual status messages, only negotiate once the worker frees up
+      for (JobStatus status : statuses) {
+        try {
+          switch (status.getMethod()) {
+            case SET_PROGRESS:
+              workerProgressedJob(status.getJob(), workerAddr);
+              break;
+            case HEARTBEAT:
+              workerHeartbeatJob(status.getJob(), workerAddr);
+              break;
+            case PARTLY_DONE:
+              jobEnded = true;
+              workerPartlyDoneJob(status.getJob(), workerAddr);
+              break;
+            case DONE:
+              jobEnded = true;
+              workerDoneJob(status.getJob(), workerAddr);
+              break;
+            case FAIL:
+              jobEnded = true;
+              workerFailedJob(status.getJob(), workerAddr);
+              break;
+            default:
+              log.error("Ignoring unexpected status={} for job={}", status.getMethod(), status.getJob());
+          }
+        } catch (RuntimeException e) {
+          log.error("Could not apply status update: " + status, e);
+        }
       }
+      if (jobEnded)
+        asyncNegotiateJobWith(workerAddr);
     });
     
+    if (leaseMillis > 0) {
+      long tickMillis = Math.max(10, leaseMillis / 8);
+      leaseWheel = new TimerWheel<>(tickMillis, 512, System.currentTimeMillis());
+      vertx.setPeriodic(tickMillis, id -> leaseWheel.advance(System.currentTimeMillis(), this::leaseExpired));
+    }
+
     if(statusPeriod>0){
       AtomicInteger sameLogMsgCount=new AtomicInteger(0);
       vertx.setPeriodic(statusPeriod, id->{
-        long availJobCount = jobItems.entrySet().stream().filter(e -> (e.getValue().state == JobState.AVAILABLE)).count();
-        long startedJobCount = jobItems.entrySet().stream().filter(e -> (e.getValue().state == JobState.STARTED)).count();
-        long progessingJobCount = jobItems.entrySet().stream().filter(e -> (e.getValue().state == JobState.PROGRESSING)).count();
+        int availJobCount = jobItems.count(JobState.AVAILABLE);
+        int startedJobCount = jobItems.count(JobState.STARTED);
+        int progessingJobCount = jobItems.count(JobState.PROGRESSING);
   //      if(availJobCount+startedJobCount+progessingJobCount==0)
   //        return;
-        long doneJobCount = jobItems.entrySet().stream().filter(e -> (e.getValue().state == JobState.DONE)).count();
-        long failedJobCount = jobItems.entrySet().stream().filter(e -> (e.getValue().state == JobState.FAILED)).count();
-        String logMsg = availJobCount+" avail -> "+
+        int waitingJobCount = jobItems.count(JobState.WAITING);
+        int doneJobCount = jobItems.count(JobState.DONE);
+        int failedJobCount = jobItems.count(JobState.FAILED);
+        String logMsg = availJobCount+" avail ("+offeredJobCount+" offered) -> "+
             startedJobCount+" started .. "+
             progessingJobCount+" processing -> "+
             doneJobCount+" doneJobs, "+
-            failedJobCount+" failed, "+
+            failedJobCount+" failed ("+waitingJobCount+" waiting to retry), "+
             removeCounter+" removed :: "+
-            idleWorkers.size()+" idle vs "+
+            idleWorkers.size()+" idle ("+negotiatingWorkers.size()+" negotiating) vs "+
             pickyWorkers.size()+" picky of "+
             knownWorkers.size()+" workers";
         if(!logMsg.equals(prevLogMsg)){
-          List<String> availJobsStr=jobItems.entrySet().stream().filter(e -> (e.getValue().state == JobState.AVAILABLE)).map(jiE->{
-            JobItem ji = jiE.getValue();
+          List<String> availJobsStr=jobItems.getAvailableJobs(null).stream().map(ji->{
             return ji.getId()+" type="+ji.jobJO.getType();
           }).collect(toList());
           log.info(logMsg+"\n"+availJobsStr);
@@ -295,6 +440,110 @@ public class JobBoard extends AbstractVerticle {
     log.info("Ready: addressBase={} this={}", addressBase, this);
   }
   
+  @Override
+  public void stop() throws Exception {
+    if (journal != null)
+      journal.close();
+  }
+
+  private JobBoardJournal journal;
+  private JobBoardSubscriptions subscriptions;
+
+  private final TenantScheduler tenantScheduler = new TenantScheduler();
+
+  /**
+   * Available jobs of each type are offered to workers by deficit round robin across tenants
+   * (see addTenantHeader()), so a tenant that submits many jobs does not delay other tenants' jobs.
+   * Tenants without a share have weight 1 and no limit.
+   * A share can be set before or after start() (on the JobBoard's event-loop); jobs of the tenant
+   * that are already offered or started count toward its maxInFlight.
+   * @param weight relative share of workers when several tenants have available jobs
+   * @param maxInFlight max number of the tenant's jobs offered or started at once; 0 means no limit
+   */
+  public void setTenantShare(String tenant, int weight, int maxInFlight) {
+    tenantScheduler.setTenantShare(tenant, weight, maxInFlight);
+  }
+
+  private long localityDelay = 0;
+  private long localityTimerId = -1;
+  private long localityTimerTime = Long.MAX_VALUE;
+  private long nonLocalStarts = 0;
+  private final WorkerLocations workerLocations = new WorkerLocations();
+
+  /**
+   * A job with JobDTO.preferredLocations is offered only to workers whose host or cached resources
+   * (see addWorkerLocality()) include one of those locations, until the job has been AVAILABLE for localityDelayMillis.
+   * After that, or if no registered worker of the job's type is local, the job is offered to any worker.
+   */
+  public void preferLocalWorkers(long localityDelayMillis) {
+    checkArgument(localityDelayMillis >= 0, "localityDelayMillis must not be negative");
+    this.localityDelay = localityDelayMillis;
+  }
+
+  /**
+   * @return whether ji can be offered to worker given ji's preferredLocations
+   */
+  private boolean isLocalEnough(JobItem ji, Worker worker, long now) {
+    long fallbackTime =
+        workerLocations.holdUntil(ji.jobJO, ji.availableTime, worker.host, worker.resources, localityDelay, now);
+    if (fallbackTime == 0)
+      return true;
+    scheduleLocalityFallback(fallbackTime);
+    return false;
+  }
+
+  // re-negotiate with picky workers when the job can be offered to any worker
+  private void scheduleLocalityFallback(long fallbackTime) {
+    if (fallbackTime >= localityTimerTime)
+      return;
+    if (localityTimerId >= 0)
+      vertx.cancelTimer(localityTimerId);
+    localityTimerTime = fallbackTime;
+    localityTimerId = vertx.setTimer(Math.max(1, fallbackTime - System.currentTimeMillis()), id -> {
+      localityTimerId = -1;
+      localityTimerTime = Long.MAX_VALUE;
+      asyncNegotiateNewJobs();
+    });
+  }
+
+  private JobDeduplicator dedup;
+
+  /**
+   * Jobs with a JobDTO.contentKey are deduplicated: a job identical to an unfinished job is COALESCED
+   * and ends (with notifications to its producer) when that job ends, without running.
+   * A job identical to one completed within ttlMillis is DONE as soon as it is added.
+   * Must be called before this verticle is deployed.
+   * @param cacheSize number of completed contentKeys remembered, evicting the least recently used
+   */
+  public void enableDeduplication(int cacheSize, long ttlMillis) {
+    checkArgument(cacheSize > 0, "cacheSize must be positive");
+    dedup = new JobDeduplicator(cacheSize, ttlMillis);
+  }
+
+  private RetentionPolicy retentionPolicy;
+  private JobBoardRetention retention;
+
+  /**
+   * Periodically removes the oldest DONE and FAILED jobs beyond the policy's limits, leaving tombstones for GET_PROGRESS.
+   * Must be called before this verticle is deployed.  Tombstones are not journaled.
+   */
+  public void setRetentionPolicy(RetentionPolicy policy) {
+    checkArgument(policy.intervalMillis > 0, "intervalMillis must be positive");
+    this.retentionPolicy = policy;
+  }
+
+  /**
+   * Persist jobs to a journal in journalDir so they are recovered when JobBoard restarts.
+   * Must be called before this verticle is deployed.
+   * @param syncIntervalMillis journal entries are written and fsync'ed together at this interval
+   * @param snapshotEveryEntries number of journal entries after which a snapshot is written and the journal truncated
+   */
+  public void enableJournal(String journalDir, long syncIntervalMillis, int snapshotEveryEntries) {
+    checkArgument(syncIntervalMillis > 0, "syncIntervalMillis must be positive");
+    checkArgument(snapshotEveryEntries > 0, "snapshotEveryEntries must be positive");
+    journal = new JobBoardJournal(new File(journalDir), syncIntervalMillis, snapshotEveryEntries);
+  }
+
   private int statusPeriod, sameLogThreshold;
   public void periodicLogs(int statusPeriod, int sameLogThreshold) {
     this.statusPeriod=statusPeriod;
@@ -304,6 +553,26 @@ public class JobBoard extends AbstractVerticle {
   
   private String prevLogMsg;
 
+  /**
+   * @return false if the job has started, in which case it is not removed
+   */
+  private boolean removeUnstartedJob(JobItem ji) {
+    switch (ji.state) {
+      case AVAILABLE:
+      case WAITING:
+      case COALESCED:
+      case DONE:
+      case FAILED:
+        releaseJob(ji);
+        jobItems.remove(ji.getId());
+        forgetDuplicate(ji);
+        ++removeCounter;
+        return true;
+      default:
+        return false;
+    }
+  }
+
   private String readJobId(Message<Object> message) {
     if (message.body() instanceof String)
       return (String) message.body();
@@ -316,46 +585,173 @@ public class JobBoard extends AbstractVerticle {
     return ji.jobFailedCount;
   }
 
-  //negotiate with one worker at a time so workers don't choose the same job
-  private boolean isNegotiating = false;
+  // workers currently being offered jobs -> addJobCounter when the offer was sent
+  private final Map<String, Long> negotiatingWorkers = new HashMap<>();
+  // incremented for each added job so a negotiation can tell whether jobs were added since its offer
+  private long addJobCounter = 0;
+  // number of jobs reserved for (i.e., offered to) negotiating workers
+  private int offeredJobCount = 0;
+
+  private int maxConcurrentNegotiations = 1;
+  private int maxJobsPerOffer = Integer.MAX_VALUE;
+
+  /**
+   * Jobs offered to a worker are reserved for that worker until it replies,
+   * so concurrent negotiations offer disjoint sets of jobs and no job can be picked twice.
+   * @param maxConcurrentNegotiations number of workers that can be offered jobs at once
+   * @param maxJobsPerOffer limits the number of jobs reserved for a single worker
+   */
+  public void negotiateConcurrently(int maxConcurrentNegotiations, int maxJobsPerOffer) {
+    checkArgument(maxConcurrentNegotiations > 0, "maxConcurrentNegotiations must be positive");
+    checkArgument(maxJobsPerOffer > 0, "maxJobsPerOffer must be positive");
+    this.maxConcurrentNegotiations = maxConcurrentNegotiations;
+    this.maxJobsPerOffer = maxJobsPerOffer;
+  }
 
-  private void asyncNegotiateJobWithNextIdleWorker() {
-    String idleWorker = Iterables.getFirst(idleWorkers, null);
-    if (idleWorker == null) { // no workers available
+  /**
+   * @return false if a job with the same id has already been started, in which case ji is not added
+   */
+  private boolean addJob(JobItem ji) {
+    JobItem existingJI = jobItems.get(ji.getId());
+    if (existingJI != null) {
+      switch (existingJI.state) {
+        case AVAILABLE:
+        case WAITING:
+        case COALESCED:
+        case DONE:
+        case FAILED:
+          log.info("Job with id=" + ji.getId() + " already exists but has state=" + existingJI.state
+              + ".  Adding job again.");
+          break;
+        case STARTED:
+        case PROGRESSING:
+          return false;
+      }
+    }
+    log.info("Adding job: {}", ji);
+    if (existingJI != null) {
+      releaseJob(existingJI);
+      forgetDuplicate(existingJI);
+    }
+    ji.state = JobState.AVAILABLE;
+    String contentKey = ji.jobJO.contentKey;
+    if (dedup != null && contentKey != null) {
+      if (dedup.isCompleted(contentKey, System.currentTimeMillis())) {
+        log.info("Job {} is identical to a recently completed job; not running it again", ji.getId());
+        ji.state = JobState.DONE;
+        jobItems.put(ji);
+        notifyDone(ji);
+        return true;
+      }
+      JobItem leader = dedup.addJob(ji);
+      if (leader != null) {
+        log.info("Job {} is identical to unfinished job {}; will end with it", ji.getId(), leader.getId());
+        ji.state = JobState.COALESCED;
+      }
+    }
+    jobItems.put(ji);
+    return true;
+  }
+
+  /**
+   * Called when an unfinished job is removed or replaced, in case it is a leader or follower in dedup.
+   */
+  private void forgetDuplicate(JobItem ji) {
+    if (dedup == null)
       return;
+    JobItem newLeader = dedup.jobRemoved(ji);
+    if (newLeader != null) {
+      log.info("Job {} replaces removed job {} as the one to run", newLeader.getId(), ji.getId());
+      jobItems.setState(newLeader, JobState.AVAILABLE);
+      asyncNegotiateNewJobs();
+    }
+  }
+
+  private void endDuplicates(JobItem leader, JobState endState) {
+    if (dedup == null)
+      return;
+    for (JobItem follower : dedup.leaderEnded(leader, endState == JobState.DONE, System.currentTimeMillis())) {
+      if (jobItems.get(follower.getId()) != follower)
+        continue;
+      follower.jobFailedCount = leader.jobFailedCount;
+      jobItems.setState(follower, endState);
+      if (endState == JobState.DONE)
+        notifyDone(follower);
+      else
+        notifyFailed(follower);
+    }
+  }
+
+  private void asyncNegotiateNewJobs() {
+    ++addJobCounter; // in case in the middle of negotiating
+
+    log.debug("Moving all pickyWorkers {} to idleWorkers: {}", pickyWorkers, idleWorkers);
+    for (Iterator<String> itr = pickyWorkers.iterator(); itr.hasNext();) {
+      idleWorkers.add(itr.next());
+      itr.remove();
+    }
+    asyncNegotiateJobWithIdleWorkers();
+  }
+
+  private void asyncNegotiateJobWithIdleWorkers() {
+    List<String> stealingWorkers = new ArrayList<>();
+    for (String idleWorker : new ArrayList<>(idleWorkers)) {
+      if (negotiatingWorkers.size() >= maxConcurrentNegotiations)
+        return;
+      if (knownWorkers.get(idleWorker).stealing)
+        stealingWorkers.add(idleWorker);
+      else if (!negotiatingWorkers.containsKey(idleWorker))
+        asyncNegotiateJobWith(idleWorker);
+    }
+    // offer remaining jobs to workers from other shards
+    for (String idleWorker : stealingWorkers) {
+      if (negotiatingWorkers.size() >= maxConcurrentNegotiations)
+        return;
+      if (!negotiatingWorkers.containsKey(idleWorker))
+        asyncNegotiateJobWith(idleWorker);
     }
-    asyncNegotiateJobWith(idleWorker);
   }
   
   private void asyncNegotiateJobWith(String idleWorker) {
-    if (isNegotiating) {
-      log.info("Currently negotiating; skipping negotiation with {}", idleWorker);
+    if (!knownWorkers.containsKey(idleWorker)) {
+      log.debug("Worker has unregistered; not negotiating with {}", idleWorker);
+    } else if (negotiatingWorkers.containsKey(idleWorker)) {
+      log.info("Currently negotiating with {}; skipping", idleWorker);
+    } else if (negotiatingWorkers.size() >= maxConcurrentNegotiations) {
+      log.info("Currently negotiating with {} workers; skipping negotiation with {}", negotiatingWorkers.size(),
+          idleWorker);
     } else {
       final JobListDTO jobList = getAvailableJobsFor(idleWorker);
       log.debug("Negotiating jobs with {}, jobList={}", idleWorker, jobList);
-      isNegotiating = true; // make sure all code paths reset this to false
       asyncSendJobsTo(idleWorker, jobList);
     }
   }
 
-  private boolean jobAdded = false;
-
   private void asyncSendJobsTo(final String workerAddr, final JobListDTO jobList) {
-    jobAdded = false;
-    
     if(jobList.jobs.size()==0){
       log.debug("Not sending to {} empty jobList", workerAddr);
-      moveToPickyWorkers(workerAddr);
-      isNegotiating = false; // close current negotiation
-      asyncNegotiateJobWithNextIdleWorker();
+      if (offeredJobCount > 0) {
+        // leave in idleWorkers; jobs offered to other workers may be released when they reply 
+        log.debug("Jobs are offered to other workers; {} remains idle", workerAddr);
+      } else {
+        moveToPickyWorkers(workerAddr);
+      }
+    } else if (knownWorkers.get(workerAddr).pushAssignment) {
+      asyncAssignJobTo(workerAddr, jobList);
     } else {
       log.debug("Sending to {} available jobs={}", workerAddr, jobList);
-      DeliveryOptions delivOpt=new DeliveryOptions().setSendTimeout(10000L);
+      negotiatingWorkers.put(workerAddr, addJobCounter);
+      reserveJobs(workerAddr, jobList);
+      DeliveryOptions delivOpt=new DeliveryOptions().setSendTimeout(10000L).addHeader(JOBBOARD_ADDRESS, addressBase);
+      long sentTime = System.currentTimeMillis();
       vertx.eventBus().send(workerAddr, jobList, delivOpt, (AsyncResult<Message<JobDTO>> selectedJobReply) -> {
         //log.debug("reply from worker={}", selectedJobReply.result().headers().get(WORKER_ADDRESS));
-        boolean negotiateWithNextIdle = true;
+        long addJobCounterAtOffer = negotiatingWorkers.remove(workerAddr);
+        metrics.negotiated(workerAddr, System.currentTimeMillis() - sentTime);
+        boolean reoffer = false; // whether to continue negotiating with current worker
   
         if (selectedJobReply.failed()) {
+          releaseJobs(workerAddr, jobList);
           log.warn(
               "selectedJobReply failed: {}.  Removing worker={} permanently -- have worker register again if appropriate",
               workerAddr, selectedJobReply.cause());
@@ -364,42 +760,132 @@ public class JobBoard extends AbstractVerticle {
         } else if (selectedJobReply.succeeded()) {
           if (selectedJobReply.result().body() == null) {
             /*if (jobList.size() > 0) */ {
+              releaseJobs(workerAddr, jobList);
               log.debug("Worker {} did not choose a job: {}", workerAddr, toString(jobList));
               selectedJobReply.result().reply("ok, maybe next time");
   
               // jobItems may have changed by the time this reply is received
-              if (jobAdded) {
+              if (addJobCounterAtOffer != addJobCounter) {
                 log.info("jobList has since changed; sending updated jobList to {}", workerAddr);
-                JobListDTO availableJobs = getAvailableJobsFor(workerAddr);
-                asyncSendJobsTo(workerAddr, availableJobs);
-                negotiateWithNextIdle = false; // still negotiating with current idleWorker
+                reoffer = true;
               } else {
+                metrics.workerRefused(workerAddr);
                 moveToPickyWorkers(workerAddr);
               }
             }
           } else {
             try{
-              workerStartedJob(selectedJobReply.result());
+              workerStartedJob(selectedJobReply.result().body(), getWorkerAddress(selectedJobReply.result()));
               selectedJobReply.result().reply("proceed with "+selectedJobReply.result().body().getId());
             }catch(Exception e){
               // job may have been removed while consumer was picking from the jobList
               selectedJobReply.result().fail(-123, e.getMessage());
-              
-              JobListDTO availableJobs = getAvailableJobsFor(workerAddr);
-              asyncSendJobsTo(workerAddr, availableJobs);
-              negotiateWithNextIdle = false; // still negotiating with current idleWorker
+              reoffer = true;
+            } finally {
+              releaseJobs(workerAddr, jobList);
             }
           }
         }
   
-        if (negotiateWithNextIdle) {
-          isNegotiating = false; // close current negotiation
-          asyncNegotiateJobWithNextIdleWorker();
+        if (reoffer && knownWorkers.containsKey(workerAddr)) {
+          JobListDTO availableJobs = getAvailableJobsFor(workerAddr);
+          asyncSendJobsTo(workerAddr, availableJobs);
         }
+        // released jobs can be offered to other idle workers
+        asyncNegotiateJobWithIdleWorkers();
       });
     }
   }
 
+  /**
+   * Push-based assignment: the job was matched to the worker by JobBoard, so only an ACK is expected.
+   * @param jobList contains the single job to assign
+   */
+  private void asyncAssignJobTo(final String workerAddr, final JobListDTO jobList) {
+    JobDTO job = jobList.jobs.get(0);
+    log.debug("Assigning to {} job={}", workerAddr, job);
+    negotiatingWorkers.put(workerAddr, addJobCounter);
+    reserveJobs(workerAddr, jobList);
+    DeliveryOptions delivOpt=new DeliveryOptions().setSendTimeout(10000L).addHeader(JOBBOARD_ADDRESS, addressBase);
+    long sentTime = System.currentTimeMillis();
+    vertx.eventBus().send(getWorkerAssignAddress(workerAddr), job, delivOpt, ackReply -> {
+      negotiatingWorkers.remove(workerAddr);
+      metrics.negotiated(workerAddr, System.currentTimeMillis() - sentTime);
+      boolean reassign = false; // whether to assign the next job to the worker
+      if (ackReply.failed()) {
+        if (ackReply.cause() instanceof ReplyException
+            && ((ReplyException) ackReply.cause()).failureType() == ReplyFailure.RECIPIENT_FAILURE) {
+          log.debug("Worker {} refused job {}: {}", workerAddr, job.getId(), ackReply.cause().getMessage());
+          metrics.workerRefused(workerAddr);
+          Worker worker = knownWorkers.get(workerAddr);
+          if (((ReplyException) ackReply.cause()).failureCode() == -22 && worker != null) {
+            // worker cannot do this job, but may be able to do others
+            worker.refusedJobs.removeIf(id -> jobItems.get(id) == null); // forget jobs that have been removed
+            worker.refusedJobs.add(job.getId());
+            reassign = true;
+          } else { // worker's slots are taken; it registers again when one frees up
+            moveToPickyWorkers(workerAddr);
+          }
+        } else if (ackReply.cause() instanceof ReplyException
+            && ((ReplyException) ackReply.cause()).failureType() == ReplyFailure.TIMEOUT) {
+          // the worker starts the job before it ACKs, so it may be running the job
+          log.warn("No ACK from worker={} for job {}; treating job as started by the worker", workerAddr, job.getId());
+          startAssignedJob(job, workerAddr);
+          idleWorkers.remove(workerAddr); // until the worker ends a job or registers again
+        } else {
+          log.warn("Job assignment failed: {}.  Removing worker={} permanently -- have worker register again if appropriate",
+              ackReply.cause(), workerAddr);
+          if (!idleWorkers.remove(workerAddr))
+            log.error("Could not remove {} from idleWorkers={}", workerAddr, idleWorkers);
+        }
+      } else {
+        startAssignedJob(job, workerAddr);
+      }
+      releaseJobs(workerAddr, jobList);
+      if (reassign)
+        asyncNegotiateJobWith(workerAddr);
+      asyncNegotiateJobWithIdleWorkers();
+    });
+  }
+
+  /**
+   * The worker has started the job, so if the start cannot be recorded, the worker is told to cancel the job.
+   */
+  private void startAssignedJob(JobDTO job, String workerAddr) {
+    try {
+      workerStartedJob(job, workerAddr);
+    } catch (Exception e) {
+      // job may have been removed or replaced while the assignment was sent
+      log.error("Worker " + workerAddr + " accepted job that can no longer be started; cancelling: " + job.getId(), e);
+      vertx.eventBus().send(getWorkerCancelAddress(workerAddr), job);
+    }
+  }
+
+  private void reserveJobs(String workerAddr, JobListDTO jobList) {
+    for (JobDTO dto : jobList.jobs) {
+      JobItem ji = jobItems.get(dto.getId());
+      ji.offeredTo = workerAddr;
+      ++offeredJobCount;
+      tenantScheduler.reserved(ji);
+    }
+  }
+
+  private void releaseJobs(String workerAddr, JobListDTO jobList) {
+    for (JobDTO dto : jobList.jobs) {
+      JobItem ji = jobItems.get(dto.getId()); // may have been removed or replaced
+      if (ji != null && workerAddr.equals(ji.offeredTo))
+        releaseJob(ji);
+    }
+  }
+
+  private void releaseJob(JobItem ji) {
+    if (ji.offeredTo != null) {
+      ji.offeredTo = null;
+      --offeredJobCount;
+      tenantScheduler.released(ji, ji.state != JobState.AVAILABLE);
+    }
+  }
+
   private void moveToPickyWorkers(final String workerAddr) {
     log.debug("Moving idleWorker to pickyWorkers queue: {}", workerAddr);
     if (!idleWorkers.remove(workerAddr)) {
@@ -417,16 +903,22 @@ public class JobBoard extends AbstractVerticle {
   }
 
   private JobListDTO getAvailableJobsFor(String workerAddr) {
-    final String jobType=knownWorkers.get(workerAddr).type;
-    List<JobDTO> jobListL = jobItems.entrySet().stream().filter(e->{
-      if (e.getValue().state != JobState.AVAILABLE)
-        return false;
-      return (jobType==null) || jobType.equals(e.getValue().jobJO.getType());
-    }).map( e ->{
-      JobItem ji = e.getValue();
-      JobDTO dto = ji.jobJO;
-      return dto;
-    }).collect(Collectors.toList());
+    final Worker worker = knownWorkers.get(workerAddr);
+    final String jobType = worker.type;
+    final long now = System.currentTimeMillis();
+    final int maxJobs = worker.pushAssignment ? 1 : maxJobsPerOffer;
+    List<JobDTO> jobListL = tenantScheduler.pick(jobType, jobItems.getAvailableJobsByTenant(jobType),
+        ji -> ji.offeredTo == null // not reserved for another worker
+            && worker.hasCapabilitiesFor(ji.jobJO)
+            && (localityDelay == 0 || isLocalEnough(ji, worker, now))
+            && !(workerAddr.equals(ji.lastFailedBy) && avoidLastWorker(ji, worker))
+            && !worker.refusedJobs.contains(ji.getId()),
+        maxJobs).stream().map(ji -> {
+          JobDTO dto = ji.jobJO;
+          return dto;
+        }).collect(Collectors.toList());
+    if (!stragglers.isEmpty() && jobListL.size() < maxJobs)
+      addStragglers(worker, jobListL, maxJobs);
 
     if(jobListL.size()==0)
       log.debug("No '{}' jobs for: {}", jobType, workerAddr);
@@ -435,33 +927,527 @@ public class JobBoard extends AbstractVerticle {
     return jobList;
   }
 
-  private JobItem workerStartedJob(Message<JobDTO> selectedJobMsg) {
-    JobDTO jobJO = selectedJobMsg.body();
+  private JobItem workerStartedJob(JobDTO jobJO, String workerAddr) {
     JobItem job = getJobItem(jobJO);
 
-    String workerAddr = getWorkerAddress(selectedJobMsg);
+    boolean speculative = isRunning(job);
+    if (speculative)
+      checkState(job.speculativeWorker == null && stragglers.remove(job), "Job %s has state=%s and is not a straggler",
+          job.getId(), job.state);
+    else
+      checkState(job.state == JobState.AVAILABLE, "Job %s has state=%s", job.getId(), job.state);
+    checkState(job.offeredTo == null || job.offeredTo.equals(workerAddr), "Job %s was offered to another worker: %s",
+        job.getId(), job.offeredTo);
     log.debug("Started job: worker={} on jobId={}", workerAddr, job.getId());
-    if (!idleWorkers.remove(workerAddr))
-      log.error("Could not remove {} from idleWorkers={}", workerAddr, idleWorkers);
+    Worker worker = knownWorkers.get(workerAddr);
+    worker.assignedJobs.add(job.getId());
+    if (!worker.isLocalFor(jobJO))
+      ++nonLocalStarts;
+    if (worker.assignedJobs.size() >= worker.capacity) {
+      if (!idleWorkers.remove(workerAddr))
+        log.error("Could not remove {} from idleWorkers={}", workerAddr, idleWorkers);
+    }
 
+    if (speculative) {
+      log.info("Started speculative copy of job {} on {}; first started by {}", job.getId(), workerAddr, job.assignedTo);
+      job.speculativeWorker = workerAddr;
+      job.speculativeStartedTime = System.currentTimeMillis();
+      job.speculated = true;
+      ++speculativeStarts;
+      return job;
+    }
+
+    job.assignedTo = workerAddr;
+    job.startedTime = System.currentTimeMillis();
+    job.speculated = false;
+    metrics.jobWaited(job.jobJO.getType(), job.startedTime - job.availableTime);
+    if (leaseMillis > 0) {
+      renewLease(job);
+      leaseWheel.cancel(job.leaseTimeout); // in case the job ended and restarted before its previous lease expired
+      job.leaseTimeout = leaseWheel.schedule(job, job.leaseExpiry);
+    }
     job.mergeIn(jobJO);
-    job.state = JobState.STARTED;
+    jobItems.setState(job, JobState.STARTED);
+    scheduleSpeculation(job);
     return job;
   }
 
-  private JobItem workerEndedJob(Message<JobDTO> jobMsg, JobState newState) {
-    JobItem job = getJobItem(jobMsg.body());
+  private void workerProgressedJob(JobDTO jobJO, String workerAddr) {
+    JobItem job = getJobItem(jobJO);
+    if (isReclaimed(job, workerAddr))
+      return;
+    renewLease(job);
+    job.mergeIn(jobJO);
+    jobItems.setState(job, JobState.PROGRESSING);
+  }
 
-    String workerAddr = getWorkerAddress(jobMsg);
-    if (!idleWorkers.add(workerAddr))
-      log.error("Could not add {} to idleWorkers={}", workerAddr, idleWorkers);
+  // worker holds the job (e.g., prefetched) but hasn't necessarily started it, so only renew its lease
+  private void workerHeartbeatJob(JobDTO jobJO, String workerAddr) {
+    JobItem job = getJobItem(jobJO);
+    if (isReclaimed(job, workerAddr))
+      return;
+    renewLease(job);
+  }
+
+  private void workerPartlyDoneJob(JobDTO jobJO, String workerAddr) {
+    JobItem ji = workerEndedJob(jobJO, workerAddr, JobState.AVAILABLE);
+    if (ji != null)
+      log.debug("Partly done: {}", ji.jobJO);
+  }
+
+  private void workerDoneJob(JobDTO jobJO, String workerAddr) {
+    JobItem ji = workerEndedJob(jobJO, workerAddr, JobState.DONE);
+    if (ji == null)
+      return;
+    notifyDone(ji);
+    endDuplicates(ji, JobState.DONE);
+  }
 
-    job.mergeIn(jobMsg.body());
+  private void notifyDone(JobItem ji) {
+    if (ji.completionAddr != null) {
+      log.debug("Notifying {} that job is done: {}", ji.completionAddr, ji.jobJO);
+      DeliveryOptions opts = new DeliveryOptions();
+      if (ji.startedTime > 0) // not a duplicate that completed with its leader
+        opts.addHeader(JOB_RUN_MILLIS, Long.toString(ji.finishedTime - ji.startedTime));
+      vertx.eventBus().send(ji.completionAddr, ji.jobJO, opts);
+    }
+    if (ji.completionBatchAddr != null)
+      enqueueNotification(ji.completionBatchAddr, ji.jobJO);
+  }
+
+  private void notifyFailed(JobItem ji) {
+    if (ji.failureAddr != null) {
+      log.info("Notifying {} that job failed: {}", ji.failureAddr, ji.jobJO);
+      vertx.eventBus().send(ji.failureAddr, ji.jobJO);
+    }
+    if (ji.failureBatchAddr != null)
+      enqueueNotification(ji.failureBatchAddr, ji.jobJO);
+  }
+
+  private void workerFailedJob(JobDTO jobJO, String workerAddr) {
+    JobItem job = getJobItem(jobJO);
+    if (isReclaimed(job, workerAddr)) {
+      releaseWorker(workerAddr, job);
+      return;
+    }
+    if (job.speculativeWorker != null) {
+      log.info("Copy of job {} failed on {}; its other copy is still running", job.getId(), workerAddr);
+      releaseWorker(workerAddr, job);
+      keepOtherCopy(job, workerAddr);
+      return;
+    }
+    int failCount = incrementFailCount(job);
+
+    JobState endState;
+    if (failCount >= job.retryLimit) {
+      endState = JobState.FAILED;
+    } else {
+      job.lastFailedBy = workerAddr;
+      endState = (getRetryPolicy(job) == null) ? JobState.AVAILABLE : JobState.WAITING;
+    }
+    JobItem ji = workerEndedJob(jobJO, workerAddr, endState);
+    if (endState == JobState.WAITING)
+      scheduleRetry(ji);
+
+    if (endState == JobState.FAILED) {
+      notifyFailed(ji);
+      endDuplicates(ji, JobState.FAILED);
+    }
+  }
+
+  private JobBoardMetrics metrics = new HistogramJobBoardMetrics();
+
+  /**
+   * Replaces the default HistogramJobBoardMetrics, e.g., to forward measurements to a metrics library.
+   */
+  public void setMetrics(JobBoardMetrics metrics) {
+    this.metrics = checkNotNull(metrics);
+  }
+
+  private JobBoardStatsDTO getStats() {
+    JobBoardStatsDTO stats = new JobBoardStatsDTO().setTimestamp(System.currentTimeMillis());
+    for (JobState state : JobState.values())
+      stats.jobCounts.put(state.name(), jobItems.count(state));
+    for (String jobType : jobItems.getJobTypes()) {
+      Map<String, Integer> counts = new LinkedHashMap<>();
+      for (JobState state : JobState.values())
+        counts.put(state.name(), jobItems.count(jobType, state));
+      stats.jobCountsByType.put(jobType, counts);
+    }
+    stats.setOfferedJobs(offeredJobCount)
+        .setKnownWorkers(knownWorkers.size())
+        .setIdleWorkers(idleWorkers.size())
+        .setPickyWorkers(pickyWorkers.size())
+        .setNegotiatingWorkers(negotiatingWorkers.size());
+    stats.gauges.put("stragglers", (long) stragglers.size());
+    stats.counters.put("speculativeStarts", speculativeStarts);
+    stats.counters.put("speculativeWins", speculativeWins);
+    stats.gauges.put("subscriptions", (long) subscriptions.size());
+    stats.counters.put("nonLocalStarts", nonLocalStarts);
+    if (dedup != null) {
+      stats.counters.put("dedupCacheHits", (long) dedup.cacheHits());
+      stats.gauges.put("dedupLeaders", (long) dedup.leaderCount());
+    }
+    if (retention != null) {
+      stats.counters.put("retentionEvicted", retention.getEvictedCount());
+      stats.gauges.put("tombstones", (long) retention.tombstoneCount());
+      stats.gauges.put("finishedPayloadBytes", retention.getFinishedPayloadBytes());
+    }
+    metrics.addTo(stats);
+    return stats;
+  }
+
+  private long leaseMillis = 0;
+  private TimerWheel<JobItem> leaseWheel;
+
+  /**
+   * Started jobs are leased to their worker for leaseMillis.  The lease is renewed each time the worker
+   * sends a progress update or heartbeat for the job (see JobConsumer.setHeartbeatInterval()).
+   * If the lease expires, the job is reclaimed: its jobFailedCount is incremented, it is made AVAILABLE again
+   * (or FAILED, as if the worker had failed it, once its retryLimit is reached),
+   * and later status updates from the worker for that job are ignored.
+   * Must be called before this verticle is deployed.
+   */
+  public void leaseJobs(long leaseMillis) {
+    checkArgument(leaseMillis > 0, "leaseMillis must be positive");
+    this.leaseMillis = leaseMillis;
+  }
+
+  private void renewLease(JobItem job) {
+    if (leaseMillis > 0)
+      job.leaseExpiry = System.currentTimeMillis() + leaseMillis;
+  }
+
+  private boolean isReclaimed(JobItem job, String workerAddr) {
+    if ((leaseMillis > 0 || job.speculated) && !workerAddr.equals(job.assignedTo)
+        && !workerAddr.equals(job.speculativeWorker)) {
+      log.warn("Ignoring status from {} for job {}, which was reclaimed or cancelled", workerAddr, job.getId());
+      return true;
+    }
+    return false;
+  }
+
+  private void leaseExpired(JobItem job) {
+    job.leaseTimeout = null;
+    if (jobItems.get(job.getId()) != job || job.assignedTo == null)
+      return; // job was removed or has ended
+    if (job.leaseExpiry > System.currentTimeMillis()) {
+      job.leaseTimeout = leaseWheel.schedule(job, job.leaseExpiry); // lease was renewed
+      return;
+    }
+
+    log.warn("Lease expired for job {} started by {}; reclaiming job", job.getId(), job.assignedTo);
+    metrics.jobRan(job.jobJO.getType(), System.currentTimeMillis() - job.startedTime, false);
+    Worker worker = knownWorkers.get(job.assignedTo);
+    if (worker != null)
+      worker.assignedJobs.remove(job.getId());
+    if (job.speculativeWorker != null) {
+      Worker speculativeWorker = knownWorkers.get(job.speculativeWorker);
+      if (speculativeWorker != null)
+        speculativeWorker.assignedJobs.remove(job.getId());
+      job.speculativeWorker = null;
+    }
+    String workerAddr = job.assignedTo;
+    job.assignedTo = null;
+    cancelTimeouts(job);
+    int failCount = incrementFailCount(job);
+    if (failCount >= job.retryLimit) {
+      log.warn("Job {} failed {} times; setting state to FAILED", job.getId(), failCount);
+      jobItems.setState(job, JobState.FAILED);
+      notifyFailed(job);
+      endDuplicates(job, JobState.FAILED);
+    } else if (getRetryPolicy(job) == null) {
+      job.lastFailedBy = workerAddr;
+      jobItems.setState(job, JobState.AVAILABLE);
+      asyncNegotiateNewJobs();
+    } else {
+      job.lastFailedBy = workerAddr;
+      jobItems.setState(job, JobState.WAITING);
+      scheduleRetry(job);
+    }
+  }
+
+  private final Map<String, RetryPolicy> retryPolicies = new HashMap<>();
+  private final Random random = new Random();
+  private static final long RETRY_TICK_MILLIS = 50;
+  private TimerWheel<JobItem> retryWheel;
+
+  /**
+   * Failed jobs of jobType that will be retried wait according to retryPolicy before becoming AVAILABLE.
+   * A JobDTO's retryPolicy overrides this policy.  Without a policy, failed jobs are AVAILABLE immediately.
+   */
+  public void setRetryPolicy(String jobType, RetryPolicy retryPolicy) {
+    retryPolicies.put(jobType, retryPolicy);
+  }
+
+  private RetryPolicy getRetryPolicy(JobItem job) {
+    if (job.jobJO.retryPolicy != null)
+      return job.jobJO.retryPolicy;
+    return retryPolicies.get(job.jobJO.getType());
+  }
+
+  private boolean avoidLastWorker(JobItem job, Worker worker) {
+    RetryPolicy policy = getRetryPolicy(job);
+    if (policy == null || !policy.avoidLastWorker)
+      return false;
+    // only if there is another live worker that can do the job
+    for (Worker w : knownWorkers.values())
+      if (w != worker && w.type.equals(worker.type) && w.hasCapabilitiesFor(job.jobJO) && isLive(w))
+        return true;
+    return false;
+  }
+
+  /**
+   * @return false if the worker unregistered or was dropped from idleWorkers after failing to reply,
+   *     and has no assigned jobs that would make it idle again
+   */
+  private boolean isLive(Worker w) {
+    return !w.unregistered && (idleWorkers.contains(w.id) || pickyWorkers.contains(w.id)
+        || negotiatingWorkers.containsKey(w.id) || !w.assignedJobs.isEmpty());
+  }
+
+  private void scheduleRetry(JobItem job) {
+    long delay = getRetryPolicy(job).delayMillis(job.jobFailedCount, random);
+    log.info("Retrying job {} in {} ms after {} failures", job.getId(), delay, job.jobFailedCount);
+    if (retryWheel == null) {
+      retryWheel = new TimerWheel<>(RETRY_TICK_MILLIS, 512, System.currentTimeMillis());
+      vertx.setPeriodic(RETRY_TICK_MILLIS, id -> retryWheel.advance(System.currentTimeMillis(), this::retryJob));
+    }
+    retryWheel.schedule(job, System.currentTimeMillis() + delay);
+  }
+
+  private void retryJob(JobItem job) {
+    if (jobItems.get(job.getId()) != job || job.state != JobState.WAITING)
+      return; // job was removed or replaced
+    jobItems.setState(job, JobState.AVAILABLE);
+    asyncNegotiateNewJobs();
+  }
+
+  private final Map<String, SpeculationPolicy> speculationPolicies = new HashMap<>();
+  // jobType -> runtimes of DONE jobs, for job types with a SpeculationPolicy
+  private final Map<String, Histogram> runtimes = new HashMap<>();
+  // running jobs to offer to idle workers as speculative copies
+  private final LinkedHashSet<JobItem> stragglers = new LinkedHashSet<>();
+  private static final long SPECULATION_TICK_MILLIS = 100;
+  private TimerWheel<JobItem> speculationWheel;
+  private long speculativeStarts = 0;
+  private long speculativeWins = 0;
+
+  /**
+   * A STARTED or PROGRESSING job of jobType that runs much longer than the type's DONE jobs (see SpeculationPolicy)
+   * is offered to other idle workers, after available jobs.  If another worker starts a speculative copy,
+   * the first copy to end DONE (or PARTLY_DONE) wins, and the other worker is sent the job on
+   * getWorkerCancelAddress(); while both copies run, a copy that fails only ends that copy.
+   * Only set a policy for job types whose jobs are idempotent.
+   */
+  public void setSpeculationPolicy(String jobType, SpeculationPolicy policy) {
+    speculationPolicies.put(jobType, policy);
+    runtimes.computeIfAbsent(jobType, k -> new Histogram());
+  }
+
+  private static boolean isRunning(JobItem job) {
+    return job.state == JobState.STARTED || job.state == JobState.PROGRESSING;
+  }
+
+  private void scheduleSpeculation(JobItem job) {
+    if (speculationWheel != null)
+      speculationWheel.cancel(job.speculationTimeout); // in case the job ended and restarted
+    job.speculationTimeout = null;
+    job.speculateAt = 0;
+    SpeculationPolicy policy = speculationPolicies.get(job.jobJO.getType());
+    if (policy == null)
+      return;
+    long stragglerMillis = policy.stragglerMillis(runtimes.get(job.jobJO.getType()));
+    if (stragglerMillis < 0)
+      return;
+    job.speculateAt = job.startedTime + stragglerMillis;
+    if (speculationWheel == null) {
+      speculationWheel = new TimerWheel<>(SPECULATION_TICK_MILLIS, 512, System.currentTimeMillis());
+      vertx.setPeriodic(SPECULATION_TICK_MILLIS,
+          id -> speculationWheel.advance(System.currentTimeMillis(), this::stragglerFound));
+    }
+    job.speculationTimeout = speculationWheel.schedule(job, job.speculateAt);
+  }
+
+  private void stragglerFound(JobItem job) {
+    job.speculationTimeout = null;
+    if (jobItems.get(job.getId()) != job || !isRunning(job) || job.speculativeWorker != null
+        || job.speculateAt == 0 || job.speculateAt > System.currentTimeMillis())
+      return; // job was removed, has ended, or was restarted
+    log.info("Job {} has run on {} for {} ms; offering it to other workers", job.getId(), job.assignedTo,
+        System.currentTimeMillis() - job.startedTime);
+    stragglers.add(job);
+    asyncNegotiateNewJobs();
+  }
+
+  private void addStragglers(Worker worker, List<JobDTO> jobList, int maxJobs) {
+    for (Iterator<JobItem> itr = stragglers.iterator(); itr.hasNext() && jobList.size() < maxJobs;) {
+      JobItem ji = itr.next();
+      if (jobItems.get(ji.getId()) != ji || !isRunning(ji) || ji.speculativeWorker != null)
+        itr.remove(); // job was removed or has ended
+      else if (ji.offeredTo == null && ji.jobJO.getType().equals(worker.type) && !worker.id.equals(ji.assignedTo)
+          && worker.hasCapabilitiesFor(ji.jobJO))
+        jobList.add(ji.jobJO);
+    }
+  }
+
+  /**
+   * The copy of the job run by endedWorkerAddr failed, so the job continues with its other copy.
+   */
+  private void keepOtherCopy(JobItem job, String endedWorkerAddr) {
+    if (endedWorkerAddr.equals(job.assignedTo)) {
+      job.assignedTo = job.speculativeWorker;
+      job.startedTime = job.speculativeStartedTime;
+    }
+    job.speculativeWorker = null;
+  }
+
+  /**
+   * The copy of the job run by winnerAddr ended first, so the other copy is cancelled.
+   */
+  private void cancelOtherCopy(JobItem job, String winnerAddr) {
+    String loserAddr = job.speculativeWorker;
+    if (winnerAddr.equals(job.speculativeWorker)) {
+      loserAddr = job.assignedTo;
+      job.assignedTo = winnerAddr;
+      job.startedTime = job.speculativeStartedTime;
+      ++speculativeWins;
+    }
+    job.speculativeWorker = null;
+    log.info("Job {} ended on {}; cancelling its copy on {}", job.getId(), winnerAddr, loserAddr);
+    releaseWorker(loserAddr, job);
+    vertx.eventBus().send(getWorkerCancelAddress(loserAddr), job.jobJO);
+  }
+
+  private WorkerScaler scaler;
+  private long scalingIntervalMillis;
+  private JobLoadTracker loadTracker;
+
+  /**
+   * Every intervalMillis, scaler is sent a ScalingSignal for each job type that has jobs or registered workers.
+   * Must be called before this verticle is deployed.
+   */
+  public void setScaler(WorkerScaler scaler, long intervalMillis) {
+    checkArgument(intervalMillis > 0, "intervalMillis must be positive");
+    this.scaler = checkNotNull(scaler);
+    this.scalingIntervalMillis = intervalMillis;
+  }
+
+  private void sendScalingSignals() {
+    loadTracker.sample(System.currentTimeMillis());
+    Map<String, int[]> workerCounts = new HashMap<>(); // jobType -> {workers, idle workers}
+    for (Worker w : knownWorkers.values()) {
+      if (w.unregistered)
+        continue;
+      int[] counts = workerCounts.computeIfAbsent(w.type, k -> new int[2]);
+      ++counts[0];
+      if (w.assignedJobs.isEmpty())
+        ++counts[1];
+    }
+    Set<String> jobTypes = new LinkedHashSet<>(jobItems.getJobTypes());
+    jobTypes.addAll(workerCounts.keySet());
+    for (String jobType : jobTypes) {
+      int[] counts = workerCounts.getOrDefault(jobType, new int[2]);
+      ScalingSignal signal = new ScalingSignal(jobType,
+          jobItems.count(jobType, JobState.AVAILABLE) + jobItems.count(jobType, JobState.WAITING),
+          jobItems.count(jobType, JobState.STARTED) + jobItems.count(jobType, JobState.PROGRESSING),
+          counts[0], counts[1], loadTracker.arrivalRate(jobType), loadTracker.drainRate(jobType));
+      try {
+        scaler.scale(signal);
+      } catch (RuntimeException e) {
+        log.error("Scaler failed for " + signal, e);
+      }
+    }
+  }
+
+  private long notifyBatchWindow = 100;
+  private int notifyBatchSize = 1000;
+
+  /**
+   * Configures notifications sent to producers' batch addresses (see createProducerHeader()).
+   * @param windowMillis max time a notification waits to be sent with other notifications
+   * @param maxBatchSize number of notifications that causes a batch to be sent immediately
+   */
+  public void batchNotifications(long windowMillis, int maxBatchSize) {
+    checkArgument(windowMillis > 0, "windowMillis must be positive");
+    checkArgument(maxBatchSize > 0, "maxBatchSize must be positive");
+    this.notifyBatchWindow = windowMillis;
+    this.notifyBatchSize = maxBatchSize;
+  }
+
+  // producer address -> jobs to send in the next batch
+  private final Map<String, List<JobDTO>> pendingNotifications = new LinkedHashMap<>();
+  private boolean notifyTimerSet = false;
+
+  private void enqueueNotification(String batchAddr, JobDTO job) {
+    List<JobDTO> jobs = pendingNotifications.computeIfAbsent(batchAddr, k -> new ArrayList<>());
+    jobs.add(job);
+    if (jobs.size() >= notifyBatchSize) {
+      pendingNotifications.remove(batchAddr);
+      sendNotifications(batchAddr, jobs);
+    } else if (!notifyTimerSet) {
+      notifyTimerSet = true;
+      vertx.setTimer(notifyBatchWindow, id -> {
+        notifyTimerSet = false;
+        pendingNotifications.forEach(this::sendNotifications);
+        pendingNotifications.clear();
+      });
+    }
+  }
+
+  private void sendNotifications(String batchAddr, List<JobDTO> jobs) {
+    log.debug("Notifying {} of {} jobs", batchAddr, jobs.size());
+    vertx.eventBus().send(batchAddr, new JobListDTO(jobs));
+  }
+
+  /**
+   * @return null if the job was reclaimed from the worker
+   */
+  private JobItem workerEndedJob(JobDTO jobJO, String workerAddr, JobState newState) {
+    JobItem job = getJobItem(jobJO);
+    releaseWorker(workerAddr, job);
+    if (isReclaimed(job, workerAddr))
+      return null;
+    if (job.speculativeWorker != null)
+      cancelOtherCopy(job, workerAddr);
+
+    job.assignedTo = null;
+    cancelTimeouts(job);
+    long ranMillis = System.currentTimeMillis() - job.startedTime;
+    metrics.jobRan(job.jobJO.getType(), ranMillis, newState == JobState.DONE);
+    Histogram typeRuntimes = runtimes.get(job.jobJO.getType());
+    if (typeRuntimes != null && newState == JobState.DONE)
+      typeRuntimes.record(ranMillis);
+    job.mergeIn(jobJO);
     log.info("Setting job {} state from {} to {}", job.getId(), job.state, newState);
-    job.state = newState;
+    jobItems.setState(job, newState);
     return job;
   }
 
+  private void cancelTimeouts(JobItem job) {
+    if (leaseWheel != null)
+      leaseWheel.cancel(job.leaseTimeout);
+    job.leaseTimeout = null;
+    if (speculationWheel != null)
+      speculationWheel.cancel(job.speculationTimeout);
+    job.speculationTimeout = null;
+  }
+
+  private void releaseWorker(String workerAddr, JobItem job) {
+    Worker worker = knownWorkers.get(workerAddr);
+    if (worker == null)
+      return; // unregistered
+    worker.assignedJobs.remove(job.getId());
+    if (worker.unregistered) {
+      if (worker.assignedJobs.isEmpty())
+        knownWorkers.remove(workerAddr);
+      return;
+    }
+    pickyWorkers.remove(workerAddr); // worker with other assigned jobs may be picky
+    if (!idleWorkers.add(workerAddr) && worker.capacity == 1)
+      log.error("Could not add {} to idleWorkers={}", workerAddr, idleWorkers);
+  }
+
   private JobItem getJobItem(JobDTO jobJO) {
     String jobId = jobJO.getId();
     JobItem job = jobItems.get(jobId);
@@ -476,33 +1462,74 @@ public class JobBoard extends AbstractVerticle {
   private static class Worker {
     final String id;
     final String type;
+    Set<String> capabilities = Collections.emptySet();
+    boolean pushAssignment = false;
+    int capacity = 1; // number of jobs that can be assigned to the worker at once
+    boolean stealing = false; // worker's home is another JobBoard shard
+    boolean unregistered = false;
+    String host;
+    Set<String> resources = Collections.emptySet(); // cached by the worker, e.g., graph directories
+    final Set<String> assignedJobs = new HashSet<>();
+    final Set<String> refusedJobs = new HashSet<>(); // jobs this push-assignment worker cannot do
+
+    boolean hasCapabilitiesFor(JobDTO job) {
+      return job.requiredCapabilities == null || capabilities.containsAll(job.requiredCapabilities);
+    }
+
+    boolean isLocalFor(JobDTO job) {
+      return WorkerLocations.isLocal(job, host, resources);
+    }
   }
 
   @lombok.ToString
   protected static class JobItem {
 
     enum JobState {
-      AVAILABLE, STARTED, PROGRESSING, DONE, FAILED
+      AVAILABLE, STARTED, PROGRESSING, DONE, FAILED,
+      WAITING, // failed and waiting for its retry delay to elapse before becoming AVAILABLE
+      COALESCED // waiting for an unfinished job with the same contentKey to end; see enableDeduplication()
     };
 
     JobItem.JobState state;
     final String completionAddr;
     final String failureAddr;
+    // producer addresses that are notified with batches of jobs (JobListDTO)
+    String completionBatchAddr;
+    String failureBatchAddr;
     final int retryLimit; // 0 means don't retry
     int jobFailedCount=0;
     final JobDTO jobJO;
+    String offeredTo; // worker for which this AVAILABLE job is reserved during negotiation
+    String assignedTo; // worker that started this job
+    String lastFailedBy; // worker that last failed this job or whose lease expired
+    String tenant = DEFAULT_TENANT;
+    long leaseExpiry; // if leases are enabled, time at which the job is reclaimed from assignedTo
+    TimerWheel.Timeout<JobItem> leaseTimeout; // this job's entry in leaseWheel; at most one per job
+    long availableSeq; // set by JobItemIndex each time this job becomes AVAILABLE; orders jobs of equal priority
+    long availableTime; // set by JobItemIndex each time this job becomes AVAILABLE
+    long startedTime;
+    long speculateAt; // if the job's type has a SpeculationPolicy, time at which this running job is a straggler
+    TimerWheel.Timeout<JobItem> speculationTimeout; // this job's entry in speculationWheel; at most one per job
+    String speculativeWorker; // worker running a speculative copy of this job
+    long speculativeStartedTime;
+    boolean speculated; // a speculative copy was started, so statuses from other workers are ignored
+    long finishedTime; // set by JobItemIndex when this job becomes DONE or FAILED
+    int payloadBytes; // serialized size of jobJO, computed by JobBoardRetention if needed
+
+    JobItem(JobDTO jobJO, MultiMap headers) {
+      this(jobJO, headers.get(JOB_COMPLETE_ADDRESS),
+          headers.get(JOB_FAILURE_ADDRESS), parseRetryLimit(headers.get(JOB_RETRY_LIMIT)));
+      completionBatchAddr = headers.get(JOB_COMPLETE_BATCH_ADDRESS);
+      failureBatchAddr = headers.get(JOB_FAILURE_BATCH_ADDRESS);
+      if (headers.contains(JOB_TENANT))
+        tenant = headers.get(JOB_TENANT);
+    }
 
-    JobItem(Message<JobDTO> message) {
-      completionAddr = message.headers().get(JOB_COMPLETE_ADDRESS);
-      failureAddr = message.headers().get(JOB_FAILURE_ADDRESS);
-      jobJO = ((JobDTO) message.body());
-
-      String retryLimitStr = message.headers().get(JOB_RETRY_LIMIT);
-      if (retryLimitStr == null)
-        retryLimit = 0;
-      else
-        retryLimit = Integer.parseInt(retryLimitStr);
-
+    JobItem(JobDTO jobJO, String completionAddr, String failureAddr, int retryLimit) {
+      this.completionAddr = completionAddr;
+      this.failureAddr = failureAddr;
+      this.jobJO = jobJO;
+      this.retryLimit = retryLimit;
 
       checkNotNull(jobJO.id);
       
@@ -513,6 +1540,13 @@ public class JobBoard extends AbstractVerticle {
 //        throw new IllegalArgumentException("Job's jobId attribute: "+jobJO.id+" != (msgHeader's jobIdAttrib="+jobId+")");
     }
 
+    private static int parseRetryLimit(String retryLimitStr) {
+      if (retryLimitStr == null)
+        return 0;
+      else
+        return Integer.parseInt(retryLimitStr);
+    }
+
     public String getId() {
       return jobJO.id;
     }
@@ -531,13 +1565,30 @@ public class JobBoard extends AbstractVerticle {
 
   private static final String JOB_RETRY_LIMIT = "jobRetryLimit";
 
+  private static final String JOB_COMPLETE_BATCH_ADDRESS = "jobCompleteBatchAddress";
+
+  private static final String JOB_FAILURE_BATCH_ADDRESS = "jobFailureBatchAddress";
+
   public static DeliveryOptions createProducerHeader(String jobCompletionAddress) {
     return createProducerHeader(jobCompletionAddress, null, 0);
   }
 
   public static DeliveryOptions createProducerHeader(String jobCompletionAddress,
       String jobFailureAddress, int jobRetryLimit) {
+    return createProducerHeader(jobCompletionAddress, jobFailureAddress, jobRetryLimit, null, null);
+  }
+
+  /**
+   * @param jobCompletionBatchAddress notified with JobListDTOs of completed jobs (see batchNotifications())
+   * @param jobFailureBatchAddress notified with JobListDTOs of failed jobs
+   */
+  public static DeliveryOptions createProducerHeader(String jobCompletionAddress,
+      String jobFailureAddress, int jobRetryLimit, String jobCompletionBatchAddress, String jobFailureBatchAddress) {
     DeliveryOptions opts = new DeliveryOptions();
+    if (jobCompletionBatchAddress != null)
+      opts.addHeader(JOB_COMPLETE_BATCH_ADDRESS, jobCompletionBatchAddress);
+    if (jobFailureBatchAddress != null)
+      opts.addHeader(JOB_FAILURE_BATCH_ADDRESS, jobFailureBatchAddress);
     if (jobCompletionAddress != null)
       opts.addHeader(JOB_COMPLETE_ADDRESS, jobCompletionAddress);
     if (jobFailureAddress != null)
@@ -548,6 +1599,13 @@ public class JobBoard extends AbstractVerticle {
 
   private static final String WORKER_ADDRESS = "workerAddress";
   private static final String WORKER_JOBTYPE = "workerJobType";
+  private static final String WORKER_CAPABILITIES = "workerCapabilities";
+  private static final String WORKER_CAPACITY = "workerCapacity";
+  private static final String WORKER_ASSIGNMENT = "workerAssignment";
+  private static final String PUSH_ASSIGNMENT = "push";
+  private static final String WORKER_STEALING = "workerStealing";
+  private static final String WORKER_HOST = "workerHost";
+  private static final String WORKER_RESOURCES = "workerResources";
 
   public static DeliveryOptions createWorkerHeader(String workerAddress, String workerJobType) {
     DeliveryOptions opts = new DeliveryOptions()
@@ -557,6 +1615,62 @@ public class JobBoard extends AbstractVerticle {
     return opts;
   }
 
+  /**
+   * @param pushAssignment if true, JobBoard chooses the job and sends a single JobDTO 
+   *   to getWorkerAssignAddress(workerAddress) instead of offering a JobListDTO; the worker starts the job
+   *   before replying, so a job whose assignment isn't acknowledged in time is treated as started by the worker
+   * @param capabilities jobs requiring other capabilities are not offered to the worker
+   * @param capacity number of jobs that JobBoard keeps assigned to the worker
+   */
+  public static DeliveryOptions createWorkerHeader(String workerAddress, String workerJobType,
+      boolean pushAssignment, Collection<String> capabilities, int capacity) {
+    DeliveryOptions opts = createWorkerHeader(workerAddress, workerJobType);
+    if (capacity > 1)
+      opts.addHeader(WORKER_CAPACITY, Integer.toString(capacity));
+    if (pushAssignment)
+      opts.addHeader(WORKER_ASSIGNMENT, PUSH_ASSIGNMENT);
+    if (capabilities != null && !capabilities.isEmpty())
+      opts.addHeader(WORKER_CAPABILITIES, String.join(",", capabilities));
+    return opts;
+  }
+
+  /**
+   * Copy of workerHeader for registering with a JobBoard shard other than the worker's home shard.
+   * The shard offers jobs to such stealing workers only after offering them to its other idle workers.
+   * @see JobBoardShards
+   */
+  public static DeliveryOptions createStealingWorkerHeader(DeliveryOptions workerHeader) {
+    DeliveryOptions opts = new DeliveryOptions();
+    workerHeader.getHeaders().forEach(e -> opts.addHeader(e.getKey(), e.getValue()));
+    opts.addHeader(WORKER_STEALING, Boolean.TRUE.toString());
+    return opts;
+  }
+
+  /**
+   * Adds the worker's host and cached resources to workerHeader, for jobs that prefer them (see preferLocalWorkers()).
+   * @param resources identifiers that JobDTO.preferredLocations refer to, e.g., graph directories already opened
+   */
+  public static DeliveryOptions addWorkerLocality(DeliveryOptions workerHeader, String host,
+      Collection<String> resources) {
+    if (host != null)
+      workerHeader.addHeader(WORKER_HOST, host);
+    if (resources != null)
+      resources.forEach(resource -> workerHeader.addHeader(WORKER_RESOURCES, resource)); // one header per resource
+    return workerHeader;
+  }
+
+  public static String getWorkerAssignAddress(String workerAddress) {
+    return workerAddress + ".assign";
+  }
+
+  /**
+   * JobBoard sends a JobDTO to this address when the worker should stop running the job,
+   * e.g., because a speculative copy of the job finished first.
+   */
+  public static String getWorkerCancelAddress(String workerAddress) {
+    return workerAddress + ".cancel";
+  }
+
   public static String getWorkerAddress(Message<?> message) {
     return message.headers().get(WORKER_ADDRESS);
   }
@@ -565,4 +1679,75 @@ public class JobBoard extends AbstractVerticle {
     return message.headers().get(WORKER_JOBTYPE);
   }
 
+  public static Set<String> getWorkerCapabilities(Message<?> message) {
+    String capabilities = message.headers().get(WORKER_CAPABILITIES);
+    if (capabilities == null || capabilities.isEmpty())
+      return Collections.emptySet();
+    return new HashSet<>(Arrays.asList(capabilities.split(",")));
+  }
+
+  public static String getWorkerHost(Message<?> message) {
+    return message.headers().get(WORKER_HOST);
+  }
+
+  public static Set<String> getWorkerResources(Message<?> message) {
+    List<String> resources = message.headers().getAll(WORKER_RESOURCES);
+    if (resources.isEmpty())
+      return Collections.emptySet();
+    return new HashSet<>(resources);
+  }
+
+  public static int getWorkerCapacity(Message<?> message) {
+    String capacity = message.headers().get(WORKER_CAPACITY);
+    if (capacity == null)
+      return 1;
+    return Integer.parseInt(capacity);
+  }
+
+  public static boolean isPushAssignment(Message<?> message) {
+    return PUSH_ASSIGNMENT.equals(message.headers().get(WORKER_ASSIGNMENT));
+  }
+
+  public static boolean isStealingWorker(Message<?> message) {
+    return Boolean.parseBoolean(message.headers().get(WORKER_STEALING));
+  }
+
+  private static final String JOBBOARD_ADDRESS = "jobBoardAddress";
+
+  /**
+   * @return addressBase of the JobBoard that offered or assigned jobs in the message
+   */
+  public static String getJobBoardAddress(Message<?> message) {
+    return message.headers().get(JOBBOARD_ADDRESS);
+  }
+
+  private static final String JOB_STATE = "jobState";
+
+  private static final String JOB_RUN_MILLIS = "jobRunMillis";
+
+  /**
+   * @return how long the job ran before it was DONE, from a job completion message; or -1 if unknown
+   */
+  public static long getJobRunMillis(Message<?> message) {
+    String runMillis = message.headers().get(JOB_RUN_MILLIS);
+    return (runMillis == null) ? -1 : Long.parseLong(runMillis);
+  }
+
+  private static final String JOB_TENANT = "jobTenant";
+  static final String DEFAULT_TENANT = "";
+
+  /**
+   * Adds a header to ADD_JOB or ADD_JOBS messages so the jobs are scheduled as the tenant's (see setTenantShare()).
+   */
+  public static DeliveryOptions addTenantHeader(DeliveryOptions opts, String tenant) {
+    return opts.addHeader(JOB_TENANT, tenant);
+  }
+
+  /**
+   * @return state of the job in a GET_PROGRESS reply, which may be for a job removed by the RetentionPolicy
+   */
+  public static String getJobState(Message<?> reply) {
+    return reply.headers().get(JOB_STATE);
+  }
+
 }
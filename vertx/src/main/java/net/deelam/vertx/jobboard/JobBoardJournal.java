@@ -0,0 +1,358 @@
+package net.deelam.vertx.jobboard;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import io.vertx.core.Vertx;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import net.deelam.vertx.jobboard.JobBoard.JobItem;
+import net.deelam.vertx.jobboard.JobBoard.JobItem.JobState;
+
+/**
+ * Append-only journal of JobBoard's job additions, state transitions, and removals
+ * so that JobBoard can rebuild its jobItems after a restart.
+ *
+ * Entries are collected on the event-loop and written by an ordered executeBlocking task
+ * every syncIntervalMillis, with one fsync per batch (group commit).
+ * After snapshotEveryEntries entries, a compacted snapshot of all jobs is written and the journal is truncated,
+ * which bounds replay time.  Each entry has a sequence number so entries already included in the
+ * snapshot are skipped during replay.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class JobBoardJournal implements JobItemIndex.Listener {
+  private static final String JOURNAL_FILE = "jobboard.journal";
+  private static final String SNAPSHOT_FILE = "jobboard.snapshot";
+
+  private final File dir;
+  private final long syncIntervalMillis;
+  private final int snapshotEveryEntries;
+
+  enum Op {
+    ADD, STATE, REMOVE
+  }
+
+  @NoArgsConstructor
+  @ToString(exclude = "job")
+  static class Entry {
+    long seq;
+    Op op;
+    String jobId;
+    JobState state;
+    int jobFailedCount;
+
+    // for ADD
+    JobDTO job;
+    String completionAddr;
+    String failureAddr;
+    String completionBatchAddr;
+    String failureBatchAddr;
+    int retryLimit;
+    String tenant;
+
+    Entry(Op op, JobItem ji) {
+      this.op = op;
+      jobId = ji.getId();
+      state = ji.state;
+      jobFailedCount = ji.jobFailedCount;
+      if (op == Op.ADD) {
+        job = ji.jobJO;
+        completionAddr = ji.completionAddr;
+        failureAddr = ji.failureAddr;
+        completionBatchAddr = ji.completionBatchAddr;
+        failureBatchAddr = ji.failureBatchAddr;
+        retryLimit = ji.retryLimit;
+        tenant = ji.tenant;
+      }
+    }
+
+    JobItem toJobItem() {
+      JobItem ji = new JobItem(job, completionAddr, failureAddr, retryLimit);
+      ji.completionBatchAddr = completionBatchAddr;
+      ji.failureBatchAddr = failureBatchAddr;
+      if (tenant != null)
+        ji.tenant = tenant;
+      ji.jobFailedCount = jobFailedCount;
+      ji.state = state;
+      return ji;
+    }
+  }
+
+  @NoArgsConstructor
+  static class Snapshot {
+    long lastSeq;
+    List<Entry> jobs;
+  }
+
+  private final Kryo kryo = new Kryo(); // only used in ordered executeBlocking tasks, open(), and close()
+
+  private Vertx vertx;
+  private JobItemIndex jobItems;
+  private FileChannel journalChannel;
+  private long timerId = -1;
+
+  private long seq = 0;
+  private int entriesSinceSnapshot = 0;
+  private List<Entry> pending = new ArrayList<>();
+  // batches handed off by the event-loop but not yet written
+  private final Queue<List<Entry>> unwritten = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Replays the snapshot and journal into jobItems, then starts journaling changes to jobItems.
+   * Jobs that were STARTED or PROGRESSING are made AVAILABLE since their workers are unknown;
+   * jobs waiting to be retried or waiting for an identical job are also made AVAILABLE.
+   */
+  public void open(Vertx vertx, JobItemIndex jobItems) throws IOException {
+    this.vertx = vertx;
+    this.jobItems = jobItems;
+    if (!dir.exists() && !dir.mkdirs())
+      throw new IOException("Could not create journal directory: " + dir);
+
+    long replayStart = System.currentTimeMillis();
+    long lastGoodPosition = recover();
+    for (JobItem ji : new ArrayList<>(jobItems.getJobs())) {
+      if (ji.state == JobState.STARTED || ji.state == JobState.PROGRESSING || ji.state == JobState.WAITING
+          || ji.state == JobState.COALESCED)
+        jobItems.setState(ji, JobState.AVAILABLE);
+    }
+    log.info("Recovered {} jobs from {} in {} ms", jobItems.size(), dir, System.currentTimeMillis() - replayStart);
+
+    journalChannel = FileChannel.open(journalPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    journalChannel.truncate(lastGoodPosition); // discard partially written entry
+    journalChannel.position(lastGoodPosition);
+
+    jobItems.addListener(this);
+    timerId = vertx.setPeriodic(syncIntervalMillis, id -> flush());
+  }
+
+  public void close() {
+    if (timerId >= 0)
+      vertx.cancelTimer(timerId);
+    try {
+      if (journalChannel != null) {
+        synchronized (kryo) {
+          unwritten.add(pending);
+          writeUnwritten();
+          journalChannel.close();
+        }
+      }
+    } catch (IOException e) {
+      log.error("Could not write journal entries on close", e);
+    }
+    pending = new ArrayList<>();
+  }
+
+  private Path journalPath() {
+    return new File(dir, JOURNAL_FILE).toPath();
+  }
+
+  private Path snapshotPath() {
+    return new File(dir, SNAPSHOT_FILE).toPath();
+  }
+
+  /// Listener methods, called on the event-loop
+
+  @Override
+  public void jobAdded(JobItem ji) {
+    append(new Entry(Op.ADD, ji));
+  }
+
+  @Override
+  public void jobRemoved(JobItem ji) {
+    append(new Entry(Op.REMOVE, ji));
+  }
+
+  @Override
+  public void jobStateChanged(JobItem ji, JobState oldState) {
+    append(new Entry(Op.STATE, ji));
+  }
+
+  private void append(Entry entry) {
+    entry.seq = ++seq;
+    pending.add(entry);
+    ++entriesSinceSnapshot;
+  }
+
+  private void flush() {
+    if (!pending.isEmpty()) {
+      final int batchSize = pending.size();
+      unwritten.add(pending);
+      pending = new ArrayList<>();
+      vertx.<Void>executeBlocking(f -> {
+        try {
+          synchronized (kryo) {
+            writeUnwritten();
+          }
+          f.complete();
+        } catch (IOException e) {
+          f.fail(e);
+        }
+      }, true, res -> {
+        if (res.failed())
+          log.error("Could not write " + batchSize + " journal entries", res.cause());
+      });
+    }
+
+    if (entriesSinceSnapshot >= snapshotEveryEntries)
+      snapshot();
+  }
+
+  private void snapshot() {
+    final Snapshot snapshot = new Snapshot();
+    snapshot.lastSeq = seq;
+    snapshot.jobs = new ArrayList<>(jobItems.size());
+    for (JobItem ji : jobItems.getJobs())
+      snapshot.jobs.add(new Entry(Op.ADD, ji));
+    entriesSinceSnapshot = 0;
+
+    // ordered after the flush of all entries up to snapshot.lastSeq
+    vertx.<Void>executeBlocking(f -> {
+      try {
+        synchronized (kryo) {
+          writeSnapshot(snapshot);
+        }
+        f.complete();
+      } catch (IOException e) {
+        f.fail(e);
+      }
+    }, true, res -> {
+      if (res.failed())
+        log.error("Could not write journal snapshot", res.cause());
+      else
+        log.info("Wrote journal snapshot of {} jobs", snapshot.jobs.size());
+    });
+  }
+
+  /// I/O methods, not called on the event-loop except during open() and close()
+
+  private void writeUnwritten() throws IOException {
+    if (!journalChannel.isOpen())
+      return; // closed by close(), which wrote all batches
+    Output out = new Output(4096, -1);
+    for (List<Entry> batch; (batch = unwritten.poll()) != null;)
+      for (Entry entry : batch) {
+        int lengthPos = out.position();
+        out.writeInt(0); // placeholder
+        kryo.writeObject(out, entry);
+        int endPos = out.position();
+        out.setPosition(lengthPos);
+        out.writeInt(endPos - lengthPos - 4);
+        out.setPosition(endPos);
+      }
+    if (out.position() == 0)
+      return;
+    ByteBuffer buf = ByteBuffer.wrap(out.getBuffer(), 0, out.position());
+    while (buf.hasRemaining())
+      journalChannel.write(buf);
+    journalChannel.force(false);
+  }
+
+  private void writeSnapshot(Snapshot snapshot) throws IOException {
+    if (!journalChannel.isOpen())
+      return;
+    Path tmpPath = new File(dir, SNAPSHOT_FILE + ".tmp").toPath();
+    try (FileChannel ch = FileChannel.open(tmpPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      Output out = new Output(64 * 1024, -1);
+      kryo.writeObject(out, snapshot);
+      ByteBuffer buf = ByteBuffer.wrap(out.getBuffer(), 0, out.position());
+      while (buf.hasRemaining())
+        ch.write(buf);
+      ch.force(true);
+    }
+    Files.move(tmpPath, snapshotPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+    // entries up to snapshot.lastSeq have been written, so the journal can be truncated
+    journalChannel.truncate(0);
+    journalChannel.position(0);
+    journalChannel.force(false);
+  }
+
+  /**
+   * @return position in the journal file after the last complete entry
+   */
+  private long recover() throws IOException {
+    long lastSeq = 0;
+    File snapshotFile = snapshotPath().toFile();
+    if (snapshotFile.exists()) {
+      try (Input in = new Input(new FileInputStream(snapshotFile))) {
+        Snapshot snapshot = kryo.readObject(in, Snapshot.class);
+        lastSeq = snapshot.lastSeq;
+        for (Entry entry : snapshot.jobs)
+          jobItems.put(entry.toJobItem());
+      }
+    }
+    seq = lastSeq;
+
+    long position = 0;
+    File journalFile = journalPath().toFile();
+    if (journalFile.exists()) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+        while (true) {
+          byte[] bytes;
+          try {
+            int length = in.readInt();
+            bytes = new byte[length];
+            in.readFully(bytes);
+          } catch (EOFException e) {
+            break; // end of journal or partially written entry
+          }
+          Entry entry;
+          try {
+            entry = kryo.readObject(new Input(bytes), Entry.class);
+          } catch (KryoException e) {
+            log.warn("Ignoring unreadable journal entry at position=" + position, e);
+            break;
+          }
+          position += 4 + bytes.length;
+          if (entry.seq > lastSeq)
+            replay(entry);
+          seq = Math.max(seq, entry.seq);
+        }
+      }
+    }
+    return position;
+  }
+
+  private void replay(Entry entry) {
+    switch (entry.op) {
+      case ADD:
+        jobItems.put(entry.toJobItem());
+        break;
+      case STATE:
+        JobItem ji = jobItems.get(entry.jobId);
+        if (ji == null) {
+          log.warn("Ignoring journal entry for unknown job: {}", entry);
+        } else {
+          ji.jobFailedCount = entry.jobFailedCount;
+          jobItems.setState(ji, entry.state);
+        }
+        break;
+      case REMOVE:
+        jobItems.remove(entry.jobId);
+        break;
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package net.deelam.vertx.jobboard;
+
+/**
+ * Receives measurements from a JobBoard; see JobBoard.setMetrics().
+ * Methods are called on the JobBoard's event-loop, so implementations should only record values.
+ * Job counts and worker counts are not reported here since JobBoard adds them to JobBoardStatsDTO directly.
+ */
+public interface JobBoardMetrics {
+
+  /**
+   * Time the job was AVAILABLE before a worker started it.
+   */
+  default void jobWaited(String jobType, long millis) {}
+
+  /**
+   * Time from a worker starting the job to the worker reporting it done or failed.
+   */
+  default void jobRan(String jobType, long millis, boolean succeeded) {}
+
+  /**
+   * Round-trip time for offering jobs to (or assigning a job to) a worker and getting its reply.
+   */
+  default void negotiated(String workerAddr, long millis) {}
+
+  /**
+   * The worker did not pick any of the offered jobs or refused an assigned job, and was moved to pickyWorkers.
+   */
+  default void workerRefused(String workerAddr) {}
+
+  /**
+   * Adds recorded metrics to stats in reply to GET_STATS.
+   */
+  default void addTo(JobBoardStatsDTO stats) {}
+
+  static final JobBoardMetrics NONE = new JobBoardMetrics() {};
+}
@@ -0,0 +1,107 @@
+package net.deelam.vertx.jobboard;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.http.HttpServerRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.deelam.vertx.KryoMessageCodec;
+import net.deelam.vertx.jobboard.JobBoard.BUS_ADDR;
+import net.deelam.vertx.jobboard.JobBoardStatsDTO.HistogramSummary;
+import net.deelam.vertx.rpc.ServiceWaiter;
+
+/**
+ * Serves a JobBoard's stats over HTTP at /metrics in Prometheus' text format.
+ * Stats are only requested from the JobBoard (via GET_STATS) when scraped.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class JobBoardMetricsExporter extends AbstractVerticle {
+  private final String serviceType;
+  private final int port;
+
+  private CompletableFuture<String> jobBoardPrefixF;
+
+  @Override
+  public void start() throws Exception {
+    KryoMessageCodec.register(vertx.eventBus(), JobBoardStatsDTO.class);
+    jobBoardPrefixF = new ServiceWaiter(vertx, serviceType).listenAndBroadcast();
+
+    vertx.createHttpServer().requestHandler(req -> {
+      if (!"/metrics".equals(req.path())) {
+        req.response().setStatusCode(404).end();
+      } else if (!jobBoardPrefixF.isDone()) {
+        req.response().setStatusCode(503).end("JobBoard not found");
+      } else {
+        String jobBoardPrefix = jobBoardPrefixF.join();
+        vertx.eventBus().send(jobBoardPrefix + BUS_ADDR.GET_STATS, null,
+            (AsyncResult<Message<JobBoardStatsDTO>> reply) -> respond(req, reply));
+      }
+    }).listen(port);
+    log.info("Ready: serving JobBoard metrics for {} on port {}", serviceType, port);
+  }
+
+  private void respond(HttpServerRequest req, AsyncResult<Message<JobBoardStatsDTO>> reply) {
+    if (reply.failed()) {
+      log.warn("Could not get JobBoard stats", reply.cause());
+      req.response().setStatusCode(503).end(String.valueOf(reply.cause()));
+    } else {
+      req.response().putHeader("Content-Type", "text/plain; version=0.0.4").end(toText(reply.result().body()));
+    }
+  }
+
+  static String toText(JobBoardStatsDTO stats) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("# TYPE jobboard_jobs gauge\n");
+    stats.getJobCounts().forEach((state, count) -> line(sb, "jobboard_jobs", "state", state, count));
+    sb.append("# TYPE jobboard_jobs_by_type gauge\n");
+    stats.getJobCountsByType().forEach((jobType, counts) -> counts.forEach((state, count) -> sb
+        .append("jobboard_jobs_by_type{type=\"").append(escape(jobType)).append("\",state=\"").append(escape(state))
+        .append("\"} ").append(count).append('\n')));
+    sb.append("# TYPE jobboard_jobs_offered gauge\n");
+    line(sb, "jobboard_jobs_offered", null, null, stats.getOfferedJobs());
+
+    sb.append("# TYPE jobboard_workers gauge\n");
+    line(sb, "jobboard_workers", "state", "known", stats.getKnownWorkers());
+    line(sb, "jobboard_workers", "state", "idle", stats.getIdleWorkers());
+    line(sb, "jobboard_workers", "state", "picky", stats.getPickyWorkers());
+    line(sb, "jobboard_workers", "state", "negotiating", stats.getNegotiatingWorkers());
+
+    sb.append("# TYPE jobboard_total counter\n");
+    stats.getCounters().forEach((name, count) -> line(sb, "jobboard_total", "name", name, count));
+    sb.append("# TYPE jobboard_current gauge\n");
+    stats.getGauges().forEach((name, value) -> line(sb, "jobboard_current", "name", name, value));
+
+    for (Map.Entry<String, Map<String, HistogramSummary>> e : stats.getHistograms().entrySet()) {
+      String metric = "jobboard_" + e.getKey();
+      sb.append("# TYPE ").append(metric).append(" summary\n");
+      e.getValue().forEach((jobType, summary) -> {
+        String labels = jobType.isEmpty() ? "" : "type=\"" + escape(jobType) + "\",";
+        sb.append(metric).append("{").append(labels).append("quantile=\"0.5\"} ").append(summary.getP50()).append('\n');
+        sb.append(metric).append("{").append(labels).append("quantile=\"0.99\"} ").append(summary.getP99()).append('\n');
+        sb.append(metric).append("{").append(labels).append("quantile=\"1\"} ").append(summary.getMax()).append('\n');
+        String countLabels = jobType.isEmpty() ? "" : "{type=\"" + escape(jobType) + "\"}";
+        sb.append(metric).append("_count").append(countLabels).append(' ').append(summary.getCount()).append('\n');
+        sb.append(metric).append("_sum").append(countLabels).append(' ')
+            .append((long) (summary.getMean() * summary.getCount())).append('\n');
+      });
+    }
+    return sb.toString();
+  }
+
+  private static void line(StringBuilder sb, String metric, String label, String labelValue, Number value) {
+    sb.append(metric);
+    if (label != null)
+      sb.append('{').append(label).append("=\"").append(escape(labelValue)).append("\"}");
+    sb.append(' ').append(value).append('\n');
+  }
+
+  // label values are quoted, so backslashes, quotes, and newlines in them must be escaped
+  static String escape(String labelValue) {
+    return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+}
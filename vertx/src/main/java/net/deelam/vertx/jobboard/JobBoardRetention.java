@@ -0,0 +1,134 @@
+package net.deelam.vertx.jobboard;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import net.deelam.vertx.jobboard.JobBoard.JobItem;
+import net.deelam.vertx.jobboard.JobBoard.JobItem.JobState;
+import net.deelam.vertx.jobboard.JobTombstones.Tombstone;
+
+/**
+ * Applies a RetentionPolicy to JobBoard's DONE and FAILED jobs.
+ * JobItemIndex keeps jobs of each state in the order they entered the state, so the oldest finished jobs
+ * are found without sorting.  The serialized size of each finished JobDTO is computed once, when it finishes,
+ * and only if maxPayloadBytes is set.
+ *
+ * Only accessed from the JobBoard's event-loop.
+ */
+@Slf4j
+class JobBoardRetention implements JobItemIndex.Listener {
+  private final RetentionPolicy policy;
+  private final JobItemIndex jobItems;
+  private final JobTombstones tombstones;
+
+  private final Kryo kryo = new Kryo();
+  private final Output output = new Output(4096, -1);
+  @Getter
+  private long finishedPayloadBytes = 0;
+  @Getter
+  private long evictedCount = 0;
+
+  JobBoardRetention(RetentionPolicy policy, JobItemIndex jobItems) {
+    this.policy = policy;
+    this.jobItems = jobItems;
+    tombstones = (policy.maxTombstones > 0) ? new JobTombstones(policy.maxTombstones) : null;
+  }
+
+  private static final JobState[] FINISHED_STATES = {JobState.DONE, JobState.FAILED};
+
+  private static boolean isFinished(JobState state) {
+    return state == JobState.DONE || state == JobState.FAILED;
+  }
+
+  private int payloadBytes(JobItem ji) {
+    if (ji.payloadBytes == 0) {
+      output.clear();
+      kryo.writeObject(output, ji.jobJO);
+      ji.payloadBytes = output.position();
+    }
+    return ji.payloadBytes;
+  }
+
+  @Override
+  public void jobAdded(JobItem ji) {
+    if (tombstones != null)
+      tombstones.remove(ji.getId());
+    if (policy.maxPayloadBytes > 0 && isFinished(ji.state))
+      finishedPayloadBytes += payloadBytes(ji);
+  }
+
+  @Override
+  public void jobRemoved(JobItem ji) {
+    if (policy.maxPayloadBytes > 0 && isFinished(ji.state))
+      finishedPayloadBytes -= payloadBytes(ji);
+  }
+
+  @Override
+  public void jobStateChanged(JobItem ji, JobState oldState) {
+    if (policy.maxPayloadBytes > 0 && isFinished(oldState) != isFinished(ji.state))
+      finishedPayloadBytes += isFinished(ji.state) ? payloadBytes(ji) : -payloadBytes(ji);
+  }
+
+  Tombstone getTombstone(String jobId) {
+    return (tombstones == null) ? null : tombstones.get(jobId);
+  }
+
+  boolean removeTombstone(String jobId) {
+    return tombstones != null && tombstones.remove(jobId);
+  }
+
+  int tombstoneCount() {
+    return (tombstones == null) ? 0 : tombstones.size();
+  }
+
+  /**
+   * Removes the oldest finished jobs until the policy's limits are met.
+   */
+  void compact(long now) {
+    List<JobItem> evicted = new ArrayList<>();
+    long payloadBytes = finishedPayloadBytes;
+    for (JobState state : FINISHED_STATES) {
+      int excess = (policy.maxJobsPerState > 0) ? jobItems.count(state) - policy.maxJobsPerState : 0;
+      for (JobItem ji : jobItems.getJobs(state)) { // oldest first
+        boolean expired = policy.maxAgeMillis > 0 && now - ji.finishedTime > policy.maxAgeMillis;
+        if (excess-- <= 0 && !expired)
+          break;
+        evicted.add(ji);
+        if (policy.maxPayloadBytes > 0)
+          payloadBytes -= payloadBytes(ji);
+      }
+    }
+
+    if (policy.maxPayloadBytes > 0 && payloadBytes > policy.maxPayloadBytes) {
+      // continue with the older of the remaining DONE and FAILED jobs;
+      // jobs already evicted above are a prefix of each state's jobs
+      PeekingIterator<JobItem> done = Iterators.peekingIterator(jobItems.getJobs(JobState.DONE).iterator());
+      PeekingIterator<JobItem> failed = Iterators.peekingIterator(jobItems.getJobs(JobState.FAILED).iterator());
+      for (JobItem ji : evicted)
+        (ji.state == JobState.DONE ? done : failed).next();
+      while (payloadBytes > policy.maxPayloadBytes && (done.hasNext() || failed.hasNext())) {
+        JobItem ji = (!failed.hasNext() || (done.hasNext() && done.peek().finishedTime <= failed.peek().finishedTime))
+            ? done.next() : failed.next();
+        evicted.add(ji);
+        payloadBytes -= payloadBytes(ji);
+      }
+    }
+
+    for (JobItem ji : evicted) {
+      jobItems.remove(ji.getId());
+      if (tombstones != null)
+        tombstones.add(ji);
+    }
+    evictedCount += evicted.size();
+    if (evicted.size() > 0)
+      log.debug("Removed {} finished jobs; {} remain", evicted.size(),
+          jobItems.count(JobState.DONE) + jobItems.count(JobState.FAILED));
+  }
+}
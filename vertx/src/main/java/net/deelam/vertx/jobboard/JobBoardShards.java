@@ -0,0 +1,73 @@
+package net.deelam.vertx.jobboard;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Describes how jobs are partitioned across several JobBoard instances so that dispatch is not limited
+ * to one event-loop.  Shard i is a JobBoard created with getShardServiceType(i) as its serviceType.
+ * JobProducers and JobConsumers given the same JobBoardShards route to the appropriate shards.
+ *
+ * When sharding by JOB_ID, jobs of one type are spread across all shards, so JobConsumers register with
+ * their home shard and also with the other shards as stealing workers,
+ * which a shard only offers jobs to after offering them to its own workers.
+ * When sharding by JOB_TYPE, all jobs of a type are in one shard and JobConsumers register only with that shard.
+ */
+@Getter
+@ToString
+public class JobBoardShards {
+  public enum ShardBy {
+    JOB_ID, JOB_TYPE
+  }
+
+  private final String serviceType;
+  private final int shardCount;
+  private final ShardBy shardBy;
+
+  public JobBoardShards(String serviceType, int shardCount, ShardBy shardBy) {
+    checkArgument(shardCount > 0, "shardCount must be positive");
+    this.serviceType = serviceType;
+    this.shardCount = shardCount;
+    this.shardBy = shardBy;
+  }
+
+  public String getShardServiceType(int shard) {
+    return serviceType + "-shard" + shard;
+  }
+
+  public int shardOf(JobDTO job) {
+    return shardOf((shardBy == ShardBy.JOB_ID) ? job.getId() : job.getType());
+  }
+
+  /**
+   * Only applicable when sharding by JOB_ID.
+   */
+  public int shardOfJobId(String jobId) {
+    checkArgument(shardBy == ShardBy.JOB_ID, "Cannot determine shard from jobId when sharding by " + shardBy);
+    return shardOf(jobId);
+  }
+
+  /**
+   * @return shards the worker should register with; the first is its home shard
+   */
+  public List<Integer> shardsForWorker(String jobType, String workerAddr) {
+    List<Integer> shards = new ArrayList<>();
+    if (shardBy == ShardBy.JOB_TYPE) {
+      shards.add(shardOf(jobType));
+    } else {
+      int home = shardOf(workerAddr);
+      for (int i = 0; i < shardCount; ++i)
+        shards.add((home + i) % shardCount);
+    }
+    return shards;
+  }
+
+  private int shardOf(String key) {
+    return Math.floorMod(key.hashCode(), shardCount);
+  }
+}
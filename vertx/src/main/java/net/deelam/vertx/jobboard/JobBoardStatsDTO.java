@@ -0,0 +1,45 @@
+package net.deelam.vertx.jobboard;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+/**
+ * Snapshot of a JobBoard's state and metrics, returned in reply to GET_STATS.
+ */
+@Accessors(chain = true)
+@NoArgsConstructor
+@Data
+public class JobBoardStatsDTO {
+  long timestamp;
+
+  Map<String, Integer> jobCounts = new LinkedHashMap<>(); // state -> count
+  Map<String, Map<String, Integer>> jobCountsByType = new LinkedHashMap<>(); // jobType -> state -> count
+  int offeredJobs;
+
+  int knownWorkers;
+  int idleWorkers;
+  int pickyWorkers;
+  int negotiatingWorkers;
+
+  Map<String, Long> counters = new LinkedHashMap<>(); // name -> count, which only increases
+  Map<String, Long> gauges = new LinkedHashMap<>(); // name -> current value, which can also decrease
+  Map<String, Map<String, HistogramSummary>> histograms = new LinkedHashMap<>(); // name -> jobType (or "") -> summary
+
+  @Accessors(chain = true)
+  @AllArgsConstructor
+  @NoArgsConstructor(access = AccessLevel.PRIVATE)
+  @Data
+  public static class HistogramSummary {
+    long count;
+    double mean;
+    long p50;
+    long p99;
+    long max;
+  }
+}
@@ -0,0 +1,224 @@
+package net.deelam.vertx.jobboard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.deelam.vertx.jobboard.JobBoard.JobItem;
+import net.deelam.vertx.jobboard.JobBoard.JobItem.JobState;
+import net.deelam.vertx.jobboard.JobUpdatesDTO.JobUpdate;
+
+/**
+ * Sends JobBoard's job state changes to subscribers (see JobSubscriptionDTO) in batches.
+ * Only accessed from the JobBoard's event-loop.
+ *
+ * Each subscriber has credits for maxUnackedBatches; sending a batch uses a credit and the subscriber's reply returns it.
+ * Without credits, updates accumulate in a map keyed by jobId, so memory is bounded by the number of subscribed jobs
+ * regardless of how fast jobs change state.
+ * A subscription's flush timer is only set while it has pending updates.
+ * Subscribed job ids are dropped once their jobs are removed, so a long-lived subscription that is extended
+ * with new job ids (see extend()) only tracks jobs on the JobBoard.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class JobBoardSubscriptions implements JobItemIndex.Listener {
+  private final Vertx vertx;
+
+  private final Map<String, Subscription> subscriptions = new HashMap<>(); // subscriberAddr -> subscription
+  // subscriptions by filter, so each state change only visits matching subscriptions
+  private final Map<String, List<Subscription>> byJobId = new HashMap<>();
+  private final Map<String, List<Subscription>> byJobType = new HashMap<>();
+  private final List<Subscription> forAllJobs = new ArrayList<>();
+
+  private class Subscription {
+    final JobSubscriptionDTO dto;
+    long timerId = -1; // set while pending updates wait to be flushed
+    int credits;
+    // jobId -> latest update not yet sent
+    final LinkedHashMap<String, JobUpdate> pending = new LinkedHashMap<>();
+
+    Subscription(JobSubscriptionDTO dto) {
+      this.dto = dto;
+      credits = dto.maxUnackedBatches;
+    }
+
+    void enqueue(JobUpdate update) {
+      pending.put(update.jobId, update);
+      if (pending.size() >= dto.maxBatchSize)
+        flush();
+      scheduleFlush();
+    }
+
+    void scheduleFlush() {
+      if (timerId != -1 || pending.isEmpty() || credits == 0)
+        return; // returned credits schedule the next flush
+      timerId = vertx.setTimer(dto.batchMillis, id -> {
+        timerId = -1;
+        flush();
+        scheduleFlush();
+      });
+    }
+
+    void cancelTimer() {
+      if (timerId != -1)
+        vertx.cancelTimer(timerId);
+    }
+
+    void flush() {
+      if (pending.isEmpty() || credits == 0)
+        return;
+      --credits;
+      List<JobUpdate> updates = new ArrayList<>(Math.min(pending.size(), dto.maxBatchSize));
+      for (Iterator<JobUpdate> itr = pending.values().iterator(); itr.hasNext() && updates.size() < dto.maxBatchSize;) {
+        updates.add(itr.next());
+        itr.remove();
+      }
+      vertx.eventBus().send(dto.subscriberAddr, new JobUpdatesDTO(updates), (reply) -> {
+        if (subscriptions.get(dto.subscriberAddr) != this)
+          return;
+        ++credits;
+        if (reply.failed()) {
+          if (reply.cause() instanceof ReplyException
+              && ((ReplyException) reply.cause()).failureType() == ReplyFailure.NO_HANDLERS) {
+            log.warn("Removing subscription since subscriber is gone: {}", dto.subscriberAddr);
+            unsubscribe(dto.subscriberAddr);
+            return;
+          }
+          log.warn("Resending {} updates to {}: {}", updates.size(), dto.subscriberAddr, reply.cause().toString());
+          for (JobUpdate update : updates)
+            pending.putIfAbsent(update.jobId, update); // keep newer updates
+        }
+        if (pending.size() >= dto.maxBatchSize)
+          flush();
+        scheduleFlush();
+      });
+      if (pending.size() >= dto.maxBatchSize)
+        flush(); // updates accumulated while out of credits
+    }
+  }
+
+  /**
+   * Sends the current state of existing matching jobs, followed by their state changes.
+   * Jobs are looked up by id for a subscription to jobIds, so only a subscription to a jobType or all jobs
+   * visits every job in jobItems.
+   */
+  void subscribe(JobSubscriptionDTO dto, JobItemIndex jobItems) {
+    unsubscribe(dto.subscriberAddr);
+    log.info("Adding subscription: {}", dto);
+    Subscription sub = new Subscription(dto);
+    subscriptions.put(dto.subscriberAddr, sub);
+    if (dto.jobIds != null) {
+      Set<String> jobIds = dto.jobIds;
+      dto.jobIds = new HashSet<>();
+      addJobIds(sub, jobIds, jobItems);
+      return;
+    }
+    if (dto.jobType != null)
+      byJobType.computeIfAbsent(dto.jobType, k -> new ArrayList<>()).add(sub);
+    else
+      forAllJobs.add(sub);
+
+    for (JobItem ji : jobItems.getJobs())
+      if (dto.matches(ji.jobJO))
+        sub.enqueue(toUpdate(ji, ji.state.name()));
+  }
+
+  /**
+   * Adds dto.jobIds to the existing subscription to job ids at dto.subscriberAddr
+   * and sends the current state of those jobs.
+   * @return false if there is no such subscription
+   */
+  boolean extend(JobSubscriptionDTO dto, JobItemIndex jobItems) {
+    Subscription sub = subscriptions.get(dto.subscriberAddr);
+    if (sub == null || sub.dto.jobIds == null || dto.jobIds == null)
+      return false;
+    addJobIds(sub, dto.jobIds, jobItems);
+    return true;
+  }
+
+  private void addJobIds(Subscription sub, Collection<String> jobIds, JobItemIndex jobItems) {
+    for (String jobId : jobIds) {
+      if (!sub.dto.jobIds.add(jobId))
+        continue; // already subscribed
+      byJobId.computeIfAbsent(jobId, k -> new ArrayList<>()).add(sub);
+      JobItem ji = jobItems.get(jobId);
+      if (ji != null) // else the job's state is sent once it is added
+        sub.enqueue(toUpdate(ji, ji.state.name()));
+    }
+  }
+
+  boolean unsubscribe(String subscriberAddr) {
+    Subscription sub = subscriptions.remove(subscriberAddr);
+    if (sub == null)
+      return false;
+    sub.cancelTimer();
+    if (sub.dto.jobIds != null)
+      sub.dto.jobIds.forEach(jobId -> removeFrom(byJobId, jobId, sub));
+    else if (sub.dto.jobType != null)
+      removeFrom(byJobType, sub.dto.jobType, sub);
+    else
+      forAllJobs.remove(sub);
+    return true;
+  }
+
+  private static void removeFrom(Map<String, List<Subscription>> map, String key, Subscription sub) {
+    List<Subscription> subs = map.get(key);
+    if (subs != null) {
+      subs.remove(sub);
+      if (subs.isEmpty())
+        map.remove(key);
+    }
+  }
+
+  int size() {
+    return subscriptions.size();
+  }
+
+  @Override
+  public void jobAdded(JobItem ji) {
+    publish(ji, ji.state.name());
+  }
+
+  @Override
+  public void jobRemoved(JobItem ji) {
+    publish(ji, JobUpdatesDTO.REMOVED);
+    List<Subscription> subs = byJobId.remove(ji.getId());
+    if (subs != null)
+      subs.forEach(sub -> sub.dto.jobIds.remove(ji.getId()));
+  }
+
+  @Override
+  public void jobStateChanged(JobItem ji, JobState oldState) {
+    publish(ji, ji.state.name());
+  }
+
+  private void publish(JobItem ji, String state) {
+    if (subscriptions.isEmpty())
+      return;
+    JobUpdate update = toUpdate(ji, state);
+    publish(byJobId.get(ji.getId()), update);
+    publish(byJobType.get(ji.jobJO.getType()), update);
+    publish(forAllJobs, update);
+  }
+
+  private static void publish(List<Subscription> subs, JobUpdate update) {
+    if (subs != null)
+      for (Subscription sub : subs)
+        sub.enqueue(update);
+  }
+
+  private static JobUpdate toUpdate(JobItem ji, String state) {
+    return new JobUpdate(ji.getId(), ji.jobJO.getType(), state, ji.jobFailedCount, System.currentTimeMillis());
+  }
+}
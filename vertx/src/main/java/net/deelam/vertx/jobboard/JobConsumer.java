@@ -3,10 +3,24 @@ package net.deelam.vertx.jobboard;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.function.Function;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.WorkerExecutor;
 import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.Message;
@@ -18,6 +32,7 @@ import lombok.experimental.Accessors;
 import lombok.extern.slf4j.Slf4j;
 import net.deelam.vertx.KryoMessageCodec;
 import net.deelam.vertx.jobboard.JobBoard.BUS_ADDR;
+import net.deelam.vertx.jobboard.JobStatusBatchDTO.JobStatus;
 import net.deelam.vertx.rpc.ServiceWaiter;
 
 @Slf4j
@@ -29,6 +44,24 @@ public class JobConsumer extends AbstractVerticle {
   private final String jobType;
   private DeliveryOptions deliveryOptions;
 
+  @Override
+  public void start(Future<Void> startFuture) throws Exception {
+    if (host != null) {
+      super.start(startFuture);
+      return;
+    }
+    // host name lookup can block on DNS, so don't do it on the event-loop
+    vertx.<String>executeBlocking(f -> f.complete(getLocalHostName()), false, res -> {
+      host = res.result();
+      try {
+        start();
+        startFuture.complete();
+      } catch (Exception e) {
+        startFuture.fail(e);
+      }
+    });
+  }
+
   @Override
   public void start() throws Exception {
     String myAddr = deploymentID();
@@ -37,18 +70,93 @@ public class JobConsumer extends AbstractVerticle {
     EventBus eb = vertx.eventBus();
     KryoMessageCodec.register(eb, JobDTO.class);
     KryoMessageCodec.register(eb, JobListDTO.class);
+    KryoMessageCodec.register(eb, JobStatusBatchDTO.class);
 
-    deliveryOptions = JobBoard.createWorkerHeader(myAddr, jobType);
+    checkState(slots > 0, "slots must be positive: " + slots);
+    deliveryOptions = JobBoard.createWorkerHeader(myAddr, jobType, pushAssignment, capabilities, slots + prefetch);
+    JobBoard.addWorkerLocality(deliveryOptions, host, cachedResources);
+    workerPool = vertx.createSharedWorkerExecutor(getClass().getSimpleName() + "-" + myAddr, slots);
 
     eb.consumer(myAddr, jobListHandler);
+    eb.consumer(JobBoard.getWorkerAssignAddress(myAddr), jobAssignmentHandler);
+    eb.consumer(JobBoard.getWorkerCancelAddress(myAddr), (Message<JobDTO> msg) -> cancelJob(msg.body().getId()));
 
-    waiter = new ServiceWaiter(vertx, serviceType);
-    waiter.listenAndBroadcast(msg -> {
-      String jobBoardPrefix = msg.body();
-      log.info("Sending client registration to {} from {}", jobBoardPrefix, myAddr);
-      vertx.eventBus().send(jobBoardPrefix, null, deliveryOptions);
-    });
+    if (heartbeatInterval > 0)
+      vertx.setPeriodic(heartbeatInterval, id -> sendHeartbeats());
 
+    if (shards == null) {
+      waiter = new ServiceWaiter(vertx, serviceType);
+      waiter.listenAndBroadcast(msg -> register(msg.body(), deliveryOptions));
+    } else {
+      List<Integer> shardIds = shards.shardsForWorker(jobType, myAddr);
+      DeliveryOptions stealingOptions = JobBoard.createStealingWorkerHeader(deliveryOptions);
+      for (int i = 0; i < shardIds.size(); ++i) {
+        ServiceWaiter shardWaiter = new ServiceWaiter(vertx, shards.getShardServiceType(shardIds.get(i)));
+        DeliveryOptions registrationOptions = (i == 0) ? deliveryOptions : stealingOptions;
+        shardWaiter.listenAndBroadcast(msg -> register(msg.body(), registrationOptions));
+        if (i == 0)
+          waiter = shardWaiter; // home shard
+      }
+    }
+  }
+
+  // jobBoardPrefix -> options this consumer registered with
+  private final Map<String, DeliveryOptions> registrations = new LinkedHashMap<>();
+
+  private void register(String jobBoardPrefix, DeliveryOptions registrationOptions) {
+    if (drainedHandler != null) {
+      log.info("Draining; not registering with {}", jobBoardPrefix);
+      return;
+    }
+    log.info("Sending client registration to {} from {}", jobBoardPrefix, deploymentID());
+    registrations.put(jobBoardPrefix, registrationOptions);
+    vertx.eventBus().send(jobBoardPrefix, null, registrationOptions);
+  }
+
+  @Override
+  public void stop() throws Exception {
+    flushJobStatuses();
+    if (workerPool != null)
+      workerPool.close();
+  }
+
+  /**
+   * If set, this consumer registers with the JobBoard shards that serve its jobType.
+   */
+  @Setter
+  private JobBoardShards shards;
+
+  // jobId -> prefix of the JobBoard that offered the job
+  private final Map<String, String> jobBoardPrefixes = new HashMap<>();
+  // JobBoards whose offers were declined because all slots were taken
+  private final Set<String> declinedJobBoards = new LinkedHashSet<>();
+
+  private String getJobBoardPrefix(Message<?> msg) {
+    String jobBoardPrefix = JobBoard.getJobBoardAddress(msg);
+    return (jobBoardPrefix == null) ? getJobBoardPrefix() : jobBoardPrefix;
+  }
+
+  private String getJobBoardPrefix(JobDTO job) {
+    String jobBoardPrefix = jobBoardPrefixes.get(job.getId());
+    return (jobBoardPrefix == null) ? getJobBoardPrefix() : jobBoardPrefix;
+  }
+
+  /**
+   * A JobBoard whose offer was declined treats this consumer as busy until it re-registers.
+   * Only needed for JobBoards other than the one that assigned the ended job.
+   */
+  private void reregisterWithDeclinedJobBoards(String endedJobBoardPrefix) {
+    declinedJobBoards.remove(endedJobBoardPrefix);
+    if (drainedHandler != null)
+      declinedJobBoards.clear();
+    for (String jobBoardPrefix : declinedJobBoards) {
+      DeliveryOptions registrationOptions = registrations.get(jobBoardPrefix);
+      if (registrationOptions != null) {
+        log.debug("Re-registering with {}", jobBoardPrefix);
+        vertx.eventBus().send(jobBoardPrefix, null, registrationOptions);
+      }
+    }
+    declinedJobBoards.clear();
   }
 
   @Getter(lazy = true)
@@ -59,7 +167,89 @@ public class JobConsumer extends AbstractVerticle {
     return waiter.awaitServiceAddress();
   }
 
-  private JobDTO pickedJob = null;
+  /**
+   * Number of jobs that can run concurrently on this consumer's worker pool.
+   */
+  @Setter
+  private int slots = 1;
+
+  /**
+   * Number of additional jobs JobBoard keeps assigned to this consumer, 
+   * which are queued to run as soon as a slot is free.
+   */
+  @Setter
+  private int prefetch = 0;
+
+  private WorkerExecutor workerPool;
+
+  // jobId -> job running in a slot
+  private final Map<String, JobDTO> runningJobs = new LinkedHashMap<>();
+  private final Queue<JobDTO> prefetchedJobs = new ArrayDeque<>();
+  // running jobs cancelled by JobBoard, whose end status is not sent
+  private final Set<String> cancelledJobs = new HashSet<>();
+  // jobs picked by this consumer but not yet confirmed by JobBoard
+  private int pendingPicks = 0;
+
+  private boolean hasCapacity() {
+    return drainedHandler == null
+        && runningJobs.size() + prefetchedJobs.size() + pendingPicks < slots + prefetch;
+  }
+
+  private Handler<Void> drainedHandler; // set while draining
+
+  /**
+   * Unregisters from JobBoards and stops taking jobs; drainedHandler is called on this verticle's context
+   * once running and prefetched jobs have ended, after which this verticle can be undeployed.
+   */
+  public void drain(Handler<Void> drainedHandler) {
+    context.runOnContext(v -> {
+      log.info("Draining: deploymentID={} runningJobs={}", deploymentID(), runningJobs.keySet());
+      this.drainedHandler = drainedHandler;
+      for (String jobBoardPrefix : registrations.keySet())
+        vertx.eventBus().send(jobBoardPrefix + BUS_ADDR.UNREGISTER, null, deliveryOptions);
+      declinedJobBoards.clear();
+      checkDrained();
+    });
+  }
+
+  private void checkDrained() {
+    if (drainedHandler != null && runningJobs.isEmpty() && prefetchedJobs.isEmpty() && pendingPicks == 0) {
+      Handler<Void> handler = drainedHandler;
+      drainedHandler = v -> {}; // remain draining
+      handler.handle(null);
+    }
+  }
+
+  /**
+   * If true, JobBoard assigns a job to this consumer rather than offering a list of jobs to pick from.
+   */
+  @Setter
+  private boolean pushAssignment = false;
+
+  @Setter
+  private Set<String> capabilities;
+
+  /**
+   * Advertised to JobBoard for jobs that prefer particular hosts; defaults to the local host name.
+   */
+  @Setter
+  private String host;
+
+  /**
+   * Resources already cached by this consumer's worker (e.g., graph directories), advertised to JobBoard 
+   * for jobs that prefer them.  See JobDTO.preferLocations().
+   */
+  @Setter
+  private Set<String> cachedResources;
+
+  private static String getLocalHostName() {
+    try {
+      return InetAddress.getLocalHost().getHostName();
+    } catch (UnknownHostException e) {
+      log.warn("Could not determine host name; not advertising host to JobBoard", e);
+      return null;
+    }
+  }
 
   @Setter
   private JobWorker worker;
@@ -84,45 +274,187 @@ public class JobConsumer extends AbstractVerticle {
 
   @Setter
   private Handler<Message<JobListDTO>> jobListHandler = msg -> {
+    JobDTO picked = null;
     try {
-      checkState(pickedJob == null, "Job in progress! " + pickedJob);
-      JobListDTO jobs = msg.body();
-      pickedJob = jobPicker.apply(jobs);
+      if (hasCapacity()) {
+        JobListDTO jobs = msg.body();
+        picked = jobPicker.apply(jobs);
+      } else {
+        log.info("All slots are taken; not picking from jobs={}", msg.body().jobs.size());
+        declinedJobBoards.add(getJobBoardPrefix(msg));
+      }
     } finally {
       // reply immediately so conversation doesn't timeout
       // must reply even if picked==null
+      final JobDTO pickedJob = picked;
+      if (pickedJob != null)
+        ++pendingPicks;
       msg.reply(pickedJob, deliveryOptions, ack -> {
         if (pickedJob != null) {
+          --pendingPicks;
           if (ack.succeeded())
-            doJob(pickedJob);
-          else
-            pickedJob = null; // job may have been removed while I was picking
+            acceptJob(pickedJob, getJobBoardPrefix(msg));
+          // else job may have been removed while I was picking
+          checkDrained();
         }
       });
     }
   };
 
+  @Setter
+  private Handler<Message<JobDTO>> jobAssignmentHandler = msg -> {
+    JobDTO job = msg.body();
+    if (!hasCapacity()) {
+      declinedJobBoards.add(getJobBoardPrefix(msg));
+      msg.fail(-21, "All slots are taken! " + runningJobs.keySet());
+    } else if (!worker.canDo(job)) {
+      msg.fail(-22, "Worker cannot do job: " + job);
+    } else {
+      log.info("assignedJob={}", job);
+      msg.reply(null); // ACK
+      acceptJob(job, getJobBoardPrefix(msg));
+    }
+  };
+
+  private void acceptJob(JobDTO job, String jobBoardPrefix) {
+    jobBoardPrefixes.put(job.getId(), jobBoardPrefix);
+    if (runningJobs.size() < slots) {
+      doJob(job);
+    } else {
+      log.debug("Prefetched job={}", job);
+      prefetchedJobs.add(job);
+    }
+  }
+
   private void doJob(JobDTO pickedJob) {
-    vertx.<Boolean>executeBlocking((successF) -> {
+    runningJobs.put(pickedJob.getId(), pickedJob);
+    workerPool.<Boolean>executeBlocking((successF) -> {
       try {
         successF.complete(worker.apply(pickedJob));
       } catch (Exception | Error e) {
         log.error("Worker " + worker + " threw exception; notifying job failed", e);
         successF.complete(false);
       }
-    } , (res) -> {
-      if (res.result()) {
-        sendJobEndStatus(BUS_ADDR.DONE);
+    } , false, (res) -> {
+      if (cancelledJobs.remove(pickedJob.getId())) {
+        runningJobs.remove(pickedJob.getId());
+        jobBoardPrefixes.remove(pickedJob.getId());
+        log.info("Cancelled job ended: {}", pickedJob.getId());
+        reregisterWithDeclinedJobBoards(null); // JobBoard released this slot when it cancelled the job
+      } else if (res.result()) {
+        sendJobEndStatus(pickedJob, BUS_ADDR.DONE);
       } else {
-        sendJobEndStatus(BUS_ADDR.FAIL);
+        sendJobEndStatus(pickedJob, BUS_ADDR.FAIL);
       }
+      JobDTO nextJob = prefetchedJobs.poll();
+      if (nextJob != null)
+        doJob(nextJob);
+      else
+        checkDrained();
     });
   }
   
-  private void sendJobEndStatus(BUS_ADDR method) {
-    checkNotNull(pickedJob, "No job picked!");
-    JobDTO doneJob = pickedJob;
-    pickedJob = null; // set to null before notifying jobMarket, which will offer more jobs
-    vertx.eventBus().send(getJobBoardPrefix() + method, doneJob, deliveryOptions);
+  private void sendJobEndStatus(JobDTO doneJob, BUS_ADDR method) {
+    checkNotNull(runningJobs.remove(doneJob.getId()), "Job not running: " + doneJob.getId());
+    // removed before notifying jobMarket, which will offer more jobs
+    sendJobStatus(doneJob, method);
+    String jobBoardPrefix = jobBoardPrefixes.remove(doneJob.getId());
+    if (!declinedJobBoards.isEmpty())
+      reregisterWithDeclinedJobBoards(jobBoardPrefix);
+  }
+
+  /**
+   * A prefetched job is dropped.  A running job cannot be interrupted, so it runs to completion 
+   * but its end status is not sent.
+   */
+  private void cancelJob(String jobId) {
+    if (prefetchedJobs.removeIf(job -> job.getId().equals(jobId))) {
+      log.info("Cancelled prefetched job: {}", jobId);
+      jobBoardPrefixes.remove(jobId);
+      reregisterWithDeclinedJobBoards(null);
+      checkDrained();
+    } else if (runningJobs.containsKey(jobId)) {
+      log.info("Cancelled running job: {}", jobId);
+      cancelledJobs.add(jobId);
+    }
+  }
+
+  /**
+   * Sends a SET_PROGRESS update for the job; can be called from the worker's thread.
+   */
+  public void sendJobProgress(JobDTO job) {
+    context.runOnContext(v -> sendJobStatus(job, BUS_ADDR.SET_PROGRESS));
+  }
+
+  /**
+   * If positive, a SET_PROGRESS update is sent at this interval for each running job, and a HEARTBEAT
+   * for each prefetched job, to renew the job's lease (see JobBoard.leaseJobs()).  Should be well below the JobBoard's lease duration.
+   */
+  @Setter
+  private long heartbeatInterval = 0;
+
+  private void sendHeartbeats() {
+    if (runningJobs.isEmpty() && prefetchedJobs.isEmpty())
+      return;
+    log.debug("Sending heartbeats for jobs={} prefetched={}", runningJobs.keySet(), prefetchedJobs.size());
+    runningJobs.values().stream().filter(job -> !cancelledJobs.contains(job.getId()))
+        .forEach(job -> sendJobStatus(job, BUS_ADDR.SET_PROGRESS));
+    prefetchedJobs.forEach(job -> sendJobStatus(job, BUS_ADDR.HEARTBEAT)); // not started, so no progress
+  }
+
+  /**
+   * If positive, status updates are coalesced and sent to JobBoard in a JobStatusBatchDTO
+   * at most this many milliseconds after the first update in the batch.
+   */
+  @Setter
+  private long statusBatchWindow = 0;
+
+  @Setter
+  private int statusBatchSize = 100;
+
+  // jobBoardPrefix -> jobId -> latest status update not yet sent to that JobBoard
+  private final Map<String, Map<String, JobStatus>> pendingStatuses = new LinkedHashMap<>();
+  private int pendingStatusCount = 0;
+  private boolean statusTimerSet = false;
+
+  private void sendJobStatus(JobDTO job, BUS_ADDR method) {
+    String jobBoardPrefix = getJobBoardPrefix(job);
+    if (statusBatchWindow <= 0) {
+      vertx.eventBus().send(jobBoardPrefix + method, job, deliveryOptions);
+      return;
+    }
+
+    Map<String, JobStatus> boardStatuses = pendingStatuses.computeIfAbsent(jobBoardPrefix, k -> new LinkedHashMap<>());
+    JobStatus pending = boardStatuses.get(job.getId());
+    if (pending != null && method == BUS_ADDR.HEARTBEAT)
+      return; // any pending status also renews the job's lease
+    if (pending != null && method == BUS_ADDR.SET_PROGRESS && pending.getMethod() != BUS_ADDR.SET_PROGRESS
+        && pending.getMethod() != BUS_ADDR.HEARTBEAT) {
+      log.debug("Ignoring progress update after job ended: {}", job);
+      return;
+    }
+    // a newer status replaces a pending progress update or heartbeat for the same job
+    if (boardStatuses.put(job.getId(), new JobStatus(method, job)) == null)
+      ++pendingStatusCount;
+
+    if (pendingStatusCount >= statusBatchSize) {
+      flushJobStatuses();
+    } else if (!statusTimerSet) {
+      statusTimerSet = true;
+      vertx.setTimer(statusBatchWindow, id -> {
+        statusTimerSet = false;
+        flushJobStatuses();
+      });
+    }
+  }
+
+  private void flushJobStatuses() {
+    pendingStatuses.forEach((jobBoardPrefix, boardStatuses) -> {
+      JobStatusBatchDTO batch = new JobStatusBatchDTO(new ArrayList<>(boardStatuses.values()));
+      log.debug("Sending {} status updates to {}", batch.getStatuses().size(), jobBoardPrefix);
+      vertx.eventBus().send(jobBoardPrefix + BUS_ADDR.STATUS_BATCH, batch, deliveryOptions);
+    });
+    pendingStatuses.clear();
+    pendingStatusCount = 0;
   }
 }
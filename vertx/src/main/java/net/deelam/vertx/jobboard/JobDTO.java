@@ -1,5 +1,20 @@
 package net.deelam.vertx.jobboard;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.UnsignedBytes;
+
 import lombok.AccessLevel;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -35,4 +50,80 @@ public class JobDTO {
   
   boolean updatable=true;
 
+  int priority; // jobs with higher priority are offered first
+  long deadline; // epoch millis; among jobs of equal priority, earlier deadlines are offered first; 0 means no deadline
+
+  RetryPolicy retryPolicy; // overrides JobBoard's retry policy for the job type
+
+  Set<String> requiredCapabilities; // only workers with all these capabilities are offered this job
+
+  // hosts or resources (e.g., a graph directory) where this job's input is cached; see JobBoard.preferLocalWorkers()
+  Set<String> preferredLocations;
+
+  String contentKey; // jobs with equal contentKeys are identical; see JobBoard.enableDeduplication()
+
+  private static final ThreadLocal<Kryo> kryo = ThreadLocal.withInitial(() -> {
+    Kryo kryo = new Kryo();
+    kryo.setReferences(false); // so an object's bytes don't depend on what was serialized before it
+    kryo.addDefaultSerializer(Map.class, new UnorderedSerializer());
+    kryo.addDefaultSerializer(Set.class, new UnorderedSerializer());
+    return kryo;
+  });
+
+  /**
+   * Sets contentKey to the type and a hash of the request serialized with Kryo.
+   * Maps and Sets in the request are hashed independently of their iteration order,
+   * so requests of the same classes with equal contents get equal keys.  The request must not contain cycles.
+   */
+  public JobDTO contentKeyFromRequest() {
+    Output output = new Output(256, -1);
+    kryo.get().writeClassAndObject(output, request);
+    contentKey = type + ":" + Hashing.sha256().hashBytes(output.getBuffer(), 0, output.position());
+    return this;
+  }
+
+  /**
+   * Writes a Map's entries or a Set's elements sorted by their serialized bytes.
+   * Only used for hashing, so it cannot read.
+   */
+  private static class UnorderedSerializer extends Serializer<Object> {
+    @Override
+    public void write(Kryo kryo, Output output, Object obj) {
+      Collection<?> items = (obj instanceof Map) ? ((Map<?, ?>) obj).entrySet() : (Collection<?>) obj;
+      List<byte[]> serializedItems = new ArrayList<>(items.size());
+      for (Object item : items) {
+        Output itemOutput = new Output(64, -1);
+        if (obj instanceof Map) {
+          kryo.writeClassAndObject(itemOutput, ((Map.Entry<?, ?>) item).getKey());
+          kryo.writeClassAndObject(itemOutput, ((Map.Entry<?, ?>) item).getValue());
+        } else {
+          kryo.writeClassAndObject(itemOutput, item);
+        }
+        serializedItems.add(itemOutput.toBytes());
+      }
+      serializedItems.sort(UnsignedBytes.lexicographicalComparator());
+      output.writeInt(serializedItems.size(), true);
+      serializedItems.forEach(output::writeBytes);
+    }
+
+    @Override
+    public Object read(Kryo kryo, Input input, Class<Object> type) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  public JobDTO requireCapabilities(String... capabilities){
+    if(requiredCapabilities==null)
+      requiredCapabilities=new HashSet<>();
+    requiredCapabilities.addAll(Arrays.asList(capabilities));
+    return this;
+  }
+
+  public JobDTO preferLocations(String... locations){
+    if(preferredLocations==null)
+      preferredLocations=new HashSet<>();
+    preferredLocations.addAll(Arrays.asList(locations));
+    return this;
+  }
+
 }
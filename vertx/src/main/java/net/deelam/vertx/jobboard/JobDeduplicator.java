@@ -0,0 +1,112 @@
+package net.deelam.vertx.jobboard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.RequiredArgsConstructor;
+import net.deelam.vertx.jobboard.JobBoard.JobItem;
+
+/**
+ * Tracks jobs by JobDTO.contentKey for JobBoard.enableDeduplication().
+ * The first unfinished job with a contentKey is its leader; identical jobs added while it is unfinished
+ * are its followers and finish when it does.  Content keys of recently completed jobs are cached,
+ * evicting the least recently used beyond cacheSize; entries older than ttlMillis are ignored.
+ *
+ * Only accessed from the JobBoard's event-loop.
+ */
+@RequiredArgsConstructor
+class JobDeduplicator {
+  private final int cacheSize;
+  private final long ttlMillis;
+
+  private final Map<String, JobItem> leaders = new HashMap<>(); // contentKey -> unfinished job
+  private final Map<String, List<JobItem>> followers = new HashMap<>(); // contentKey -> jobs waiting for the leader
+
+  // contentKey -> time the job completed, in access order
+  @SuppressWarnings("serial")
+  private final LinkedHashMap<String, Long> completed = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+      return size() > cacheSize;
+    }
+  };
+
+  private int cacheHits = 0;
+
+  boolean isCompleted(String contentKey, long now) {
+    Long completedTime = completed.get(contentKey);
+    if (completedTime == null)
+      return false;
+    if (now - completedTime > ttlMillis) {
+      completed.remove(contentKey);
+      return false;
+    }
+    ++cacheHits;
+    return true;
+  }
+
+  /**
+   * @return leader for ji's contentKey, after adding ji as its follower;
+   *     or null if ji becomes the leader
+   */
+  JobItem addJob(JobItem ji) {
+    String contentKey = ji.jobJO.contentKey;
+    JobItem leader = leaders.putIfAbsent(contentKey, ji);
+    if (leader == null)
+      return null;
+    followers.computeIfAbsent(contentKey, k -> new ArrayList<>()).add(ji);
+    return leader;
+  }
+
+  /**
+   * Called when a leader is DONE or FAILED.
+   * @return followers of the leader, which should end in the same state
+   */
+  List<JobItem> leaderEnded(JobItem leader, boolean succeeded, long now) {
+    String contentKey = leader.jobJO.contentKey;
+    if (contentKey == null || leaders.get(contentKey) != leader)
+      return Collections.emptyList();
+    leaders.remove(contentKey);
+    if (succeeded)
+      completed.put(contentKey, now);
+    List<JobItem> jobs = followers.remove(contentKey);
+    return (jobs == null) ? Collections.emptyList() : jobs;
+  }
+
+  /**
+   * Called when an unfinished job is removed or replaced.
+   * @return the follower that replaces the removed leader, or null
+   */
+  JobItem jobRemoved(JobItem ji) {
+    String contentKey = ji.jobJO.contentKey;
+    if (contentKey == null)
+      return null;
+    List<JobItem> jobs = followers.get(contentKey);
+    if (leaders.get(contentKey) != ji) {
+      if (jobs != null && jobs.remove(ji) && jobs.isEmpty())
+        followers.remove(contentKey);
+      return null;
+    }
+    if (jobs == null) {
+      leaders.remove(contentKey);
+      return null;
+    }
+    JobItem newLeader = jobs.remove(0);
+    if (jobs.isEmpty())
+      followers.remove(contentKey);
+    leaders.put(contentKey, newLeader);
+    return newLeader;
+  }
+
+  int leaderCount() {
+    return leaders.size();
+  }
+
+  int cacheHits() {
+    return cacheHits;
+  }
+}
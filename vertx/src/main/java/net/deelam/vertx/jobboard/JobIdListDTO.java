@@ -0,0 +1,20 @@
+package net.deelam.vertx.jobboard;
+
+import java.util.List;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+/**
+ * Ids of jobs to remove with one REMOVE_JOBS message.
+ */
+@Accessors(chain = true)
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@Data
+public class JobIdListDTO {
+  List<String> jobIds;
+}
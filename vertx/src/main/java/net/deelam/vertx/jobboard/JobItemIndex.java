@@ -0,0 +1,195 @@
+package net.deelam.vertx.jobboard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import net.deelam.vertx.jobboard.JobBoard.JobItem;
+import net.deelam.vertx.jobboard.JobBoard.JobItem.JobState;
+
+/**
+ * Holds the JobBoard's JobItems along with secondary indexes so that finding AVAILABLE jobs
+ * and counting jobs per state do not require scanning all jobItems,
+ * which includes DONE and FAILED jobs that have not been removed.
+ *
+ * All state changes of an indexed JobItem must go through setState(), which notifies Listeners.
+ * Not thread-safe; only accessed from the JobBoard's event-loop.
+ */
+class JobItemIndex {
+
+  interface Listener {
+    default void jobAdded(JobItem ji) {}
+
+    default void jobRemoved(JobItem ji) {}
+
+    default void jobStateChanged(JobItem ji, JobState oldState) {}
+  }
+
+  private final List<Listener> listeners = new ArrayList<>();
+
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  // jobId -> JobItem
+  private final Map<String, JobItem> jobItems = new LinkedHashMap<>();
+
+  private final Map<JobState, Set<JobItem>> byState = new EnumMap<>(JobState.class);
+
+  // jobType -> tenant -> AVAILABLE jobs in offer order
+  private final Map<String, Map<String, TreeSet<JobItem>>> availableByType = new HashMap<>();
+
+  static final Comparator<JobItem> OFFER_ORDER = Comparator
+      .comparingInt((JobItem ji) -> -ji.jobJO.priority)
+      .thenComparingLong(ji -> ji.jobJO.deadline == 0 ? Long.MAX_VALUE : ji.jobJO.deadline)
+      .thenComparingLong(ji -> ji.availableSeq);
+
+  private long availableCounter = 0;
+
+  // jobType -> number of jobs per state
+  private final Map<String, int[]> countsByType = new HashMap<>();
+
+  JobItemIndex() {
+    for (JobState state : JobState.values())
+      byState.put(state, new LinkedHashSet<>());
+  }
+
+  public int size() {
+    return jobItems.size();
+  }
+
+  public JobItem get(String jobId) {
+    return jobItems.get(jobId);
+  }
+
+  /**
+   * Adds the job, replacing any existing job with the same id.
+   * @return the replaced JobItem or null
+   */
+  public JobItem put(JobItem ji) {
+    JobItem existing = jobItems.put(ji.getId(), ji);
+    if (existing != null) {
+      unindex(existing);
+      listeners.forEach(l -> l.jobRemoved(existing));
+    }
+    index(ji);
+    listeners.forEach(l -> l.jobAdded(ji));
+    return existing;
+  }
+
+  public JobItem remove(String jobId) {
+    JobItem ji = jobItems.remove(jobId);
+    if (ji != null) {
+      unindex(ji);
+      listeners.forEach(l -> l.jobRemoved(ji));
+    }
+    return ji;
+  }
+
+  public void setState(JobItem ji, JobState newState) {
+    if (ji.state == newState)
+      return;
+    boolean indexed = (jobItems.get(ji.getId()) == ji);
+    if (indexed)
+      unindex(ji);
+    JobState oldState = ji.state;
+    ji.state = newState;
+    if (indexed) {
+      index(ji);
+      listeners.forEach(l -> l.jobStateChanged(ji, oldState));
+    }
+  }
+
+  public Collection<JobItem> getJobs() {
+    return Collections.unmodifiableCollection(jobItems.values());
+  }
+
+  public int count(JobState state) {
+    return byState.get(state).size();
+  }
+
+  public int count(String jobType, JobState state) {
+    int[] counts = countsByType.get(jobType);
+    return (counts == null) ? 0 : counts[state.ordinal()];
+  }
+
+  public Collection<String> getJobTypes() {
+    return Collections.unmodifiableSet(countsByType.keySet());
+  }
+
+  public Collection<JobItem> getJobs(JobState state) {
+    return Collections.unmodifiableSet(byState.get(state));
+  }
+
+  /**
+   * @param jobType if null, returns AVAILABLE jobs of all types in the order they became available
+   * @return AVAILABLE jobs ordered by priority, deadline, and then the order they became available
+   */
+  public Collection<JobItem> getAvailableJobs(String jobType) {
+    if (jobType == null)
+      return getJobs(JobState.AVAILABLE);
+    Map<String, TreeSet<JobItem>> byTenant = availableByType.get(jobType);
+    if (byTenant == null)
+      return Collections.emptySet();
+    if (byTenant.size() == 1)
+      return Collections.unmodifiableSortedSet(byTenant.values().iterator().next());
+    TreeSet<JobItem> jobs = new TreeSet<>(OFFER_ORDER);
+    byTenant.values().forEach(jobs::addAll);
+    return jobs;
+  }
+
+  /**
+   * @return tenant -> AVAILABLE jobs of jobType, each ordered as in getAvailableJobs()
+   */
+  public Map<String, ? extends SortedSet<JobItem>> getAvailableJobsByTenant(String jobType) {
+    Map<String, TreeSet<JobItem>> byTenant = availableByType.get(jobType);
+    return (byTenant == null) ? Collections.emptyMap() : Collections.unmodifiableMap(byTenant);
+  }
+
+  private void index(JobItem ji) {
+    if (ji.state == null)
+      return;
+    byState.get(ji.state).add(ji);
+    ++countsByType.computeIfAbsent(ji.jobJO.getType(), k -> new int[JobState.values().length])[ji.state.ordinal()];
+    if (ji.state == JobState.AVAILABLE) {
+      ji.availableSeq = ++availableCounter;
+      ji.availableTime = System.currentTimeMillis();
+      availableByType.computeIfAbsent(ji.jobJO.getType(), k -> new LinkedHashMap<>())
+          .computeIfAbsent(ji.tenant, k -> new TreeSet<>(OFFER_ORDER)).add(ji);
+    } else if (ji.state == JobState.DONE || ji.state == JobState.FAILED) {
+      ji.finishedTime = System.currentTimeMillis();
+    }
+  }
+
+  private void unindex(JobItem ji) {
+    if (ji.state == null)
+      return;
+    byState.get(ji.state).remove(ji);
+    int[] counts = countsByType.get(ji.jobJO.getType());
+    if (--counts[ji.state.ordinal()] == 0 && Arrays.stream(counts).allMatch(c -> c == 0))
+      countsByType.remove(ji.jobJO.getType());
+    if (ji.state == JobState.AVAILABLE) {
+      Map<String, TreeSet<JobItem>> byTenant = availableByType.get(ji.jobJO.getType());
+      Set<JobItem> jobs = (byTenant == null) ? null : byTenant.get(ji.tenant);
+      if (jobs != null) {
+        jobs.remove(ji);
+        if (jobs.isEmpty()) {
+          byTenant.remove(ji.tenant);
+          if (byTenant.isEmpty())
+            availableByType.remove(ji.jobJO.getType());
+        }
+      }
+    }
+  }
+}
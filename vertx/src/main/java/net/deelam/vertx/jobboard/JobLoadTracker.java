@@ -0,0 +1,88 @@
+package net.deelam.vertx.jobboard;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import net.deelam.vertx.jobboard.JobBoard.JobItem;
+import net.deelam.vertx.jobboard.JobBoard.JobItem.JobState;
+
+/**
+ * Counts jobs added and finished (DONE or FAILED) per job type, from which sample() computes arrival and
+ * drain rates as exponentially weighted moving averages over sampling intervals.
+ *
+ * Only accessed from the JobBoard's event-loop.
+ */
+class JobLoadTracker implements JobItemIndex.Listener {
+
+  private static class Load {
+    long arrivals = 0;
+    long drained = 0;
+    long sampledArrivals = 0;
+    long sampledDrained = 0;
+    double arrivalRate = 0;
+    double drainRate = 0;
+    boolean sampled = false;
+  }
+
+  private final double smoothing; // weight of the latest interval
+  private final Map<String, Load> loads = new HashMap<>();
+  private long lastSampleTime;
+
+  JobLoadTracker(double smoothing, long now) {
+    this.smoothing = smoothing;
+    this.lastSampleTime = now;
+  }
+
+  private Load load(JobItem ji) {
+    return loads.computeIfAbsent(ji.jobJO.getType(), k -> new Load());
+  }
+
+  private static boolean isFinished(JobState state) {
+    return state == JobState.DONE || state == JobState.FAILED;
+  }
+
+  @Override
+  public void jobAdded(JobItem ji) {
+    Load load = load(ji);
+    ++load.arrivals;
+    if (isFinished(ji.state)) // e.g., a duplicate of a recently completed job
+      ++load.drained;
+  }
+
+  @Override
+  public void jobStateChanged(JobItem ji, JobState oldState) {
+    if (!isFinished(oldState) && isFinished(ji.state))
+      ++load(ji).drained;
+  }
+
+  void sample(long now) {
+    double seconds = (now - lastSampleTime) / 1000.0;
+    if (seconds <= 0)
+      return;
+    for (Load load : loads.values()) {
+      double arrivalRate = (load.arrivals - load.sampledArrivals) / seconds;
+      double drainRate = (load.drained - load.sampledDrained) / seconds;
+      load.arrivalRate = load.sampled ? smoothing * arrivalRate + (1 - smoothing) * load.arrivalRate : arrivalRate;
+      load.drainRate = load.sampled ? smoothing * drainRate + (1 - smoothing) * load.drainRate : drainRate;
+      load.sampledArrivals = load.arrivals;
+      load.sampledDrained = load.drained;
+      load.sampled = true;
+    }
+    lastSampleTime = now;
+  }
+
+  Set<String> getJobTypes() {
+    return loads.keySet();
+  }
+
+  double arrivalRate(String jobType) {
+    Load load = loads.get(jobType);
+    return (load == null) ? 0 : load.arrivalRate;
+  }
+
+  double drainRate(String jobType) {
+    Load load = loads.get(jobType);
+    return (load == null) ? 0 : load.drainRate;
+  }
+}
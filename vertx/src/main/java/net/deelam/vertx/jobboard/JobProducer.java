@@ -1,11 +1,22 @@
 package net.deelam.vertx.jobboard;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Context;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
@@ -30,13 +41,26 @@ public class JobProducer extends AbstractVerticle {
 
     KryoMessageCodec.register(vertx.eventBus(), JobDTO.class);
     KryoMessageCodec.register(vertx.eventBus(), JobListDTO.class);
+    KryoMessageCodec.register(vertx.eventBus(), JobIdListDTO.class);
+    KryoMessageCodec.register(vertx.eventBus(), JobSubscriptionDTO.class);
+    KryoMessageCodec.register(vertx.eventBus(), JobUpdatesDTO.class);
 
-    waiter = new ServiceWaiter(vertx, serviceType);
-    waiter.listenAndBroadcast();
+    if (shards == null) {
+      waiter = new ServiceWaiter(vertx, serviceType);
+      resolveShardAsync(0, waiter.listenAndBroadcast());
+    } else {
+      for (int i = 0; i < shards.getShardCount(); ++i) {
+        ServiceWaiter shardWaiter = new ServiceWaiter(vertx, shards.getShardServiceType(i));
+        resolveShardAsync(i, shardWaiter.listenAndBroadcast());
+        if (i == 0)
+          waiter = shardWaiter;
+      }
+    }
 
     log.info("Ready: deploymentID={} JobProducer for: {}", deploymentID(), serviceType);
   }
 
+  // blocks until the JobBoard (or the first shard) is found, so don't call it on the event-loop
   @Getter(lazy = true)
   private final String jobBoardPrefix = waitUntilReady();
   private ServiceWaiter waiter;
@@ -45,8 +69,103 @@ public class JobProducer extends AbstractVerticle {
     return waiter.awaitServiceAddress();
   }
 
+  /**
+   * If set, jobs are added to the JobBoard shard determined by shards.
+   * With ShardBy.JOB_TYPE, the shard of each added job is remembered, so the job can be removed or queried by id,
+   * until the job is removed or, once a completion or failure handler receives its end, until many later jobs end.
+   * Must be called before this verticle is deployed.
+   */
+  @Setter
+  private JobBoardShards shards;
+
+  // JobBoard prefix of each shard (or of the only JobBoard if not sharded), or null until the JobBoard is found
+  private final List<String> shardPrefixes = new ArrayList<>();
+  // shard -> sends waiting, in order, for the shard's JobBoard to be found
+  private final Map<Integer, List<Handler<String>>> pendingSends = new HashMap<>();
+
+  private void resolveShardAsync(int shard, CompletableFuture<String> prefixF) {
+    shardPrefixes.add(null);
+    prefixF.thenAccept(prefix -> eventLoopContext.runOnContext(v -> {
+      shardPrefixes.set(shard, prefix);
+      List<Handler<String>> sends = pendingSends.remove(shard);
+      if (sends != null)
+        sends.forEach(send -> send.handle(prefix));
+    }));
+  }
+
+  /**
+   * Called on the event-loop.  Rather than blocking the event-loop until the shard's JobBoard is found,
+   * send is queued until then.
+   */
+  private void withJobBoardPrefix(int shard, Handler<String> send) {
+    String prefix = shardPrefixes.get(shard);
+    if (prefix != null)
+      send.handle(prefix);
+    else
+      pendingSends.computeIfAbsent(shard, k -> new ArrayList<>()).add(send);
+  }
+
+  private void withEachJobBoardPrefix(Handler<String> send) {
+    for (int shard = 0; shard < shardPrefixes.size(); ++shard)
+      withJobBoardPrefix(shard, send);
+  }
+  // when sharding by JOB_TYPE, jobId -> shard of jobs added by this producer that have not ended or been removed
+  private final Map<String, Integer> jobShards = new HashMap<>();
+  // jobId -> shard of the latest jobs that ended, so they can still be removed or queried for a while
+  private final LinkedHashMap<String, Integer> endedJobShards = new LinkedHashMap<>();
+  private static final int MAX_ENDED_JOB_SHARDS = 10000;
+
+  /**
+   * Called on the event-loop when the job's completion or failure notification is received.
+   */
+  private void jobEnded(String jobId) {
+    Integer shard = jobShards.remove(jobId);
+    if (shard == null)
+      return;
+    endedJobShards.put(jobId, shard);
+    if (endedJobShards.size() > MAX_ENDED_JOB_SHARDS) {
+      Iterator<String> eldest = endedJobShards.keySet().iterator();
+      eldest.next();
+      eldest.remove();
+    }
+  }
+
+  private void forgetJobShard(String jobId) {
+    if (jobShards.remove(jobId) == null)
+      endedJobShards.remove(jobId);
+  }
+
+  private int shardOf(JobDTO job) {
+    if (shards == null)
+      return 0;
+    int shard = shards.shardOf(job);
+    if (shards.getShardBy() == JobBoardShards.ShardBy.JOB_TYPE)
+      jobShards.put(job.getId(), shard);
+    return shard;
+  }
+
+  /**
+   * @return null if the job's shard is unknown, after failing replyHandler
+   */
+  private Integer shardOf(String jobId, Handler<AsyncResult<Message<JobDTO>>> replyHandler) {
+    if (shards == null)
+      return 0;
+    Integer shard;
+    if (shards.getShardBy() == JobBoardShards.ShardBy.JOB_ID)
+      shard = shards.shardOfJobId(jobId);
+    else if ((shard = jobShards.get(jobId)) == null)
+      shard = endedJobShards.get(jobId);
+    if (shard == null) {
+      replyHandler.handle(Future.failedFuture("Unknown shard for job not added by this producer: " + jobId));
+      return null;
+    }
+    return shard;
+  }
+
   private String jobCompletionAddress = null;
   private String jobFailureAddress = null;
+  private String jobCompletionBatchAddress = null;
+  private String jobFailureBatchAddress = null;
 
   private void waitForEventBus() {
     while (vertx == null || vertx.eventBus() == null)
@@ -62,37 +181,211 @@ public class JobProducer extends AbstractVerticle {
     waitForEventBus();
     jobCompletionAddress = deploymentID() + "-jobComplete";
     log.info("add jobCompletionHandler to address={}", jobCompletionAddress);
-    vertx.eventBus().consumer(jobCompletionAddress, jobCompletionHandler);
+    vertx.eventBus().consumer(jobCompletionAddress, (Message<JobDTO> msg) -> {
+      forgetEndedJob(msg.body());
+      jobCompletionHandler.handle(msg);
+    });
   }
 
   public <T> void addJobFailureHandler(Handler<Message<JobDTO>> jobFailureHandler) {
     waitForEventBus();
     jobFailureAddress = deploymentID() + "-jobFailed";
     log.info("add jobFailureHandler to address={}", jobFailureAddress);
-    vertx.eventBus().consumer(jobFailureAddress, jobFailureHandler);
+    vertx.eventBus().consumer(jobFailureAddress, (Message<JobDTO> msg) -> {
+      forgetEndedJob(msg.body());
+      jobFailureHandler.handle(msg);
+    });
+  }
+
+  /**
+   * Completed jobs are sent in batches (JobListDTO) rather than one message per job.
+   * @see JobBoard#batchNotifications(long, int)
+   */
+  public void addJobCompletionBatchHandler(Handler<Message<JobListDTO>> jobCompletionBatchHandler) {
+    waitForEventBus();
+    jobCompletionBatchAddress = deploymentID() + "-jobsComplete";
+    log.info("add jobCompletionBatchHandler to address={}", jobCompletionBatchAddress);
+    vertx.eventBus().consumer(jobCompletionBatchAddress, (Message<JobListDTO> msg) -> {
+      msg.body().jobs.forEach(this::forgetEndedJob);
+      jobCompletionBatchHandler.handle(msg);
+    });
+  }
+
+  public void addJobFailureBatchHandler(Handler<Message<JobListDTO>> jobFailureBatchHandler) {
+    waitForEventBus();
+    jobFailureBatchAddress = deploymentID() + "-jobsFailed";
+    log.info("add jobFailureBatchHandler to address={}", jobFailureBatchAddress);
+    vertx.eventBus().consumer(jobFailureBatchAddress, (Message<JobListDTO> msg) -> {
+      msg.body().jobs.forEach(this::forgetEndedJob);
+      jobFailureBatchHandler.handle(msg);
+    });
+  }
+
+  private void forgetEndedJob(JobDTO job) {
+    if (shards != null && shards.getShardBy() == JobBoardShards.ShardBy.JOB_TYPE)
+      eventLoopContext.runOnContext(v -> jobEnded(job.getId())); // handlers may run on another context
+  }
+
+  /**
+   * Jobs are added as this tenant's jobs (see JobBoard.setTenantShare()).  By default, each JobProducer is its own tenant.
+   */
+  @Setter
+  private String tenant;
+
+  private DeliveryOptions createProducerHeader() {
+    DeliveryOptions deliveryOpts = JobBoard.createProducerHeader(jobCompletionAddress, jobFailureAddress, 0,
+        jobCompletionBatchAddress, jobFailureBatchAddress);
+    return JobBoard.addTenantHeader(deliveryOpts, (tenant == null) ? deploymentID() : tenant);
   }
 
   public void addJob(JobDTO job) {
     eventLoopContext.runOnContext((v) -> {
-      DeliveryOptions deliveryOpts = JobBoard.createProducerHeader(jobCompletionAddress, jobFailureAddress, 0);
-      vertx.eventBus().send(getJobBoardPrefix() + BUS_ADDR.ADD_JOB, job, deliveryOpts, addJobReplyHandler);
+      DeliveryOptions deliveryOpts = createProducerHeader();
+      withJobBoardPrefix(shardOf(job),
+          prefix -> vertx.eventBus().send(prefix + BUS_ADDR.ADD_JOB, job, deliveryOpts, addJobReplyHandler));
+    });
+  }
+
+  /**
+   * Adds jobs in one ADD_JOBS message per JobBoard (or per shard), so JobBoard negotiates with workers
+   * once for the batch rather than once per job.  addJobReplyHandler is called once per message.
+   */
+  public void addJobs(List<JobDTO> jobs) {
+    eventLoopContext.runOnContext((v) -> {
+      DeliveryOptions deliveryOpts = createProducerHeader();
+      Map<Integer, List<JobDTO>> jobsByShard = new LinkedHashMap<>();
+      for (JobDTO job : jobs)
+        jobsByShard.computeIfAbsent(shardOf(job), k -> new ArrayList<>()).add(job);
+      jobsByShard.forEach((shard, shardJobs) -> withJobBoardPrefix(shard, prefix -> vertx.eventBus()
+          .send(prefix + BUS_ADDR.ADD_JOBS, new JobListDTO(shardJobs), deliveryOpts, addJobReplyHandler)));
     });
   }
 
   public void removeJob(String jobId, Handler<AsyncResult<Message<JobDTO>>> removeJobReplyHandler) {
+    Handler<AsyncResult<Message<JobDTO>>> replyHandler =
+        (removeJobReplyHandler == null) ? this.removeJobReplyHandler : removeJobReplyHandler;
     eventLoopContext.runOnContext((v) -> {
-      vertx.eventBus().send(getJobBoardPrefix() + BUS_ADDR.REMOVE_JOB, jobId,
-          (removeJobReplyHandler == null) ? this.removeJobReplyHandler : removeJobReplyHandler);
+      Integer shard = shardOf(jobId, replyHandler);
+      if (shard != null)
+        withJobBoardPrefix(shard, prefix -> vertx.eventBus().send(prefix + BUS_ADDR.REMOVE_JOB, jobId,
+            (AsyncResult<Message<JobDTO>> reply) -> {
+              if (reply.succeeded())
+                forgetJobShard(jobId);
+              replyHandler.handle(reply);
+            }));
+    });
+  }
+
+  /**
+   * Removes jobs in one REMOVE_JOBS message per JobBoard (or per shard).  The reply handler is called once per message,
+   * and once per job whose shard is unknown.
+   */
+  public void removeJobs(Collection<String> jobIds, Handler<AsyncResult<Message<JobDTO>>> removeJobsReplyHandler) {
+    Handler<AsyncResult<Message<JobDTO>>> replyHandler =
+        (removeJobsReplyHandler == null) ? this.removeJobReplyHandler : removeJobsReplyHandler;
+    eventLoopContext.runOnContext((v) -> {
+      Map<Integer, List<String>> jobIdsByShard = new LinkedHashMap<>();
+      for (String jobId : jobIds) {
+        Integer shard = shardOf(jobId, replyHandler);
+        if (shard != null)
+          jobIdsByShard.computeIfAbsent(shard, k -> new ArrayList<>()).add(jobId);
+      }
+      jobIdsByShard.forEach((shard, shardJobIds) -> withJobBoardPrefix(shard, prefix -> vertx.eventBus()
+          .send(prefix + BUS_ADDR.REMOVE_JOBS, new JobIdListDTO(shardJobIds), (AsyncResult<Message<JobDTO>> reply) -> {
+            if (reply.succeeded())
+              for (String jobId : shardJobIds)
+                forgetJobShard(jobId);
+            replyHandler.handle(reply);
+          })));
     });
   }
 
   public void getProgress(String jobId, Handler<AsyncResult<Message<JobDTO>>> handler) {
+    Handler<AsyncResult<Message<JobDTO>>> replyHandler = (handler == null) ? this.progressReplyHandler : handler;
     eventLoopContext.runOnContext((v) -> {
-      vertx.eventBus().send(getJobBoardPrefix() + BUS_ADDR.GET_PROGRESS, jobId,
-          (handler == null) ? this.progressReplyHandler : handler);
+      Integer shard = shardOf(jobId, replyHandler);
+      if (shard != null)
+        withJobBoardPrefix(shard, prefix -> vertx.eventBus().send(prefix + BUS_ADDR.GET_PROGRESS, jobId, replyHandler));
     });
   }
 
+  private final Map<String, MessageConsumer<JobUpdatesDTO>> subscriptions = new HashMap<>();
+  // subscriberAddr -> extensions waiting for the subscription to be sent
+  private final Map<String, List<JobSubscriptionDTO>> pendingExtensions = new HashMap<>();
+  private int subscriptionCounter = 0;
+
+  /**
+   * Subscribes to state changes of the jobs selected by subscription (with each JobBoard shard),
+   * starting with their current states.
+   * The handler is called on this verticle's event-loop with each batch; the next batches are sent
+   * as the handler returns, so a slow handler receives fewer, larger batches rather than a growing backlog.
+   * @return subscriberAddr to pass to unsubscribe()
+   */
+  public String subscribe(JobSubscriptionDTO subscription, Handler<JobUpdatesDTO> updatesHandler) {
+    waitForEventBus();
+    String subscriberAddr = deploymentID() + "-jobUpdates" + (++subscriptionCounter);
+    subscription.setSubscriberAddr(subscriberAddr);
+    eventLoopContext.runOnContext((v) -> {
+      MessageConsumer<JobUpdatesDTO> consumer =
+          vertx.eventBus().consumer(subscriberAddr, (Message<JobUpdatesDTO> msg) -> {
+            try {
+              updatesHandler.handle(msg.body());
+            } finally {
+              msg.reply(null); // ready for more updates
+            }
+          });
+      subscriptions.put(subscriberAddr, consumer);
+      pendingExtensions.put(subscriberAddr, new ArrayList<>());
+      consumer.completionHandler(registered -> {
+        withEachJobBoardPrefix(
+            prefix -> vertx.eventBus().send(prefix + BUS_ADDR.SUBSCRIBE, subscription, subscribeReplyHandler));
+        List<JobSubscriptionDTO> extensions = pendingExtensions.remove(subscriberAddr);
+        if (extensions != null)
+          extensions.forEach(this::sendExtension);
+      });
+    });
+    return subscriberAddr;
+  }
+
+  /**
+   * Adds jobIds to a subscription to job ids (see JobSubscriptionDTO.forJobIds()), so that one long-lived
+   * subscription can follow jobs as they are added, rather than subscribing for each job.
+   */
+  public void extendSubscription(String subscriberAddr, Collection<String> jobIds) {
+    JobSubscriptionDTO extension = JobSubscriptionDTO.forJobIds(jobIds).setSubscriberAddr(subscriberAddr);
+    eventLoopContext.runOnContext((v) -> {
+      List<JobSubscriptionDTO> extensions = pendingExtensions.get(subscriberAddr);
+      if (extensions != null) // subscription hasn't been sent yet
+        extensions.add(extension);
+      else if (subscriptions.containsKey(subscriberAddr))
+        sendExtension(extension);
+      else
+        log.warn("Not extending unknown subscription: {}", subscriberAddr);
+    });
+  }
+
+  private void sendExtension(JobSubscriptionDTO extension) {
+    withEachJobBoardPrefix(
+        prefix -> vertx.eventBus().send(prefix + BUS_ADDR.EXTEND_SUBSCRIPTION, extension, subscribeReplyHandler));
+  }
+
+  public void unsubscribe(String subscriberAddr) {
+    eventLoopContext.runOnContext((v) -> {
+      withEachJobBoardPrefix(
+          prefix -> vertx.eventBus().send(prefix + BUS_ADDR.UNSUBSCRIBE, subscriberAddr, subscribeReplyHandler));
+      pendingExtensions.remove(subscriberAddr);
+      MessageConsumer<JobUpdatesDTO> consumer = subscriptions.remove(subscriberAddr);
+      if (consumer != null)
+        consumer.unregister();
+    });
+  }
+
+  @Setter
+  private Handler<AsyncResult<Message<Object>>> subscribeReplyHandler = (reply) -> {
+    if (reply.failed())
+      log.error("subscription request failed: ", reply.cause());
+  };
+
   @Setter
   private Handler<AsyncResult<Message<JobDTO>>> addJobReplyHandler = (reply) -> {
     if (reply.succeeded()) {
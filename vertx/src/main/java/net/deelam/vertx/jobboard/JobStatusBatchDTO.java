@@ -0,0 +1,30 @@
+package net.deelam.vertx.jobboard;
+
+import java.util.List;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+import net.deelam.vertx.jobboard.JobBoard.BUS_ADDR;
+
+/**
+ * Status updates coalesced by a JobConsumer and applied by JobBoard in one handler call.
+ */
+@Accessors(chain = true)
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@Data
+public class JobStatusBatchDTO {
+  List<JobStatus> statuses;
+
+  @Accessors(chain = true)
+  @AllArgsConstructor
+  @NoArgsConstructor(access = AccessLevel.PRIVATE)
+  @Data
+  public static class JobStatus {
+    BUS_ADDR method; // SET_PROGRESS, HEARTBEAT, PARTLY_DONE, DONE, or FAIL
+    JobDTO job;
+  }
+}
@@ -0,0 +1,54 @@
+package net.deelam.vertx.jobboard;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+/**
+ * Sent to JobBoard's SUBSCRIBE address to receive JobUpdatesDTOs at subscriberAddr
+ * whenever jobs with the given ids, or of the given type, change state.
+ * If neither jobIds nor jobType is set, updates for all jobs are sent.
+ * A subscription to jobIds can be extended with more ids (see JobProducer.extendSubscription());
+ * an id is dropped from it once its job is removed from the JobBoard.
+ *
+ * Updates are coalesced per job and sent at most every batchMillis, or sooner when maxBatchSize is reached.
+ * At most maxUnackedBatches are sent before the subscriber replies to them; meanwhile updates are coalesced,
+ * so a slow subscriber receives only the latest state of each job.
+ */
+@Accessors(chain = true)
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@Data
+public class JobSubscriptionDTO {
+  String subscriberAddr; // set by JobProducer.subscribe()
+  Set<String> jobIds;
+  String jobType;
+
+  long batchMillis = 100;
+  int maxBatchSize = 1000;
+  int maxUnackedBatches = 4;
+
+  public static JobSubscriptionDTO forJobIds(Collection<String> jobIds) {
+    return new JobSubscriptionDTO().setJobIds(new HashSet<>(jobIds));
+  }
+
+  public static JobSubscriptionDTO forJobType(String jobType) {
+    return new JobSubscriptionDTO().setJobType(jobType);
+  }
+
+  public static JobSubscriptionDTO forAllJobs() {
+    return new JobSubscriptionDTO();
+  }
+
+  boolean matches(JobDTO job) {
+    if (jobIds != null)
+      return jobIds.contains(job.getId());
+    if (jobType != null)
+      return jobType.equals(job.getType());
+    return true;
+  }
+}
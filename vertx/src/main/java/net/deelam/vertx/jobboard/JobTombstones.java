@@ -0,0 +1,132 @@
+package net.deelam.vertx.jobboard;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import net.deelam.vertx.jobboard.JobBoard.JobItem;
+import net.deelam.vertx.jobboard.JobBoard.JobItem.JobState;
+
+/**
+ * Fixed-capacity record of jobs removed by JobBoardRetention, kept in parallel arrays rather than per-job objects.
+ * When full, adding a tombstone overwrites the oldest one.
+ * Lookup by jobId uses an open-addressing table of slot numbers, so there are no boxed keys or map entries.
+ *
+ * Not thread-safe; only accessed from the JobBoard's event-loop.
+ */
+class JobTombstones {
+  private static final JobState[] STATES = JobState.values();
+
+  private final String[] ids;
+  private final String[] types;
+  private final byte[] states;
+  private final int[] failedCounts;
+  private final long[] startedTimes;
+  private final long[] finishedTimes;
+  private int next = 0; // slot to write next; the oldest tombstone when full
+  private int size = 0;
+
+  // (slot + 1) of tombstones, at the position given by hash(jobId); 0 means empty
+  private final int[] table;
+  private final int mask;
+
+  @Getter
+  @ToString
+  @AllArgsConstructor
+  static class Tombstone {
+    final String jobId;
+    final String jobType;
+    final JobState state;
+    final int jobFailedCount;
+    final long startedTime;
+    final long finishedTime;
+  }
+
+  JobTombstones(int capacity) {
+    checkArgument(capacity > 0, "capacity must be positive");
+    ids = new String[capacity];
+    types = new String[capacity];
+    states = new byte[capacity];
+    failedCounts = new int[capacity];
+    startedTimes = new long[capacity];
+    finishedTimes = new long[capacity];
+    table = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+    mask = table.length - 1;
+  }
+
+  int size() {
+    return size;
+  }
+
+  void add(JobItem ji) {
+    remove(ji.getId());
+    int slot = next;
+    next = (next + 1) % ids.length;
+    if (ids[slot] != null)
+      removeAt(find(ids[slot]));
+    else
+      ++size;
+    ids[slot] = ji.getId();
+    types[slot] = ji.jobJO.getType();
+    states[slot] = (byte) ji.state.ordinal();
+    failedCounts[slot] = ji.jobFailedCount;
+    startedTimes[slot] = ji.startedTime;
+    finishedTimes[slot] = ji.finishedTime;
+
+    int pos = hash(ji.getId());
+    while (table[pos] != 0)
+      pos = (pos + 1) & mask;
+    table[pos] = slot + 1;
+  }
+
+  Tombstone get(String jobId) {
+    int pos = find(jobId);
+    if (pos < 0)
+      return null;
+    int slot = table[pos] - 1;
+    return new Tombstone(ids[slot], types[slot], STATES[states[slot]], failedCounts[slot], startedTimes[slot],
+        finishedTimes[slot]);
+  }
+
+  boolean remove(String jobId) {
+    int pos = find(jobId);
+    if (pos < 0)
+      return false;
+    int slot = table[pos] - 1;
+    removeAt(pos);
+    ids[slot] = null;
+    types[slot] = null;
+    --size;
+    return true;
+  }
+
+  /**
+   * @return position in table or -1
+   */
+  private int find(String jobId) {
+    for (int pos = hash(jobId); table[pos] != 0; pos = (pos + 1) & mask)
+      if (jobId.equals(ids[table[pos] - 1]))
+        return pos;
+    return -1;
+  }
+
+  // backward-shift deletion keeps every entry reachable from its hash position without tombstone markers
+  private void removeAt(int pos) {
+    table[pos] = 0;
+    for (int i = (pos + 1) & mask; table[i] != 0; i = (i + 1) & mask) {
+      int home = hash(ids[table[i] - 1]);
+      boolean reachable = (pos <= i) ? (pos < home && home <= i) : (pos < home || home <= i);
+      if (!reachable) {
+        table[pos] = table[i];
+        table[i] = 0;
+        pos = i;
+      }
+    }
+  }
+
+  private int hash(String jobId) {
+    int h = jobId.hashCode();
+    return (h ^ (h >>> 16)) & mask;
+  }
+}
@@ -0,0 +1,35 @@
+package net.deelam.vertx.jobboard;
+
+import java.util.List;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+/**
+ * Batch of job state changes sent by JobBoard to a subscriber (see JobSubscriptionDTO).
+ * The subscriber replies to each batch to receive more.
+ */
+@Accessors(chain = true)
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@Data
+public class JobUpdatesDTO {
+  public static final String REMOVED = "REMOVED"; // state of a job that was removed from JobBoard
+
+  List<JobUpdate> updates;
+
+  @Accessors(chain = true)
+  @AllArgsConstructor
+  @NoArgsConstructor(access = AccessLevel.PRIVATE)
+  @Data
+  public static class JobUpdate {
+    String jobId;
+    String jobType;
+    String state; // JobBoard's job state or REMOVED
+    int jobFailedCount;
+    long timestamp;
+  }
+}
@@ -0,0 +1,70 @@
+package net.deelam.vertx.jobboard;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Supplier;
+
+import io.vertx.core.Vertx;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * ReplicaScaler that deploys JobConsumer verticles in this Vert.x instance.
+ * A consumer is removed by draining it (see JobConsumer.drain()) and undeploying it once its jobs have ended.
+ */
+@Slf4j
+public class LocalConsumerScaler extends ReplicaScaler {
+  private final Vertx vertx;
+  private final Supplier<JobConsumer> consumerFactory;
+
+  @RequiredArgsConstructor
+  private static class Replica {
+    final JobConsumer consumer;
+    String deploymentId; // null until deployed
+    boolean stopRequested = false;
+  }
+
+  private final Deque<Replica> replicas = new ArrayDeque<>();
+
+  /**
+   * @param consumerFactory creates JobConsumers for jobType
+   */
+  public LocalConsumerScaler(Vertx vertx, String jobType, int minReplicas, int maxReplicas,
+      Supplier<JobConsumer> consumerFactory) {
+    super(jobType, minReplicas, maxReplicas);
+    this.vertx = vertx;
+    this.consumerFactory = consumerFactory;
+  }
+
+  @Override
+  protected void startReplica() {
+    Replica replica = new Replica(consumerFactory.get());
+    replicas.add(replica);
+    vertx.deployVerticle(replica.consumer, res -> {
+      if (res.failed()) {
+        log.error("Could not deploy JobConsumer for " + getJobType(), res.cause());
+        replicas.remove(replica);
+        replicaFailed();
+      } else {
+        replica.deploymentId = res.result();
+        if (replica.stopRequested)
+          drainAndUndeploy(replica);
+      }
+    });
+  }
+
+  @Override
+  protected void stopReplica() {
+    Replica replica = replicas.pollLast(); // most recently started
+    replica.stopRequested = true;
+    if (replica.deploymentId != null)
+      drainAndUndeploy(replica);
+  }
+
+  private void drainAndUndeploy(Replica replica) {
+    replica.consumer.drain(v -> {
+      log.info("Undeploying drained JobConsumer {}", replica.deploymentId);
+      vertx.undeploy(replica.deploymentId);
+    });
+  }
+}
@@ -0,0 +1,112 @@
+package net.deelam.vertx.jobboard;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * WorkerScaler that keeps between minReplicas and maxReplicas workers (replicas) for one job type.
+ * A replica is added when the type has a backlog, no idle workers, and either jobs arrive faster than they drain
+ * or the backlog exceeds backlogPerWorker per worker.  A replica is removed after the type has had no backlog 
+ * and some idle workers for idleIntervals consecutive signals.
+ * At most one replica is added or removed per cooldownMillis.
+ */
+@Slf4j
+@Accessors(chain = true)
+public abstract class ReplicaScaler implements WorkerScaler {
+  @Getter
+  private final String jobType;
+  private final int minReplicas;
+  private final int maxReplicas;
+
+  @Setter
+  private int backlogPerWorker = 10;
+  @Setter
+  private int idleIntervals = 3;
+  @Setter
+  private long cooldownMillis = 5000;
+
+  @Getter
+  private int replicas = 0;
+  private int idleCount = 0;
+  private long lastChangeTime = 0;
+
+  protected ReplicaScaler(String jobType, int minReplicas, int maxReplicas) {
+    checkArgument(minReplicas >= 0, "minReplicas must not be negative");
+    checkArgument(maxReplicas >= minReplicas, "maxReplicas must be at least minReplicas");
+    this.jobType = jobType;
+    this.minReplicas = minReplicas;
+    this.maxReplicas = maxReplicas;
+  }
+
+  /**
+   * Starts minReplicas replicas; otherwise, they are started upon the first signal for the job type.
+   */
+  public void start() {
+    while (replicas < minReplicas)
+      addReplica();
+  }
+
+  @Override
+  public void scale(ScalingSignal signal) {
+    if (!jobType.equals(signal.getJobType()))
+      return;
+    boolean idle = signal.getBacklog() == 0 && signal.getIdleWorkers() > 0;
+    idleCount = idle ? idleCount + 1 : 0;
+    if (replicas < minReplicas) {
+      start();
+      return;
+    }
+
+    long now = System.currentTimeMillis();
+    if (now - lastChangeTime < cooldownMillis)
+      return;
+    if (replicas < maxReplicas && isOverloaded(signal)) {
+      log.info("Adding replica #{} for {}", replicas + 1, signal);
+      addReplica();
+      lastChangeTime = now;
+    } else if (replicas > minReplicas && idleCount >= idleIntervals) {
+      log.info("Removing replica #{} for {}", replicas, signal);
+      removeReplica();
+      lastChangeTime = now;
+      idleCount = 0;
+    }
+  }
+
+  protected boolean isOverloaded(ScalingSignal signal) {
+    if (signal.getBacklog() == 0 || signal.getIdleWorkers() > 0)
+      return false;
+    return signal.getArrivalRate() > signal.getDrainRate()
+        || signal.getBacklog() > backlogPerWorker * Math.max(1, signal.getWorkers());
+  }
+
+  private void addReplica() {
+    ++replicas;
+    startReplica();
+  }
+
+  private void removeReplica() {
+    --replicas;
+    stopReplica();
+  }
+
+  /**
+   * Starts a worker asynchronously.
+   */
+  protected abstract void startReplica();
+
+  /**
+   * Stops a worker started by startReplica() asynchronously, preferably after its running jobs end.
+   */
+  protected abstract void stopReplica();
+
+  /**
+   * Called by subclasses when a replica could not be started or has stopped on its own.
+   */
+  protected void replicaFailed() {
+    --replicas;
+  }
+}
@@ -0,0 +1,30 @@
+package net.deelam.vertx.jobboard;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+/**
+ * Limits how many DONE and FAILED jobs JobBoard keeps (see JobBoard.setRetentionPolicy()).
+ * Every intervalMillis, the oldest finished jobs are removed until all limits are met; a limit of 0 means no limit.
+ * The last maxTombstones removed jobs are remembered as tombstones (id, type, final state, and timestamps)
+ * so GET_PROGRESS still answers for them.
+ */
+@Accessors(chain = true)
+@NoArgsConstructor
+@Data
+public class RetentionPolicy {
+  long maxAgeMillis = 0; // since the job finished
+  int maxJobsPerState = 0; // applies to DONE and FAILED separately
+  long maxPayloadBytes = 0; // total serialized size of finished JobDTOs
+  int maxTombstones = 10000;
+  long intervalMillis = 1000;
+
+  public static RetentionPolicy keepFor(long maxAgeMillis) {
+    return new RetentionPolicy().setMaxAgeMillis(maxAgeMillis);
+  }
+
+  public static RetentionPolicy keepLatest(int maxJobsPerState) {
+    return new RetentionPolicy().setMaxJobsPerState(maxJobsPerState);
+  }
+}
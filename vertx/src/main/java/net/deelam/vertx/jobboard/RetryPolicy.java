@@ -0,0 +1,34 @@
+package net.deelam.vertx.jobboard;
+
+import java.util.Random;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+/**
+ * Determines how long a failed job waits before it is offered again, and whether it is
+ * offered to the worker that last failed it.
+ * The delay after the n-th failure is initialDelayMillis * multiplier^(n-1), capped at maxDelayMillis,
+ * then randomly reduced by up to the jitter fraction so that jobs that failed together are not retried together.
+ */
+@Accessors(chain = true)
+@NoArgsConstructor
+@Data
+public class RetryPolicy {
+  long initialDelayMillis = 1000;
+  double multiplier = 2.0;
+  long maxDelayMillis = 60000;
+  double jitter = 0.5; // 0 means no jitter; 1 means delay is uniformly random between 0 and the computed delay
+  boolean avoidLastWorker = true; // if other live workers for the job type are registered
+
+  public static RetryPolicy exponentialBackoff(long initialDelayMillis, long maxDelayMillis) {
+    return new RetryPolicy().setInitialDelayMillis(initialDelayMillis).setMaxDelayMillis(maxDelayMillis);
+  }
+
+  long delayMillis(int failCount, Random random) {
+    double delay = initialDelayMillis * Math.pow(multiplier, Math.max(0, failCount - 1));
+    delay = Math.min(delay, maxDelayMillis);
+    return (long) (delay * (1 - jitter * random.nextDouble()));
+  }
+}
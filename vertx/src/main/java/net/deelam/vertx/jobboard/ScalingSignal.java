@@ -0,0 +1,22 @@
+package net.deelam.vertx.jobboard;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Load of one job type on a JobBoard, sent periodically to its WorkerScaler.
+ * Rates are in jobs per second, smoothed over recent scaling intervals.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ScalingSignal {
+  final String jobType;
+  final int backlog; // AVAILABLE and WAITING jobs
+  final int running; // STARTED and PROGRESSING jobs
+  final int workers; // registered workers for the job type
+  final int idleWorkers; // registered workers without assigned jobs
+  final double arrivalRate; // jobs added
+  final double drainRate; // jobs that became DONE or FAILED
+}
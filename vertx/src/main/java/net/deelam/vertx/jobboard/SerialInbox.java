@@ -0,0 +1,85 @@
+package net.deelam.vertx.jobboard;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs operations one at a time in the order they were submitted, so the state they touch has a single writer.
+ * Submitting doesn't take a lock: the thread whose operation finds the inbox empty runs operations until the inbox
+ * is empty again, including those submitted by other threads in the meantime.
+ * An operation submitted while an operation is running on the same thread is run immediately if its result is
+ * awaited (see ask()), and otherwise after the running operation.
+ */
+@Slf4j
+class SerialInbox {
+  private final Queue<Runnable> inbox = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pending = new AtomicInteger();
+  private volatile Thread writer; // thread running operations, if any
+
+  /**
+   * If an operation throws an Error, the remaining operations are still run, then the first Error is rethrown
+   * to the thread that ran them.
+   */
+  void tell(Runnable op) {
+    inbox.add(op);
+    if (pending.getAndIncrement() == 0) {
+      Error error = null;
+      do {
+        Runnable next = inbox.poll();
+        writer = Thread.currentThread();
+        try {
+          next.run();
+        } catch (RuntimeException e) {
+          log.error("Operation failed", e);
+        } catch (Error e) {
+          log.error("Operation failed", e);
+          if (error == null)
+            error = e;
+        } finally {
+          writer = null; // before another thread can take over
+        }
+      } while (pending.decrementAndGet() > 0);
+      if (error != null)
+        throw error;
+    }
+  }
+
+  <T> CompletableFuture<T> ask(Supplier<T> op) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    Runnable r = () -> {
+      try {
+        result.complete(op.get());
+      } catch (Throwable e) {
+        result.completeExceptionally(e);
+        if (e instanceof Error)
+          throw (Error) e;
+      }
+    };
+    if (writer == Thread.currentThread())
+      r.run(); // called from an operation
+    else
+      tell(r);
+    return result;
+  }
+
+  /**
+   * Waits for the result of ask(); a RuntimeException or Error thrown by the operation is rethrown.
+   */
+  static <T> T await(CompletableFuture<T> result) {
+    try {
+      return result.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+      if (e.getCause() instanceof Error)
+        throw (Error) e.getCause();
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package net.deelam.vertx.jobboard;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+/**
+ * Determines when a running job is a straggler, for which JobBoard starts a speculative copy on another worker
+ * (see JobBoard.setSpeculationPolicy()).
+ * A job is a straggler once it has run for multiplier times the given percentile of its job type's runtimes
+ * (of DONE jobs), and for at least minRuntimeMillis.  No job is speculated until minSamples jobs of the type are DONE.
+ */
+@Accessors(chain = true)
+@NoArgsConstructor
+@Data
+public class SpeculationPolicy {
+  double percentile = 0.95;
+  double multiplier = 2.0;
+  long minRuntimeMillis = 1000;
+  int minSamples = 20;
+
+  public static SpeculationPolicy pastPercentile(double percentile, double multiplier) {
+    return new SpeculationPolicy().setPercentile(percentile).setMultiplier(multiplier);
+  }
+
+  /**
+   * @return runtime after which a job is a straggler, or -1 if too few jobs have run
+   */
+  long stragglerMillis(Histogram runtimes) {
+    if (runtimes.count() < minSamples)
+      return -1;
+    return Math.max(minRuntimeMillis, (long) (runtimes.percentile(percentile) * multiplier));
+  }
+}
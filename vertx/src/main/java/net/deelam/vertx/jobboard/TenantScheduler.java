@@ -0,0 +1,204 @@
+package net.deelam.vertx.jobboard;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.function.Predicate;
+
+import com.google.common.collect.Iterators;
+
+import lombok.ToString;
+import net.deelam.vertx.jobboard.JobBoard.JobItem;
+import net.deelam.vertx.jobboard.JobBoard.JobItem.JobState;
+
+/**
+ * Chooses which tenants' AVAILABLE jobs are offered to a worker using deficit round robin (DRR),
+ * so each tenant with available jobs of a type gets a share of workers proportional to its weight,
+ * regardless of how many jobs it has submitted.
+ *
+ * For each job type, tenants with available jobs are visited in turn; each visit adds the tenant's weight to its
+ * deficit, and the tenant's jobs are picked (in offer order) while its deficit is at least 1.
+ * A picked job costs 1 and is refunded if it is released without being started, e.g., when a worker picks
+ * another job from an offer.  Tenants at their maxInFlight (reserved plus started jobs) are skipped.
+ * Jobs in flight are counted for every tenant, so a share set after a tenant's jobs have started still limits them.
+ *
+ * Only accessed from the JobBoard's event-loop.
+ */
+class TenantScheduler implements JobItemIndex.Listener {
+
+  @ToString
+  static class Tenant {
+    boolean configured = false; // whether given a share with setTenantShare()
+    int weight = 1;
+    int maxInFlight = 0; // 0 means no limit
+    int running = 0; // STARTED or PROGRESSING jobs
+    int reserved = 0; // AVAILABLE jobs offered to a worker
+
+    boolean isFull(int picked) {
+      return maxInFlight > 0 && running + reserved + picked >= maxInFlight;
+    }
+
+    boolean isUnused() {
+      return !configured && running == 0 && reserved == 0;
+    }
+  }
+
+  // DRR state for one job type
+  private static class Round {
+    final List<String> ring = new ArrayList<>(); // tenants with available jobs
+    final Map<String, Integer> deficits = new HashMap<>();
+    int cursor = 0;
+    boolean visiting = false; // whether the tenant at cursor has received its weight for the current visit
+
+    void sync(Map<String, ? extends SortedSet<JobItem>> byTenant) {
+      for (String tenant : byTenant.keySet())
+        if (!deficits.containsKey(tenant)) {
+          ring.add(tenant);
+          deficits.put(tenant, 0);
+        }
+      for (int i = ring.size() - 1; i >= 0; --i) {
+        String tenant = ring.get(i);
+        if (!byTenant.containsKey(tenant)) { // no available jobs, so don't bank its deficit
+          ring.remove(i);
+          deficits.remove(tenant);
+          if (i < cursor)
+            --cursor;
+          else if (i == cursor)
+            visiting = false;
+        }
+      }
+      if (cursor >= ring.size())
+        cursor = 0;
+    }
+
+    void next() {
+      visiting = false;
+      cursor = (cursor + 1) % ring.size();
+    }
+  }
+
+  // tenants given a share with setTenantShare() or with jobs in flight; others have weight 1 and no limit
+  private final Map<String, Tenant> tenants = new HashMap<>();
+  private static final Tenant UNCONFIGURED = new Tenant();
+  private final Map<String, Round> rounds = new HashMap<>(); // jobType -> round
+  private boolean hasLimits = false;
+
+  void setTenantShare(String tenant, int weight, int maxInFlight) {
+    checkArgument(weight > 0, "weight must be positive");
+    checkArgument(maxInFlight >= 0, "maxInFlight must not be negative");
+    Tenant t = tenants.computeIfAbsent(tenant, k -> new Tenant());
+    t.configured = true;
+    t.weight = weight;
+    t.maxInFlight = maxInFlight;
+    if (maxInFlight > 0)
+      hasLimits = true;
+  }
+
+  private Tenant tenant(String tenant) {
+    return tenants.getOrDefault(tenant, UNCONFIGURED);
+  }
+
+  /**
+   * @param eligible whether a job can be offered to the worker
+   * @return up to maxJobs eligible jobs, which the caller must reserve()
+   */
+  List<JobItem> pick(String jobType, Map<String, ? extends SortedSet<JobItem>> byTenant, Predicate<JobItem> eligible,
+      int maxJobs) {
+    List<JobItem> picked = new ArrayList<>();
+    if (byTenant.size() == 1 && !hasLimits) { // nothing to share
+      Iterators.addAll(picked,
+          Iterators.limit(Iterators.filter(byTenant.values().iterator().next().iterator(), eligible::test), maxJobs));
+      return picked;
+    }
+
+    Round round = rounds.computeIfAbsent(jobType, k -> new Round());
+    round.sync(byTenant);
+    if (round.ring.isEmpty())
+      return picked;
+    Map<String, Iterator<JobItem>> iterators = new HashMap<>();
+    Map<String, Integer> pickedPerTenant = new HashMap<>();
+    int unproductiveVisits = 0;
+    while (picked.size() < maxJobs && unproductiveVisits < round.ring.size()) {
+      String tenantName = round.ring.get(round.cursor);
+      Tenant tenant = tenant(tenantName);
+      Iterator<JobItem> itr = iterators.computeIfAbsent(tenantName,
+          k -> Iterators.filter(byTenant.get(k).iterator(), eligible::test));
+      int pickedForTenant = pickedPerTenant.getOrDefault(tenantName, 0);
+      if (!itr.hasNext() || tenant.isFull(pickedForTenant)) {
+        round.next();
+        ++unproductiveVisits;
+        continue;
+      }
+
+      int deficit = round.deficits.get(tenantName);
+      if (!round.visiting) {
+        deficit += tenant.weight;
+        round.visiting = true;
+      }
+      int count = 0;
+      while (deficit >= 1 && itr.hasNext() && picked.size() < maxJobs && !tenant.isFull(pickedForTenant + count)) {
+        picked.add(itr.next());
+        --deficit;
+        ++count;
+      }
+      round.deficits.put(tenantName, deficit);
+      pickedPerTenant.put(tenantName, pickedForTenant + count);
+      unproductiveVisits = 0;
+      if (deficit < 1 || !itr.hasNext() || tenant.isFull(pickedForTenant + count))
+        round.next();
+      // otherwise, maxJobs was reached and the visit continues with the next pick
+    }
+    return picked;
+  }
+
+  private void addInFlight(JobItem ji, int runningDelta, int reservedDelta) {
+    Tenant tenant = tenants.computeIfAbsent(ji.tenant, k -> new Tenant());
+    tenant.running += runningDelta;
+    tenant.reserved += reservedDelta;
+    if (tenant.isUnused())
+      tenants.remove(ji.tenant);
+  }
+
+  void reserved(JobItem ji) {
+    addInFlight(ji, 0, 1);
+  }
+
+  /**
+   * @param started whether the job was started by the worker it was reserved for
+   */
+  void released(JobItem ji, boolean started) {
+    addInFlight(ji, 0, -1);
+    if (!started) {
+      Round round = rounds.get(ji.jobJO.getType());
+      if (round != null)
+        round.deficits.computeIfPresent(ji.tenant, (k, deficit) -> deficit + 1);
+    }
+  }
+
+  private static boolean isRunning(JobState state) {
+    return state == JobState.STARTED || state == JobState.PROGRESSING;
+  }
+
+  @Override
+  public void jobAdded(JobItem ji) {
+    if (isRunning(ji.state))
+      addInFlight(ji, 1, 0);
+  }
+
+  @Override
+  public void jobRemoved(JobItem ji) {
+    if (isRunning(ji.state))
+      addInFlight(ji, -1, 0);
+  }
+
+  @Override
+  public void jobStateChanged(JobItem ji, JobState oldState) {
+    if (isRunning(oldState) != isRunning(ji.state))
+      addInFlight(ji, isRunning(ji.state) ? 1 : -1, 0);
+  }
+}
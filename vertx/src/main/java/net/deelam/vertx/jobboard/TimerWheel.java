@@ -0,0 +1,110 @@
+package net.deelam.vertx.jobboard;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Hashed timer wheel that holds many timeouts using one periodic timer rather than one timer per item.
+ * Scheduling is O(1); each call to advance() only visits the buckets for the elapsed ticks.
+ * Items with deadlines beyond one rotation of the wheel stay in their bucket until the deadline's tick.
+ * A scheduled timeout can be cancelled in O(1), e.g., before scheduling the item again.
+ *
+ * Not thread-safe; only accessed from the JobBoard's event-loop.
+ */
+class TimerWheel<T> {
+
+  @RequiredArgsConstructor
+  static class Timeout<T> {
+    final T item;
+    final long deadlineTick;
+    private List<Timeout<T>> bucket; // null once expired or cancelled
+    private int index; // in bucket
+  }
+
+  private final long tickMillis;
+  private final List<List<Timeout<T>>> buckets;
+  private long currentTick;
+  private int size = 0;
+
+  TimerWheel(long tickMillis, int wheelSize, long nowMillis) {
+    checkArgument(tickMillis > 0, "tickMillis must be positive");
+    checkArgument(wheelSize > 0, "wheelSize must be positive");
+    this.tickMillis = tickMillis;
+    buckets = new ArrayList<>(wheelSize);
+    for (int i = 0; i < wheelSize; ++i)
+      buckets.add(new ArrayList<>());
+    currentTick = nowMillis / tickMillis;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * The item will be expired by the first call to advance() at or after deadlineMillis,
+   * rounded up to the next tick.
+   * @return the timeout, to pass to cancel()
+   */
+  public Timeout<T> schedule(T item, long deadlineMillis) {
+    long deadlineTick = Math.max((deadlineMillis + tickMillis - 1) / tickMillis, currentTick + 1);
+    Timeout<T> timeout = new Timeout<>(item, deadlineTick);
+    timeout.bucket = buckets.get((int) (deadlineTick % buckets.size()));
+    timeout.index = timeout.bucket.size();
+    timeout.bucket.add(timeout);
+    ++size;
+    return timeout;
+  }
+
+  /**
+   * @param timeout may be null
+   * @return whether timeout was removed, i.e., it had not expired or been cancelled
+   */
+  public boolean cancel(Timeout<T> timeout) {
+    if (timeout == null || timeout.bucket == null)
+      return false;
+    remove(timeout);
+    --size;
+    return true;
+  }
+
+  // swap-remove
+  private static <T> void remove(Timeout<T> timeout) {
+    List<Timeout<T>> bucket = timeout.bucket;
+    Timeout<T> last = bucket.remove(bucket.size() - 1);
+    if (last != timeout) {
+      bucket.set(timeout.index, last);
+      last.index = timeout.index;
+    }
+    timeout.bucket = null;
+  }
+
+  /**
+   * Calls expiredHandler for each item whose deadline is at or before nowMillis.
+   * Items may be scheduled again from within expiredHandler.
+   */
+  public void advance(long nowMillis, Consumer<T> expiredHandler) {
+    long nowTick = nowMillis / tickMillis;
+    List<T> expired = new ArrayList<>();
+    // visit each bucket at most once
+    long lastTick = Math.min(nowTick, currentTick + buckets.size());
+    for (long tick = currentTick + 1; tick <= lastTick; ++tick) {
+      List<Timeout<T>> bucket = buckets.get((int) (tick % buckets.size()));
+      for (int i = bucket.size() - 1; i >= 0; --i) {
+        Timeout<T> timeout = bucket.get(i);
+        if (timeout.deadlineTick <= nowTick) {
+          remove(timeout);
+          expired.add(timeout.item);
+        }
+      }
+    }
+    if (nowTick > currentTick)
+      currentTick = nowTick;
+    size -= expired.size();
+    expired.forEach(expiredHandler);
+  }
+}
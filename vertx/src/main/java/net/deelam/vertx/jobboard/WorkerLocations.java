@@ -0,0 +1,66 @@
+package net.deelam.vertx.jobboard;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks the hosts and cached resources of registered workers per job type, updated as workers register
+ * and unregister, and decides whether a job with JobDTO.preferredLocations can be offered to a worker
+ * (see JobBoard.preferLocalWorkers()).
+ *
+ * Only accessed from the JobBoard's event-loop.
+ */
+class WorkerLocations {
+  // jobType -> location -> number of registered workers there
+  private final Map<String, Map<String, Integer>> locationCounts = new HashMap<>();
+
+  static boolean isLocal(JobDTO job, String host, Set<String> resources) {
+    return job.preferredLocations == null || job.preferredLocations.contains(host)
+        || !Collections.disjoint(resources, job.preferredLocations);
+  }
+
+  void workerAdded(String jobType, String host, Collection<String> resources) {
+    Map<String, Integer> counts = locationCounts.computeIfAbsent(jobType, k -> new HashMap<>());
+    if (host != null)
+      counts.merge(host, 1, Integer::sum);
+    for (String resource : resources)
+      counts.merge(resource, 1, Integer::sum);
+  }
+
+  void workerRemoved(String jobType, String host, Collection<String> resources) {
+    Map<String, Integer> counts = locationCounts.get(jobType);
+    if (counts == null)
+      return;
+    if (host != null)
+      decrement(counts, host);
+    for (String resource : resources)
+      decrement(counts, resource);
+    if (counts.isEmpty())
+      locationCounts.remove(jobType);
+  }
+
+  private static void decrement(Map<String, Integer> counts, String location) {
+    counts.computeIfPresent(location, (k, count) -> (count == 1) ? null : count - 1);
+  }
+
+  Set<String> getLocations(String jobType) {
+    Map<String, Integer> counts = locationCounts.get(jobType);
+    return (counts == null) ? Collections.emptySet() : Collections.unmodifiableSet(counts.keySet());
+  }
+
+  /**
+   * A job is held for workers at its preferred locations for delayMillis after it became available,
+   * unless no registered worker of its type is at one of those locations.
+   * @return 0 if the job can be offered now to a worker at host with resources, or else the time
+   *     from which it can be offered to any worker
+   */
+  long holdUntil(JobDTO job, long availableTime, String host, Set<String> resources, long delayMillis, long now) {
+    if (isLocal(job, host, resources) || Collections.disjoint(job.preferredLocations, getLocations(job.getType())))
+      return 0;
+    long fallbackTime = availableTime + delayMillis;
+    return (fallbackTime <= now) ? 0 : fallbackTime;
+  }
+}
@@ -0,0 +1,14 @@
+package net.deelam.vertx.jobboard;
+
+/**
+ * Adjusts the number of workers based on JobBoard's load; see JobBoard.setScaler().
+ */
+public interface WorkerScaler {
+
+  /**
+   * Called on the JobBoard's event-loop, every scaling interval, for each job type that has jobs or workers.
+   * Must not block; start and stop workers asynchronously.
+   */
+  void scale(ScalingSignal signal);
+
+}
@@ -0,0 +1,77 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class CriticalPathsTest {
+
+  DepJobGraph graph = new DepJobGraph();
+  CriticalPaths paths = new CriticalPaths(graph);
+
+  @Test
+  public void testLongestPathByRuntime() {
+    paths.recordRuntime("fast", 10);
+    paths.recordRuntime("slow", 1000);
+    // a -> b (slow) -> d
+    // a -> c (fast) -> d
+    int a = graph.add("a", "fast", false, 1);
+    int b = graph.add("b", "slow", false, 2);
+    int c = graph.add("c", "fast", false, 3);
+    int d = graph.add("d", "fast", false, 4);
+    int e = graph.add("e", "other", false, 5); // unknown type, estimated with the mean
+    graph.addInput(b, a);
+    graph.addInput(c, a);
+    graph.addInput(d, b);
+    graph.addInput(d, c);
+
+    assertEquals(10, paths.pathMillis(d));
+    assertEquals(1010, paths.pathMillis(b));
+    assertEquals(20, paths.pathMillis(c));
+    assertEquals(1020, paths.pathMillis(a));
+    assertEquals(505, paths.pathMillis(e));
+
+    graph.addInput(e, c); // recomputed when an input is added
+    assertEquals(1020, paths.pathMillis(a));
+    assertEquals(515, paths.pathMillis(c));
+  }
+
+  @Test
+  public void testReestimate() {
+    paths.recordRuntime("T", 100);
+    int a = graph.add("a", "T", false, 1);
+    int b = graph.add("b", "T", false, 2);
+    graph.addInput(b, a);
+    assertEquals(200, paths.pathMillis(a));
+
+    paths.recordRuntime("T", 150); // estimate is 110, within REESTIMATE_RATIO
+    assertEquals(200, paths.pathMillis(a));
+    paths.recordRuntime("T", 200); // estimate is 128
+    assertEquals(256, paths.pathMillis(a));
+  }
+
+  @Test
+  public void testCycleIgnored() {
+    // a -> b -> c -> b
+    int a = graph.add("a", "T", false, 1);
+    int b = graph.add("b", "T", false, 2);
+    int c = graph.add("c", "T", false, 3);
+    graph.addInput(b, a);
+    graph.addInput(c, b);
+    graph.addInput(b, c);
+    assertEquals(3, paths.pathMillis(a));
+  }
+
+  @Test
+  public void testDeepChain() {
+    int depth = 100000;
+    int prev = graph.add("j0", "T", false, 0);
+    for (int i = 1; i < depth; ++i) {
+      int job = graph.add("j" + i, "T", false, i);
+      graph.addInput(job, prev);
+      prev = job;
+    }
+    assertEquals(depth, paths.pathMillis(0)); // each job is estimated at 1 ms when no runtimes are known
+    assertEquals(1, paths.pathMillis(prev));
+  }
+}
@@ -0,0 +1,116 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.common.collect.Iterables;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import com.tinkerpop.blueprints.util.wrappers.id.IdGraph;
+
+import net.deelam.vertx.jobboard.DepJobFrame.STATE;
+
+public class DepJobGraphTest {
+
+  DepJobGraph graph = new DepJobGraph();
+
+  @Test
+  public void testReadyWhenInputsAreDone() {
+    int a = graph.add("a", "T", false, 1);
+    int b = graph.add("b", "T", false, 2);
+    int c = graph.add("c", "T", false, 3);
+    assertTrue(graph.addInput(c, a));
+    assertTrue(graph.addInput(c, b));
+    assertFalse(graph.addInput(c, a)); // already an input
+    assertNull(graph.getState(c));
+    assertFalse(graph.isReady(c));
+
+    graph.setState(a, STATE.DONE);
+    assertFalse(graph.isReady(c));
+    graph.setState(b, STATE.DONE);
+    assertTrue(graph.isReady(c));
+
+    graph.setState(a, STATE.NEEDS_UPDATE); // no longer DONE
+    assertFalse(graph.isReady(c));
+    graph.setState(a, STATE.DONE);
+    assertTrue(graph.isReady(c));
+
+    assertEquals(2, graph.inputCount(c));
+    assertEquals(1, graph.outputCount(a));
+    assertEquals(c, graph.output(a, 0));
+  }
+
+  @Test
+  public void testInputAddedWhenDone() {
+    int a = graph.add("a", "T", false, 1);
+    graph.setState(a, STATE.DONE);
+    int b = graph.add("b", "T", false, 2);
+    graph.addInput(b, a);
+    assertTrue(graph.isReady(b));
+  }
+
+  @Test
+  public void testGrows() {
+    int prev = graph.add("j0", "T", false, 0);
+    for (int i = 1; i < 100; ++i) {
+      int job = graph.add("j" + i, "T", i % 2 == 0, i);
+      graph.addInput(job, prev);
+      prev = job;
+    }
+    assertEquals(100, graph.size());
+    assertEquals(57, graph.indexOf("j57"));
+    assertEquals(-1, graph.indexOf("unknown"));
+    assertTrue(graph.isUpdatable(graph.indexOf("j4")));
+    for (int i = 0; i < 99; ++i) {
+      assertFalse(graph.isReady(i + 1));
+      graph.setState(i, STATE.DONE);
+      assertTrue(graph.isReady(i + 1));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDuplicateId() {
+    graph.add("a", "T", false, 1);
+    graph.add("a", "T", false, 2);
+  }
+
+  @Test
+  public void testPersister() {
+    IdGraph<TinkerGraph> tg = new IdGraph<>(new TinkerGraph());
+    DepJobGraphPersister persister = new DepJobGraphPersister(tg);
+    graph.setListener(persister);
+    int a = graph.add("a", "T", true, 1);
+    int b = graph.add("b", "T", false, 2);
+    graph.addInput(b, a);
+    graph.setState(a, STATE.DONE);
+    graph.setState(b, STATE.SUBMITTED);
+    graph.setOrder(b, 3);
+    persister.close();
+
+    assertEquals("DONE", tg.getVertex("a").getProperty(DepJobFrame.STATE_PROPKEY));
+    assertEquals(Boolean.TRUE, tg.getVertex("a").getProperty("updatable"));
+    assertEquals("SUBMITTED", tg.getVertex("b").getProperty(DepJobFrame.STATE_PROPKEY));
+    assertEquals(3, (int) tg.getVertex("b").getProperty("order"));
+    assertEquals("a", Iterables.getOnlyElement(
+        tg.getVertex("b").getVertices(Direction.IN, DepJobFrame.FEEDS_LABEL)).getId());
+  }
+
+  @Test
+  public void testPersisterReusesOldEdges() {
+    IdGraph<TinkerGraph> tg = new IdGraph<>(new TinkerGraph());
+    for (int run = 0; run < 2; ++run) {
+      DepJobGraph graph = new DepJobGraph();
+      DepJobGraphPersister persister = new DepJobGraphPersister(tg);
+      graph.setListener(persister);
+      int a = graph.add("a", "T", false, 1);
+      int b = graph.add("b", "T", false, 2);
+      graph.addInput(b, a);
+      persister.close();
+    }
+    assertEquals(1, Iterables.size(tg.getVertex("b").getVertices(Direction.IN, DepJobFrame.FEEDS_LABEL)));
+  }
+}
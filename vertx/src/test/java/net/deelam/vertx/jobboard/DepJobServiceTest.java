@@ -0,0 +1,131 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import net.deelam.vertx.jobboard.DepJobFrame.STATE;
+
+public class DepJobServiceTest {
+
+  // no JobProducer, so tests must not submit jobs
+  DepJobService service = new DepJobService(() -> null);
+
+  private static JobDTO job(String id) {
+    return new JobDTO(id, "A", null);
+  }
+
+  @Test
+  public void testCheckAcyclic() {
+    DepJobService.checkAcyclic(ImmutableSet.of("a", "b", "c", "d"),
+        ImmutableMap.of("b", new String[] {"a"}, "c", new String[] {"a", "x"}, "d", new String[] {"b", "c"}));
+    try {
+      DepJobService.checkAcyclic(ImmutableSet.of("a", "b", "c", "d"),
+          ImmutableMap.of("a", new String[] {"d"}, "b", new String[] {"a"}, "c", new String[] {"b"}, "d",
+              new String[] {"c"}));
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("Dependencies among 4 jobs form a cycle", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testSubmitDagWaitsForInputs() {
+    service.addJob(false, job("x")).join(); // not submitted
+    Map<String, String[]> inJobIds = new HashMap<>();
+    inJobIds.put("a", new String[] {"x"});
+    inJobIds.put("b", new String[] {"a", "x"});
+    inJobIds.put("c", new String[] {"a", "b", "a"});
+    assertTrue(service.submitDag(Arrays.asList(job("a"), job("b"), job("c")), inJobIds).join());
+
+    assertNull(service.getJobStatus("x"));
+    for (String jobId : Arrays.asList("a", "b", "c"))
+      assertEquals(STATE.WAITING, service.getJobStatus(jobId));
+    assertEquals(ImmutableSet.of("a", "b", "c"), service.getWaitingJobs().keySet());
+  }
+
+  @Test
+  public void testInvalidDagAddsNothing() {
+    service.addJob(false, job("x")).join();
+    assertInvalid(ImmutableMap.of("a", new String[] {"b"}, "b", new String[] {"a"}), "a", "b"); // cycle
+    assertInvalid(ImmutableMap.of("a", new String[] {"y"}), "a", "b"); // unknown input
+    assertInvalid(ImmutableMap.of(), "a", "x"); // existing job
+    assertInvalid(ImmutableMap.of(), "a", "a"); // duplicate
+    assertFalse(service.hasJob("a"));
+    assertEquals(Arrays.asList("x"), service.listJobs(null));
+  }
+
+  @Test
+  public void testCancelJobsDependentOn() {
+    service.addJob(false, job("x")).join();
+    List<JobDTO> jobs = new ArrayList<>();
+    Map<String, String[]> inJobIds = new LinkedHashMap<>();
+    int depth = 20000; // too deep to cancel recursively
+    for (int i = 0; i < depth; ++i) {
+      jobs.add(job("c" + i));
+      inJobIds.put("c" + i, new String[] {(i == 0) ? "x" : "c" + (i - 1)});
+    }
+    // diamond
+    jobs.addAll(Arrays.asList(job("a"), job("b1"), job("b2"), job("d")));
+    inJobIds.put("a", new String[] {"x"});
+    inJobIds.put("b1", new String[] {"a"});
+    inJobIds.put("b2", new String[] {"a"});
+    inJobIds.put("d", new String[] {"b1", "b2"});
+    service.submitDag(jobs, inJobIds).join();
+
+    List<String> cancelled = new ArrayList<>();
+    service.cancelJobsDependentOn("x", cancelled);
+    assertEquals(depth + 4, cancelled.size());
+    assertEquals(depth + 4, new HashSet<>(cancelled).size()); // each once
+    assertEquals(Arrays.asList("c0", "a"), cancelled.subList(0, 2)); // breadth-first
+    assertEquals(depth + 4, service.listJobs(STATE.CANCELLED).size());
+    assertTrue(service.getWaitingJobs().isEmpty());
+    assertNull(service.getJobStatus("x"));
+
+    assertTrue(service.cancelJob("x"));
+    assertFalse(service.cancelJob("x")); // already cancelled
+  }
+
+  @Test
+  public void testAddDependentJobsRejectsCycle() {
+    service.addJob(false, job("x")).join();
+    service.submitDag(Arrays.asList(job("a"), job("b"), job("c")),
+        ImmutableMap.of("a", new String[] {"x"}, "b", new String[] {"a"}, "c", new String[] {"b"})).join();
+    for (String inJobId : Arrays.asList("c", "b", "a")) {
+      try {
+        service.addDependentJobs("a", inJobId);
+        fail();
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+    service.addDependentJobs("c", "a"); // not a cycle
+    service.addDependentJobs("c", "x");
+  }
+
+  private void assertInvalid(Map<String, String[]> inJobIds, String... jobIds) {
+    try {
+      service.submitDag(Arrays.asList(Arrays.stream(jobIds).map(DepJobServiceTest::job).toArray(JobDTO[]::new)),
+          inJobIds).join();
+      fail();
+    } catch (CompletionException e) {
+      assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.deelam.vertx.jobboard.JobBoardStatsDTO.HistogramSummary;
+
+public class HistogramTest {
+
+  @Test
+  public void testBuckets() {
+    for (long v = 0; v < 100000; v += 7) {
+      int bucket = Histogram.bucketOf(v);
+      long upper = Histogram.upperBoundOf(bucket);
+      assertTrue(v <= upper);
+      assertTrue("v=" + v, upper - v <= v / 8);
+      if (bucket > 0)
+        assertTrue(v > Histogram.upperBoundOf(bucket - 1));
+    }
+    assertEquals(Long.MAX_VALUE, Histogram.upperBoundOf(Histogram.bucketOf(Long.MAX_VALUE)));
+  }
+
+  @Test
+  public void testPercentiles() {
+    Histogram h = new Histogram();
+    for (int i = 1; i <= 1000; ++i)
+      h.record(i);
+    HistogramSummary summary = h.summarize();
+    assertEquals(1000, summary.getCount());
+    assertEquals(500.5, summary.getMean(), 0.001);
+    assertEquals(1000, summary.getMax());
+    assertTrue("p50=" + summary.getP50(), summary.getP50() >= 500 && summary.getP50() <= 500 * 9 / 8);
+    assertTrue("p99=" + summary.getP99(), summary.getP99() >= 990 && summary.getP99() <= 1000);
+  }
+
+  @Test
+  public void testEmpty() {
+    assertEquals(0, new Histogram().percentile(0.99));
+  }
+
+}
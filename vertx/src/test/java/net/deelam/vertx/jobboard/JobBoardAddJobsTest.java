@@ -0,0 +1,58 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
+
+public class JobBoardAddJobsTest extends JobBoardVertxTestBase {
+
+  @Test
+  public void testAddJobsWithStartedJob() throws Exception {
+    deployBoard(board -> {});
+
+    BlockingQueue<String> started = new LinkedBlockingQueue<>();
+    CountDownLatch release = new CountDownLatch(1);
+    deployConsumer("A", job -> {
+      started.add(job.getId());
+      release.await();
+      return true;
+    }, consumer -> {});
+    JobProducer producer = deployProducer();
+    BlockingQueue<AsyncResult<Message<JobDTO>>> replies = new LinkedBlockingQueue<>();
+    producer.setAddJobReplyHandler(replies::add);
+    BlockingQueue<String> completed = new LinkedBlockingQueue<>();
+    producer.addJobCompletionHandler(msg -> completed.add(msg.body().getId()));
+    awaitWorkers(1);
+
+    producer.addJobs(Arrays.asList(new JobDTO("running", "A", null)));
+    assertTrue(replies.poll(5, TimeUnit.SECONDS).succeeded());
+    assertEquals("running", started.poll(5, TimeUnit.SECONDS));
+
+    // the started job is not replaced, but the rest of the batch is added
+    producer.addJobs(Arrays.asList(new JobDTO("running", "A", null), new JobDTO("next", "A", null)));
+    AsyncResult<Message<JobDTO>> reply = replies.poll(5, TimeUnit.SECONDS);
+    assertFalse(reply.succeeded());
+    assertEquals(-11, ((ReplyException) reply.cause()).failureCode());
+    assertTrue(reply.cause().getMessage(), reply.cause().getMessage().contains("running"));
+    assertFalse(reply.cause().getMessage(), reply.cause().getMessage().contains("next"));
+
+    release.countDown();
+    assertEquals("running", completed.poll(5, TimeUnit.SECONDS));
+    assertEquals("next", started.poll(5, TimeUnit.SECONDS));
+    assertEquals("next", completed.poll(5, TimeUnit.SECONDS));
+    assertNull(started.poll(500, TimeUnit.MILLISECONDS)); // the started job was not run again
+  }
+}
@@ -0,0 +1,139 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.vertx.core.Vertx;
+import net.deelam.vertx.jobboard.JobBoard.JobItem;
+import net.deelam.vertx.jobboard.JobBoard.JobItem.JobState;
+
+public class JobBoardJournalTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  Vertx vertx;
+  File dir;
+
+  @Before
+  public void setUp() throws Exception {
+    vertx = Vertx.vertx();
+    dir = tempFolder.newFolder("journal");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    vertx.close();
+  }
+
+  private JobItem addJob(JobItemIndex index, String id) {
+    JobItem ji = new JobItem(new JobDTO(id, "A", null), "doneAddr", null, 3);
+    ji.state = JobState.AVAILABLE;
+    index.put(ji);
+    return ji;
+  }
+
+  private JobItemIndex reopen() throws Exception {
+    JobItemIndex index = new JobItemIndex();
+    JobBoardJournal journal = new JobBoardJournal(dir, 60000, 1000);
+    journal.open(vertx, index);
+    journal.close();
+    return index;
+  }
+
+  @Test
+  public void testRecover() throws Exception {
+    JobItemIndex index = new JobItemIndex();
+    JobBoardJournal journal = new JobBoardJournal(dir, 60000, 1000);
+    journal.open(vertx, index);
+    JobItem j1 = addJob(index, "j1");
+    JobItem j2 = addJob(index, "j2");
+    addJob(index, "j3");
+    index.setState(j1, JobState.DONE);
+    j2.jobFailedCount = 1;
+    index.setState(j2, JobState.STARTED);
+    index.remove("j3");
+    journal.close();
+
+    JobItemIndex recovered = reopen();
+    assertEquals(2, recovered.size());
+    assertEquals(JobState.DONE, recovered.get("j1").state);
+    assertEquals("doneAddr", recovered.get("j1").completionAddr);
+    // started jobs are made available again
+    assertEquals(JobState.AVAILABLE, recovered.get("j2").state);
+    assertEquals(1, recovered.get("j2").jobFailedCount);
+    assertEquals(3, recovered.get("j2").retryLimit);
+    assertNull(recovered.get("j3"));
+  }
+
+  @Test
+  public void testIgnoresTruncatedEntry() throws Exception {
+    JobItemIndex index = new JobItemIndex();
+    JobBoardJournal journal = new JobBoardJournal(dir, 60000, 1000);
+    journal.open(vertx, index);
+    addJob(index, "j1");
+    addJob(index, "j2");
+    journal.close();
+
+    // simulate a crash while writing the last entry
+    try (RandomAccessFile raf = new RandomAccessFile(new File(dir, "jobboard.journal"), "rw")) {
+      raf.setLength(raf.length() - 3);
+    }
+
+    JobItemIndex recovered = new JobItemIndex();
+    journal = new JobBoardJournal(dir, 60000, 1000);
+    journal.open(vertx, recovered);
+    assertEquals(1, recovered.size());
+    assertEquals(JobState.AVAILABLE, recovered.get("j1").state);
+
+    // journal is appendable after discarding the partial entry
+    addJob(recovered, "j3");
+    journal.close();
+
+    recovered = reopen();
+    assertEquals(2, recovered.size());
+    assertNull(recovered.get("j2"));
+    assertEquals(JobState.AVAILABLE, recovered.get("j3").state);
+  }
+
+  @Test
+  public void testSnapshot() throws Exception {
+    JobItemIndex index = new JobItemIndex();
+    JobBoardJournal journal = new JobBoardJournal(dir, 10, 4);
+    CompletableFuture<Void> added = new CompletableFuture<>();
+    vertx.runOnContext(v -> {
+      try {
+        journal.open(vertx, index);
+      } catch (Exception e) {
+        added.completeExceptionally(e);
+      }
+      for (int i = 0; i < 10; ++i)
+        addJob(index, "j" + i);
+      index.remove("j0");
+      vertx.setTimer(200, id -> {
+        journal.close();
+        added.complete(null);
+      });
+    });
+    added.get(5, TimeUnit.SECONDS);
+    assertTrue(new File(dir, "jobboard.snapshot").exists());
+    assertEquals(0, new File(dir, "jobboard.journal").length());
+
+    JobItemIndex recovered = reopen();
+    assertEquals(9, recovered.size());
+    assertNull(recovered.get("j0"));
+  }
+
+}
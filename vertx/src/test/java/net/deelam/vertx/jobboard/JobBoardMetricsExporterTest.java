@@ -0,0 +1,25 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class JobBoardMetricsExporterTest {
+
+  @Test
+  public void testToText() {
+    JobBoardStatsDTO stats = new JobBoardStatsDTO();
+    stats.getJobCountsByType().put("a\"b\\c", Collections.singletonMap("DONE", 2));
+    stats.getCounters().put("speculativeStarts", 3L);
+    stats.getGauges().put("tombstones", 4L);
+    String text = JobBoardMetricsExporter.toText(stats);
+
+    assertTrue(text.contains("# TYPE jobboard_jobs_by_type gauge\n"));
+    assertTrue(text.contains("jobboard_jobs_by_type{type=\"a\\\"b\\\\c\",state=\"DONE\"} 2\n"));
+    assertTrue(text.contains("# TYPE jobboard_jobs_offered gauge\njobboard_jobs_offered 0\n"));
+    assertTrue(text.contains("# TYPE jobboard_total counter\njobboard_total{name=\"speculativeStarts\"} 3\n"));
+    assertTrue(text.contains("# TYPE jobboard_current gauge\njobboard_current{name=\"tombstones\"} 4\n"));
+  }
+}
@@ -0,0 +1,65 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class JobBoardNegotiationTest extends JobBoardVertxTestBase {
+
+  @Test
+  public void testIdleWorkersGetDisjointOffers() throws Exception {
+    deployBoard(board -> board.negotiateConcurrently(2, 2));
+
+    Map<String, Set<String>> firstOffers = new ConcurrentHashMap<>();
+    CountDownLatch bothOffered = new CountDownLatch(2);
+    CountDownLatch allDone = new CountDownLatch(4);
+    for (String name : new String[] {"worker1", "worker2"}) {
+      deployConsumer("A", job -> {
+        allDone.countDown();
+        return true;
+      }, consumer -> consumer.setJobPicker(jobList -> {
+        Set<String> offered = jobList.getJobs().stream().map(JobDTO::getId).collect(Collectors.toSet());
+        if (firstOffers.putIfAbsent(name, offered) == null) {
+          // hold this offer until the other worker has also been offered jobs
+          bothOffered.countDown();
+          try {
+            bothOffered.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return jobList.getJobs().get(0);
+      }));
+    }
+    JobProducer producer = deployProducer();
+    awaitWorkers(2);
+
+    List<JobDTO> jobs = new ArrayList<>();
+    for (String id : Arrays.asList("j1", "j2", "j3", "j4"))
+      jobs.add(new JobDTO(id, "A", null));
+    producer.addJobs(jobs);
+
+    assertTrue("Both workers should be offered jobs at once", bothOffered.await(5, TimeUnit.SECONDS));
+    Set<String> offers1 = firstOffers.get("worker1");
+    Set<String> offers2 = firstOffers.get("worker2");
+    assertEquals(2, offers1.size());
+    assertEquals(2, offers2.size());
+    Set<String> overlap = new HashSet<>(offers1);
+    overlap.retainAll(offers2);
+    assertTrue("Offers overlap: " + overlap, overlap.isEmpty());
+
+    assertTrue("Jobs did not complete", allDone.await(10, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,53 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class JobBoardPushAssignmentTest extends JobBoardVertxTestBase {
+
+  @Test
+  public void testRefusedJobIsReassignedToAnotherWorker() throws Exception {
+    deployBoard(board -> {});
+
+    Map<String, String> ranOn = new ConcurrentHashMap<>();
+    BlockingQueue<String> started = new LinkedBlockingQueue<>();
+    deployConsumer("A", new JobWorker() {
+      @Override
+      public boolean apply(JobDTO job) {
+        ranOn.put(job.getId(), "picky");
+        started.add(job.getId());
+        return true;
+      }
+
+      @Override
+      public boolean canDo(JobDTO job) {
+        return !job.getId().equals("hard");
+      }
+    }, consumer -> consumer.setPushAssignment(true));
+    JobProducer producer = deployProducer();
+    awaitWorkers(1);
+
+    // the higher-priority job is assigned first and refused, then the next job is assigned to the same worker
+    producer.addJobs(Arrays.asList(new JobDTO("hard", "A", null).setPriority(1), new JobDTO("easy", "A", null)));
+    assertEquals("easy", started.poll(5, TimeUnit.SECONDS));
+    assertNull(started.poll(500, TimeUnit.MILLISECONDS)); // the refused job is not assigned again
+
+    deployConsumer("A", job -> {
+      ranOn.put(job.getId(), "capable");
+      started.add(job.getId());
+      return true;
+    }, consumer -> consumer.setPushAssignment(true));
+    assertEquals("hard", started.poll(5, TimeUnit.SECONDS));
+    assertEquals("picky", ranOn.get("easy"));
+    assertEquals("capable", ranOn.get("hard"));
+  }
+}
@@ -0,0 +1,98 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.deelam.vertx.jobboard.JobBoard.JobItem;
+import net.deelam.vertx.jobboard.JobBoard.JobItem.JobState;
+
+public class JobBoardRetentionTest {
+
+  JobItemIndex index;
+
+  @Before
+  public void setUp() throws Exception {
+    index = new JobItemIndex();
+  }
+
+  private JobBoardRetention retention(RetentionPolicy policy) {
+    JobBoardRetention retention = new JobBoardRetention(policy, index);
+    index.addListener(retention);
+    return retention;
+  }
+
+  private JobItem addJob(String id, Object request) {
+    JobItem ji = new JobItem(new JobDTO(id, "A", request), null, null, 0);
+    ji.state = JobState.AVAILABLE;
+    index.put(ji);
+    return ji;
+  }
+
+  private JobItem finishJob(String id, JobState state, long finishedTime) {
+    JobItem ji = addJob(id, null);
+    index.setState(ji, state);
+    ji.finishedTime = finishedTime;
+    return ji;
+  }
+
+  private List<String> ids() {
+    return index.getJobs().stream().map(JobItem::getId).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testMaxJobsPerState() {
+    JobBoardRetention retention = retention(RetentionPolicy.keepLatest(2));
+    finishJob("d1", JobState.DONE, 1);
+    finishJob("f1", JobState.FAILED, 2);
+    finishJob("d2", JobState.DONE, 3);
+    finishJob("d3", JobState.DONE, 4);
+    addJob("a1", null);
+
+    retention.compact(10);
+    assertEquals("[f1, d2, d3, a1]", ids().toString());
+    assertEquals(JobState.DONE, retention.getTombstone("d1").getState());
+    assertEquals(1, retention.tombstoneCount());
+  }
+
+  @Test
+  public void testMaxAge() {
+    JobBoardRetention retention = retention(RetentionPolicy.keepFor(100));
+    finishJob("d1", JobState.DONE, 1000);
+    finishJob("f1", JobState.FAILED, 1050);
+    finishJob("d2", JobState.DONE, 1100);
+
+    retention.compact(1120);
+    assertEquals("[f1, d2]", ids().toString());
+    retention.compact(1200);
+    assertEquals("[d2]", ids().toString());
+    assertEquals(JobState.FAILED, retention.getTombstone("f1").getState());
+
+    addJob("f1", null); // re-added job no longer has a tombstone
+    assertNull(retention.getTombstone("f1"));
+    assertNotNull(retention.getTombstone("d1"));
+  }
+
+  @Test
+  public void testMaxPayloadBytes() {
+    JobBoardRetention retention = retention(new RetentionPolicy().setMaxPayloadBytes(500).setMaxTombstones(0));
+    JobItem big = addJob("big", new String(new char[1000]));
+    index.setState(big, JobState.DONE);
+    big.finishedTime = 1;
+    finishJob("small", JobState.FAILED, 2);
+    addJob("unfinished", new String(new char[1000]));
+    assertTrue(retention.getFinishedPayloadBytes() > 1000);
+
+    retention.compact(10);
+    assertEquals("[small, unfinished]", ids().toString());
+    assertTrue(retention.getFinishedPayloadBytes() < 500);
+    assertNull(retention.getTombstone("big"));
+  }
+}
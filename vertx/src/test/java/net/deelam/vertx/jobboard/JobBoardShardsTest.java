@@ -0,0 +1,40 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.deelam.vertx.jobboard.JobBoardShards.ShardBy;
+
+public class JobBoardShardsTest {
+
+  @Test
+  public void testShardByJobId() {
+    JobBoardShards shards = new JobBoardShards("svc", 4, ShardBy.JOB_ID);
+    JobDTO job = new JobDTO("job1", "A", null);
+    assertEquals(shards.shardOfJobId("job1"), shards.shardOf(job));
+
+    List<Integer> workerShards = shards.shardsForWorker("A", "worker1");
+    assertEquals(4, workerShards.size());
+    assertEquals(new HashSet<>(Arrays.asList(0, 1, 2, 3)), new HashSet<>(workerShards));
+    assertEquals("svc-shard2", shards.getShardServiceType(2));
+  }
+
+  @Test
+  public void testShardByJobType() {
+    JobBoardShards shards = new JobBoardShards("svc", 4, ShardBy.JOB_TYPE);
+    int shardOfA = shards.shardOf(new JobDTO("job1", "A", null));
+    assertEquals(shardOfA, shards.shardOf(new JobDTO("job2", "A", null)));
+    assertEquals(Arrays.asList(shardOfA), shards.shardsForWorker("A", "worker1"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testJobIdNotRoutableByJobType() {
+    new JobBoardShards("svc", 4, ShardBy.JOB_TYPE).shardOfJobId("job1");
+  }
+
+}
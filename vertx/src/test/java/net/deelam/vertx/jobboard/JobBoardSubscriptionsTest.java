@@ -0,0 +1,149 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import net.deelam.vertx.KryoMessageCodec;
+import net.deelam.vertx.jobboard.JobBoard.JobItem;
+import net.deelam.vertx.jobboard.JobBoard.JobItem.JobState;
+
+public class JobBoardSubscriptionsTest {
+
+  Vertx vertx;
+  JobItemIndex index;
+  JobBoardSubscriptions subscriptions;
+  BlockingQueue<Message<JobUpdatesDTO>> received = new LinkedBlockingQueue<>();
+
+  @Before
+  public void setUp() throws Exception {
+    vertx = Vertx.vertx();
+    KryoMessageCodec.register(vertx.eventBus(), JobUpdatesDTO.class);
+    vertx.eventBus().consumer("subscriber", (Message<JobUpdatesDTO> msg) -> received.add(msg));
+    index = new JobItemIndex();
+    onContext(() -> {
+      subscriptions = new JobBoardSubscriptions(vertx);
+      index.addListener(subscriptions);
+    });
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    vertx.close();
+  }
+
+  // JobBoardSubscriptions is only accessed from the event-loop
+  private void onContext(Runnable r) throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+    vertx.runOnContext(v -> {
+      r.run();
+      latch.countDown();
+    });
+    latch.await();
+  }
+
+  private JobItem newJob(String id, String type) {
+    JobItem ji = new JobItem(new JobDTO(id, type, null), null, null, 0);
+    ji.state = JobState.AVAILABLE;
+    return ji;
+  }
+
+  private List<String> updates(Message<JobUpdatesDTO> msg) {
+    return msg.body().getUpdates().stream().map(u -> u.getJobId() + ":" + u.getState()).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testCoalescesWhileUnacked() throws Exception {
+    JobItem a1 = newJob("a1", "A");
+    onContext(() -> {
+      index.put(a1);
+      subscriptions.subscribe(JobSubscriptionDTO.forJobType("A").setSubscriberAddr("subscriber")
+          .setBatchMillis(10).setMaxUnackedBatches(1), index);
+      index.put(newJob("b1", "B"));
+    });
+    Message<JobUpdatesDTO> msg = received.poll(5, TimeUnit.SECONDS);
+    assertEquals("[a1:AVAILABLE]", updates(msg).toString());
+
+    onContext(() -> {
+      index.setState(a1, JobState.STARTED);
+      index.setState(a1, JobState.DONE);
+      index.put(newJob("a2", "A"));
+    });
+    assertNull(received.poll(200, TimeUnit.MILLISECONDS)); // no credits until first batch is acked
+
+    msg.reply(null);
+    msg = received.poll(5, TimeUnit.SECONDS);
+    assertEquals("[a1:DONE, a2:AVAILABLE]", updates(msg).toString());
+
+    msg.reply(null);
+    onContext(() -> index.remove("a2"));
+    assertEquals("[a2:REMOVED]", updates(received.poll(5, TimeUnit.SECONDS)).toString());
+  }
+
+  @Test
+  public void testJobIdsAndMaxBatchSize() throws Exception {
+    onContext(() -> {
+      subscriptions.subscribe(JobSubscriptionDTO.forJobIds(Arrays.asList("a1", "a2", "a3"))
+          .setSubscriberAddr("subscriber").setBatchMillis(60000).setMaxBatchSize(2), index);
+      index.put(newJob("a1", "A"));
+      index.put(newJob("x1", "A"));
+      index.put(newJob("a2", "A")); // fills the batch before the timer fires
+      index.put(newJob("a3", "A"));
+    });
+    assertEquals("[a1:AVAILABLE, a2:AVAILABLE]", updates(received.poll(5, TimeUnit.SECONDS)).toString());
+    assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+
+    onContext(() -> assertTrue(subscriptions.unsubscribe("subscriber")));
+    onContext(() -> index.setState(index.get("a1"), JobState.DONE));
+    assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testExtendAndDropRemovedJobs() throws Exception {
+    onContext(() -> {
+      index.put(newJob("a1", "A"));
+      index.put(newJob("b1", "A"));
+      subscriptions.subscribe(JobSubscriptionDTO.forJobIds(Arrays.asList("a1")).setSubscriberAddr("subscriber")
+          .setBatchMillis(10), index);
+    });
+    Message<JobUpdatesDTO> msg = received.poll(5, TimeUnit.SECONDS);
+    assertEquals("[a1:AVAILABLE]", updates(msg).toString());
+    msg.reply(null);
+
+    onContext(() -> {
+      assertTrue(subscriptions.extend(JobSubscriptionDTO.forJobIds(Arrays.asList("b1", "c1"))
+          .setSubscriberAddr("subscriber"), index));
+      assertFalse(subscriptions.extend(JobSubscriptionDTO.forJobIds(Arrays.asList("b1"))
+          .setSubscriberAddr("unknown"), index));
+    });
+    msg = received.poll(5, TimeUnit.SECONDS);
+    assertEquals("[b1:AVAILABLE]", updates(msg).toString()); // c1 is not on the board yet
+    msg.reply(null);
+
+    onContext(() -> {
+      index.put(newJob("c1", "A"));
+      index.remove("a1");
+    });
+    msg = received.poll(5, TimeUnit.SECONDS);
+    assertEquals("[c1:AVAILABLE, a1:REMOVED]", updates(msg).toString());
+    msg.reply(null);
+
+    onContext(() -> index.put(newJob("a1", "A"))); // removed job id was dropped from the subscription
+    assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+  }
+}
@@ -0,0 +1,90 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Verticle;
+import io.vertx.core.Vertx;
+
+/**
+ * Deploys a JobBoard, JobProducer, and JobConsumers on a fresh Vertx for each test.
+ */
+abstract class JobBoardVertxTestBase {
+
+  Vertx vertx;
+  String svcType;
+  String boardAddr;
+
+  @Before
+  public void setUpVertx() throws Exception {
+    vertx = Vertx.vertx();
+    svcType = getClass().getSimpleName() + System.nanoTime();
+    boardAddr = svcType + "-board";
+  }
+
+  @After
+  public void tearDownVertx() throws Exception {
+    CountDownLatch closed = new CountDownLatch(1);
+    vertx.close(res -> closed.countDown());
+    closed.await(10, TimeUnit.SECONDS);
+  }
+
+  void deploy(Verticle verticle, DeploymentOptions options) throws InterruptedException {
+    CountDownLatch deployed = new CountDownLatch(1);
+    vertx.deployVerticle(verticle, options, res -> {
+      if (res.succeeded())
+        deployed.countDown();
+    });
+    assertTrue("Could not deploy " + verticle.getClass().getSimpleName(), deployed.await(10, TimeUnit.SECONDS));
+  }
+
+  JobBoard deployBoard(Consumer<JobBoard> config) throws InterruptedException {
+    JobBoard board = new JobBoard(svcType, boardAddr);
+    config.accept(board);
+    deploy(board, new DeploymentOptions());
+    return board;
+  }
+
+  JobConsumer deployConsumer(String jobType, JobWorker worker, Consumer<JobConsumer> config)
+      throws InterruptedException {
+    JobConsumer consumer = new JobConsumer(svcType, jobType);
+    consumer.setWorker(worker);
+    config.accept(consumer);
+    deploy(consumer, new DeploymentOptions().setWorker(true));
+    return consumer;
+  }
+
+  JobProducer deployProducer() throws InterruptedException {
+    JobProducer producer = new JobProducer(svcType);
+    deploy(producer, new DeploymentOptions());
+    producer.getJobBoardPrefix(); // waits for the JobBoard
+    return producer;
+  }
+
+  JobBoardStatsDTO getStats() throws InterruptedException {
+    BlockingQueue<JobBoardStatsDTO> stats = new LinkedBlockingQueue<>();
+    vertx.eventBus().<JobBoardStatsDTO>send(boardAddr + JobBoard.BUS_ADDR.GET_STATS, null,
+        reply -> stats.add(reply.result().body()));
+    return stats.poll(5, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Waits for workerCount consumers to register.
+   */
+  void awaitWorkers(int workerCount) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (getStats().getKnownWorkers() < workerCount) {
+      assertTrue("Workers did not register", System.currentTimeMillis() < deadline);
+      Thread.sleep(50);
+    }
+  }
+}
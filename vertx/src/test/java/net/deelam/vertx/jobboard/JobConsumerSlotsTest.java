@@ -0,0 +1,51 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import net.deelam.vertx.jobboard.JobBoard.JobItem.JobState;
+
+public class JobConsumerSlotsTest extends JobBoardVertxTestBase {
+
+  @Test
+  public void testSlotsRunJobsConcurrentlyAndPrefetch() throws Exception {
+    deployBoard(board -> {});
+
+    BlockingQueue<String> started = new LinkedBlockingQueue<>();
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch allDone = new CountDownLatch(3);
+    deployConsumer("A", job -> {
+      started.add(job.getId());
+      release.await();
+      allDone.countDown();
+      return true;
+    }, consumer -> {
+      consumer.setSlots(2);
+      consumer.setPrefetch(1);
+    });
+    JobProducer producer = deployProducer();
+    awaitWorkers(1);
+
+    producer.addJobs(Arrays.asList(new JobDTO("j1", "A", null), new JobDTO("j2", "A", null),
+        new JobDTO("j3", "A", null)));
+    // both slots run a job while neither has finished
+    assertNotNull(started.poll(5, TimeUnit.SECONDS));
+    assertNotNull(started.poll(5, TimeUnit.SECONDS));
+    assertNull(started.poll(500, TimeUnit.MILLISECONDS));
+    // the third job is assigned to the consumer and waits for a free slot
+    assertEquals(Integer.valueOf(3), getStats().getJobCounts().get(JobState.STARTED.name()));
+
+    release.countDown();
+    assertTrue("Jobs did not complete", allDone.await(5, TimeUnit.SECONDS));
+  }
+}
@@ -1,9 +1,14 @@
 package net.deelam.vertx.jobboard;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.After;
 import org.junit.Before;
@@ -68,6 +73,24 @@ public class JobDTOTest {
     JobDTO decObj = codec.decodeFromWire(0, buffer);
     assertEquals(obj, decObj);
   }
-  
+
+  private static String contentKey(Object request) {
+    return new JobDTO("job1", "type1", request).contentKeyFromRequest().getContentKey();
+  }
+
+  @Test
+  public void testContentKeyIgnoresIterationOrder() {
+    Map<String, Object> request1 = new LinkedHashMap<>();
+    request1.put("a", new LinkedHashSet<>(Arrays.asList("x", "y")));
+    request1.put("b", 1);
+    Map<String, Object> request2 = new LinkedHashMap<>();
+    request2.put("b", 1);
+    request2.put("a", new LinkedHashSet<>(Arrays.asList("y", "x")));
+    assertEquals(contentKey(request1), contentKey(request2));
+
+    request2.put("b", 2);
+    assertNotEquals(contentKey(request1), contentKey(request2));
+    assertNotEquals(contentKey(Arrays.asList("x", "y")), contentKey(Arrays.asList("y", "x")));
+  }
 
 }
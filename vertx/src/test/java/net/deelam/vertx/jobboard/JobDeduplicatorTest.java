@@ -0,0 +1,80 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import net.deelam.vertx.jobboard.JobBoard.JobItem;
+
+public class JobDeduplicatorTest {
+
+  JobDeduplicator dedup = new JobDeduplicator(2, 1000);
+
+  private static JobItem job(String id, String contentKey) {
+    return new JobItem(new JobDTO(id, "A", null).setContentKey(contentKey), null, null, 0);
+  }
+
+  @Test
+  public void testFollowersEndWithLeader() {
+    JobItem j1 = job("j1", "k");
+    JobItem j2 = job("j2", "k");
+    JobItem j3 = job("j3", "k");
+    assertNull(dedup.addJob(j1));
+    assertSame(j1, dedup.addJob(j2));
+    assertSame(j1, dedup.addJob(j3));
+    assertNull(dedup.addJob(job("other", "k2")));
+
+    assertEquals(Arrays.asList(j2, j3), dedup.leaderEnded(j1, true, 100));
+    assertTrue(dedup.leaderEnded(j1, true, 100).isEmpty());
+    assertTrue(dedup.isCompleted("k", 1100));
+    assertFalse(dedup.isCompleted("k", 1101)); // expired
+    assertFalse(dedup.isCompleted("k", 100));
+  }
+
+  @Test
+  public void testFailedLeaderIsNotCached() {
+    JobItem j1 = job("j1", "k");
+    dedup.addJob(j1);
+    assertTrue(dedup.leaderEnded(j1, false, 100).isEmpty());
+    assertFalse(dedup.isCompleted("k", 100));
+    assertNull(dedup.addJob(job("j2", "k"))); // becomes the new leader
+  }
+
+  @Test
+  public void testRemovedLeaderIsReplacedByFollower() {
+    JobItem j1 = job("j1", "k");
+    JobItem j2 = job("j2", "k");
+    JobItem j3 = job("j3", "k");
+    dedup.addJob(j1);
+    dedup.addJob(j2);
+    dedup.addJob(j3);
+
+    assertNull(dedup.jobRemoved(j3)); // follower
+    assertSame(j2, dedup.jobRemoved(j1));
+    assertTrue(dedup.leaderEnded(j2, true, 100).isEmpty());
+    assertEquals(0, dedup.leaderCount());
+  }
+
+  @Test
+  public void testCacheEvictsLeastRecentlyUsed() {
+    for (String key : new String[] {"k1", "k2"}) {
+      JobItem ji = job(key, key);
+      dedup.addJob(ji);
+      dedup.leaderEnded(ji, true, 0);
+    }
+    assertTrue(dedup.isCompleted("k1", 0)); // k2 is now least recently used
+    JobItem ji = job("k3", "k3");
+    dedup.addJob(ji);
+    dedup.leaderEnded(ji, true, 0);
+
+    assertTrue(dedup.isCompleted("k1", 0));
+    assertFalse(dedup.isCompleted("k2", 0));
+    assertTrue(dedup.isCompleted("k3", 0));
+  }
+}
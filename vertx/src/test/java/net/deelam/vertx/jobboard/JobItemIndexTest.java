@@ -0,0 +1,117 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.deelam.vertx.jobboard.JobBoard.JobItem;
+import net.deelam.vertx.jobboard.JobBoard.JobItem.JobState;
+
+public class JobItemIndexTest {
+
+  JobItemIndex index;
+
+  @Before
+  public void setUp() throws Exception {
+    index = new JobItemIndex();
+  }
+
+  private JobItem addJob(String id, String type) {
+    JobItem ji = new JobItem(new JobDTO(id, type, null), null, null, 0);
+    ji.state = JobState.AVAILABLE;
+    index.put(ji);
+    return ji;
+  }
+
+  private List<String> availableIds(String type) {
+    return index.getAvailableJobs(type).stream().map(JobItem::getId).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testAvailableByType() {
+    addJob("a1", "A");
+    addJob("b1", "B");
+    addJob("a2", "A");
+
+    assertEquals(3, index.count(JobState.AVAILABLE));
+    assertEquals("[a1, a2]", availableIds("A").toString());
+    assertEquals("[b1]", availableIds("B").toString());
+    assertEquals("[a1, b1, a2]", availableIds(null).toString());
+    assertTrue(availableIds("C").isEmpty());
+    assertEquals(2, index.count("A", JobState.AVAILABLE));
+    assertEquals(0, index.count("C", JobState.AVAILABLE));
+  }
+
+  @Test
+  public void testSetState() {
+    JobItem a1 = addJob("a1", "A");
+    addJob("a2", "A");
+
+    index.setState(a1, JobState.STARTED);
+    assertEquals("[a2]", availableIds("A").toString());
+    assertEquals(1, index.count(JobState.STARTED));
+
+    index.setState(a1, JobState.DONE);
+    assertEquals(0, index.count(JobState.STARTED));
+    assertEquals(1, index.count(JobState.DONE));
+    assertEquals(1, index.count("A", JobState.DONE));
+    assertEquals(1, index.count("A", JobState.AVAILABLE));
+
+    index.setState(a1, JobState.AVAILABLE);
+    assertEquals("[a2, a1]", availableIds("A").toString());
+    assertEquals(0, index.count(JobState.DONE));
+  }
+
+  @Test
+  public void testPriorityAndDeadline() {
+    addJob("a1", "A");
+    JobItem a2 = addJob("a2", "A");
+    JobItem a3 = new JobItem(new JobDTO("a3", "A", null).setPriority(5), null, null, 0);
+    a3.state = JobState.AVAILABLE;
+    index.put(a3);
+    JobItem a4 = new JobItem(new JobDTO("a4", "A", null).setDeadline(2000L), null, null, 0);
+    a4.state = JobState.AVAILABLE;
+    index.put(a4);
+    JobItem a5 = new JobItem(new JobDTO("a5", "A", null).setDeadline(1000L), null, null, 0);
+    a5.state = JobState.AVAILABLE;
+    index.put(a5);
+    assertEquals("[a3, a5, a4, a1, a2]", availableIds("A").toString());
+
+    index.setState(a2, JobState.STARTED);
+    index.setState(a3, JobState.STARTED);
+    assertEquals("[a5, a4, a1]", availableIds("A").toString());
+
+    // job made available again goes after jobs of equal priority and deadline
+    index.setState(a2, JobState.AVAILABLE);
+    index.setState(a3, JobState.AVAILABLE);
+    assertEquals("[a3, a5, a4, a1, a2]", availableIds("A").toString());
+  }
+
+  @Test
+  public void testReplaceAndRemove() {
+    JobItem a1 = addJob("a1", "A");
+    index.setState(a1, JobState.FAILED);
+
+    JobItem a1Again = addJob("a1", "A");
+    assertEquals(1, index.size());
+    assertEquals(0, index.count(JobState.FAILED));
+    assertEquals(a1Again, index.get("a1"));
+
+    // replaced JobItem is no longer indexed
+    index.setState(a1, JobState.DONE);
+    assertEquals(0, index.count(JobState.DONE));
+
+    index.remove("a1");
+    assertNull(index.get("a1"));
+    assertEquals(0, index.count(JobState.AVAILABLE));
+    assertTrue(availableIds("A").isEmpty());
+    assertTrue(index.getJobTypes().isEmpty());
+  }
+
+}
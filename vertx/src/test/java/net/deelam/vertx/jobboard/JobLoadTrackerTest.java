@@ -0,0 +1,55 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.deelam.vertx.jobboard.JobBoard.JobItem;
+import net.deelam.vertx.jobboard.JobBoard.JobItem.JobState;
+
+public class JobLoadTrackerTest {
+
+  JobItemIndex index;
+  JobLoadTracker tracker;
+
+  @Before
+  public void setUp() throws Exception {
+    index = new JobItemIndex();
+    tracker = new JobLoadTracker(0.5, 0);
+    index.addListener(tracker);
+  }
+
+  private void addJobs(String prefix, int count) {
+    for (int i = 0; i < count; ++i) {
+      JobItem ji = new JobItem(new JobDTO(prefix + i, "A", null), null, null, 0);
+      ji.state = JobState.AVAILABLE;
+      index.put(ji);
+    }
+  }
+
+  @Test
+  public void testRates() {
+    addJobs("a", 20);
+    index.setState(index.get("a0"), JobState.STARTED);
+    index.setState(index.get("a0"), JobState.DONE);
+    index.setState(index.get("a1"), JobState.FAILED);
+    tracker.sample(2000);
+    assertEquals(10.0, tracker.arrivalRate("A"), 1e-9);
+    assertEquals(1.0, tracker.drainRate("A"), 1e-9);
+
+    // smoothed with the previous interval
+    addJobs("b", 2);
+    for (int i = 2; i < 8; ++i)
+      index.setState(index.get("a" + i), JobState.DONE);
+    tracker.sample(3000);
+    assertEquals(0.5 * 2 + 0.5 * 10, tracker.arrivalRate("A"), 1e-9);
+    assertEquals(0.5 * 6 + 0.5 * 1, tracker.drainRate("A"), 1e-9);
+
+    index.remove("a9"); // removed jobs did not drain
+    tracker.sample(4000);
+    assertEquals(0.5 * 6, tracker.arrivalRate("A"), 1e-9);
+    assertEquals(0.5 * 3.5, tracker.drainRate("A"), 1e-9);
+    assertEquals(0.0, tracker.arrivalRate("B"), 1e-9);
+  }
+}
@@ -0,0 +1,50 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+import io.vertx.core.DeploymentOptions;
+import net.deelam.vertx.jobboard.JobBoardShards.ShardBy;
+
+public class JobProducerShardsTest extends JobBoardVertxTestBase {
+
+  @Test
+  public void testJobsAddedBeforeShardsAreFound() throws Exception {
+    JobBoardShards shards = new JobBoardShards(svcType, 2, ShardBy.JOB_ID);
+    JobProducer producer = new JobProducer(svcType);
+    producer.setShards(shards);
+    deploy(producer, new DeploymentOptions());
+    BlockingQueue<String> completed = new LinkedBlockingQueue<>();
+    producer.addJobCompletionHandler(msg -> completed.add(msg.body().getId()));
+
+    // sends are queued on the producer's event-loop until each shard's JobBoard is found
+    List<JobDTO> jobs = new ArrayList<>();
+    for (int i = 0; i < 4; ++i)
+      jobs.add(new JobDTO("job" + i, "A", null));
+    producer.addJobs(jobs);
+    BlockingQueue<String> states = new LinkedBlockingQueue<>();
+    producer.getProgress("job0", reply -> states.add(JobBoard.getJobState(reply.result())));
+
+    for (int i = 0; i < 2; ++i)
+      deploy(new JobBoard(shards.getShardServiceType(i), boardAddr + i), new DeploymentOptions());
+    deployConsumer("A", job -> true, consumer -> consumer.setShards(shards));
+
+    assertNotNull(states.poll(10, TimeUnit.SECONDS));
+    Set<String> completedIds = new HashSet<>();
+    for (int i = 0; i < 4; ++i)
+      completedIds.add(completed.poll(10, TimeUnit.SECONDS));
+    assertEquals(ImmutableSet.of("job0", "job1", "job2", "job3"), completedIds);
+  }
+}
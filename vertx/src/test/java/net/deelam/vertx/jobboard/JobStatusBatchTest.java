@@ -0,0 +1,68 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+public class JobStatusBatchTest extends JobBoardVertxTestBase {
+
+  private static List<JobDTO> jobs(String... ids) {
+    List<JobDTO> jobs = new ArrayList<>();
+    for (String id : ids)
+      jobs.add(new JobDTO(id, "A", null));
+    return jobs;
+  }
+
+  private static Set<String> poll(BlockingQueue<String> ids, int count) throws InterruptedException {
+    Set<String> polled = new HashSet<>();
+    for (int i = 0; i < count; ++i) {
+      String id = ids.poll(5, TimeUnit.SECONDS);
+      if (id == null)
+        break;
+      polled.add(id);
+    }
+    return polled;
+  }
+
+  @Test
+  public void testBatchedStatusesNotifyProducer() throws Exception {
+    deployBoard(board -> {});
+    deployConsumer("A", job -> !job.getId().startsWith("fail"), consumer -> {
+      consumer.setSlots(2);
+      consumer.setStatusBatchWindow(100);
+    });
+    JobProducer producer = deployProducer();
+    BlockingQueue<String> completed = new LinkedBlockingQueue<>();
+    BlockingQueue<String> failed = new LinkedBlockingQueue<>();
+    producer.addJobCompletionHandler(msg -> completed.add(msg.body().getId()));
+    producer.addJobFailureHandler(msg -> failed.add(msg.body().getId()));
+    awaitWorkers(1);
+
+    producer.addJobs(jobs("j1", "j2", "j3", "fail1"));
+    assertEquals(ImmutableSet.of("j1", "j2", "j3"), poll(completed, 3));
+    assertEquals(ImmutableSet.of("fail1"), poll(failed, 1));
+  }
+
+  @Test
+  public void testBatchedStatusesNotifyProducerInBatches() throws Exception {
+    deployBoard(board -> board.batchNotifications(100, 10));
+    deployConsumer("A", job -> true, consumer -> consumer.setStatusBatchWindow(100));
+    JobProducer producer = deployProducer();
+    BlockingQueue<String> completed = new LinkedBlockingQueue<>();
+    producer.addJobCompletionBatchHandler(msg -> msg.body().getJobs().forEach(job -> completed.add(job.getId())));
+    awaitWorkers(1);
+
+    producer.addJobs(jobs("j1", "j2", "j3"));
+    assertEquals(ImmutableSet.of("j1", "j2", "j3"), poll(completed, 3));
+  }
+}
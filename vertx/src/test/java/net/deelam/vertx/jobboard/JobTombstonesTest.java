@@ -0,0 +1,69 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.deelam.vertx.jobboard.JobBoard.JobItem;
+import net.deelam.vertx.jobboard.JobBoard.JobItem.JobState;
+import net.deelam.vertx.jobboard.JobTombstones.Tombstone;
+
+public class JobTombstonesTest {
+
+  private static JobItem finishedJob(String id, JobState state, long finishedTime) {
+    JobItem ji = new JobItem(new JobDTO(id, "A", null), null, null, 0);
+    ji.state = state;
+    ji.finishedTime = finishedTime;
+    return ji;
+  }
+
+  @Test
+  public void testGet() {
+    JobTombstones tombstones = new JobTombstones(4);
+    tombstones.add(finishedJob("j1", JobState.DONE, 100));
+    tombstones.add(finishedJob("j2", JobState.FAILED, 200));
+
+    Tombstone t = tombstones.get("j2");
+    assertEquals("A", t.getJobType());
+    assertEquals(JobState.FAILED, t.getState());
+    assertEquals(200, t.getFinishedTime());
+    assertEquals(JobState.DONE, tombstones.get("j1").getState());
+    assertNull(tombstones.get("j3"));
+  }
+
+  @Test
+  public void testOverwritesOldest() {
+    JobTombstones tombstones = new JobTombstones(3);
+    for (int i = 0; i < 5; ++i)
+      tombstones.add(finishedJob("j" + i, JobState.DONE, i));
+    assertEquals(3, tombstones.size());
+    assertNull(tombstones.get("j0"));
+    assertNull(tombstones.get("j1"));
+    assertEquals(4, tombstones.get("j4").getFinishedTime());
+  }
+
+  @Test
+  public void testRemove() {
+    JobTombstones tombstones = new JobTombstones(1000);
+    for (int i = 0; i < 1000; ++i)
+      tombstones.add(finishedJob("j" + i, JobState.DONE, i));
+    for (int i = 0; i < 1000; i += 2)
+      assertTrue(tombstones.remove("j" + i));
+    assertFalse(tombstones.remove("j0"));
+    assertEquals(500, tombstones.size());
+    // remaining entries are still found after entries before them in their probe sequence were removed
+    for (int i = 0; i < 1000; ++i)
+      assertEquals("j" + i, (i % 2 == 0), tombstones.get("j" + i) == null);
+
+    // slots are reused in order, so removed slots are filled and the oldest remaining entries are overwritten
+    for (int i = 1000; i < 1600; ++i)
+      tombstones.add(finishedJob("j" + i, JobState.DONE, i));
+    assertEquals(800, tombstones.size());
+    assertNull(tombstones.get("j599"));
+    assertEquals(601, tombstones.get("j601").getFinishedTime());
+    assertEquals(1599, tombstones.get("j1599").getFinishedTime());
+  }
+}
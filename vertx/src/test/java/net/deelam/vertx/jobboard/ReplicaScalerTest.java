@@ -0,0 +1,73 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReplicaScalerTest {
+
+  int started, stopped;
+  ReplicaScaler scaler;
+
+  @Before
+  public void setUp() throws Exception {
+    started = stopped = 0;
+    scaler = new ReplicaScaler("A", 1, 3) {
+      @Override
+      protected void startReplica() {
+        ++started;
+      }
+
+      @Override
+      protected void stopReplica() {
+        ++stopped;
+      }
+    }.setCooldownMillis(0).setIdleIntervals(2).setBacklogPerWorker(10);
+  }
+
+  private void signal(int backlog, int workers, int idleWorkers, double arrivalRate, double drainRate) {
+    scaler.scale(new ScalingSignal("A", backlog, workers - idleWorkers, workers, idleWorkers, arrivalRate, drainRate));
+  }
+
+  @Test
+  public void testScaling() {
+    scaler.scale(new ScalingSignal("B", 100, 0, 0, 0, 10, 0)); // other job type
+    assertEquals(0, scaler.getReplicas());
+    signal(0, 0, 0, 0, 0);
+    assertEquals(1, scaler.getReplicas()); // minReplicas
+
+    signal(5, 1, 0, 1, 2); // draining faster than arriving
+    assertEquals(1, scaler.getReplicas());
+    signal(5, 1, 0, 3, 2); // growing backlog
+    assertEquals(2, scaler.getReplicas());
+    signal(30, 2, 0, 2, 2); // large backlog
+    assertEquals(3, scaler.getReplicas());
+    signal(40, 3, 0, 5, 2);
+    assertEquals(3, scaler.getReplicas()); // maxReplicas
+    signal(40, 3, 1, 5, 2); // idle worker may not be able to do the jobs
+    assertEquals(3, scaler.getReplicas());
+
+    signal(0, 3, 1, 0, 2);
+    assertEquals(3, scaler.getReplicas());
+    signal(0, 3, 1, 0, 2);
+    assertEquals(2, scaler.getReplicas()); // idle for idleIntervals
+    signal(0, 2, 2, 0, 0);
+    signal(0, 2, 2, 0, 0);
+    signal(0, 1, 1, 0, 0);
+    signal(0, 1, 1, 0, 0);
+    assertEquals(1, scaler.getReplicas()); // minReplicas
+    assertEquals(3, started);
+    assertEquals(2, stopped);
+  }
+
+  @Test
+  public void testCooldown() {
+    scaler.setCooldownMillis(60000);
+    scaler.start();
+    signal(50, 1, 0, 5, 1);
+    assertEquals(2, scaler.getReplicas());
+    signal(50, 2, 0, 5, 1);
+    assertEquals(2, scaler.getReplicas());
+  }
+}
@@ -0,0 +1,33 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+  @Test
+  public void testExponentialBackoff() {
+    RetryPolicy policy = RetryPolicy.exponentialBackoff(100, 1000).setJitter(0);
+    Random random = new Random(1);
+    assertEquals(100, policy.delayMillis(1, random));
+    assertEquals(200, policy.delayMillis(2, random));
+    assertEquals(800, policy.delayMillis(4, random));
+    assertEquals(1000, policy.delayMillis(5, random));
+    assertEquals(1000, policy.delayMillis(50, random));
+  }
+
+  @Test
+  public void testJitter() {
+    RetryPolicy policy = RetryPolicy.exponentialBackoff(1000, 10000).setJitter(0.5);
+    Random random = new Random(1);
+    for (int i = 0; i < 100; ++i) {
+      long delay = policy.delayMillis(2, random);
+      assertTrue("delay=" + delay, delay > 1000 && delay <= 2000);
+    }
+  }
+
+}
@@ -0,0 +1,103 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class SerialInboxTest {
+
+  SerialInbox inbox = new SerialInbox();
+
+  // only modified by the inbox's operations
+  int count = 0;
+  Map<Integer, List<Integer>> seen = new HashMap<>();
+
+  @Test
+  public void testSingleWriter() throws Exception {
+    int threads = 8, ops = 10000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    for (int t = 0; t < threads; ++t) {
+      int thread = t;
+      executor.execute(() -> {
+        for (int i = 0; i < ops; ++i) {
+          int op = i;
+          inbox.tell(() -> {
+            ++count;
+            seen.computeIfAbsent(thread, k -> new ArrayList<>()).add(op);
+          });
+        }
+      });
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+    assertEquals(threads * ops, (int) SerialInbox.await(inbox.ask(() -> count)));
+    for (List<Integer> opsOfThread : seen.values()) {
+      assertEquals(ops, opsOfThread.size());
+      for (int i = 0; i < ops; ++i)
+        assertEquals(i, (int) opsOfThread.get(i)); // in submission order
+    }
+  }
+
+  @Test
+  public void testAskFromOperation() {
+    List<String> order = new ArrayList<>();
+    inbox.tell(() -> {
+      order.add("outer");
+      order.add(SerialInbox.await(inbox.ask(() -> "asked"))); // runs immediately
+      inbox.tell(() -> order.add("told")); // runs after this operation
+      order.add("end");
+    });
+    assertEquals("[outer, asked, end, told]", order.toString());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testFailedOperation() {
+    CompletableFuture<Object> result = inbox.ask(() -> {
+      throw new IllegalStateException();
+    });
+    assertTrue(result.isCompletedExceptionally());
+    inbox.tell(() -> {
+      throw new IllegalArgumentException(); // logged
+    });
+    assertEquals(1, (int) SerialInbox.await(inbox.ask(() -> 1)));
+    SerialInbox.await(result);
+  }
+
+  @Test
+  public void testError() {
+    assertThrowsError(() -> inbox.tell(() -> {
+      throw new AssertionError(); // rethrown after the inbox is drained
+    }));
+    assertEquals(42, (int) SerialInbox.await(inbox.ask(() -> 42)));
+
+    // asked from another thread while this thread runs operations
+    List<CompletableFuture<Object>> results = new ArrayList<>();
+    assertThrowsError(() -> inbox.tell(() -> results.add(CompletableFuture.supplyAsync(() -> inbox.ask(() -> {
+      throw new AssertionError();
+    })).join())));
+    assertTrue(results.get(0).isCompletedExceptionally());
+    assertThrowsError(() -> SerialInbox.await(results.get(0)));
+    assertEquals(42, (int) SerialInbox.await(inbox.ask(() -> 42)));
+  }
+
+  private static void assertThrowsError(Runnable r) {
+    try {
+      r.run();
+    } catch (AssertionError e) {
+      return;
+    }
+    fail();
+  }
+}
@@ -0,0 +1,25 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class SpeculationPolicyTest {
+
+  @Test
+  public void testStragglerMillis() {
+    SpeculationPolicy policy = SpeculationPolicy.pastPercentile(0.95, 2).setMinSamples(100).setMinRuntimeMillis(50);
+    Histogram runtimes = new Histogram();
+    for (int i = 1; i < 100; ++i)
+      runtimes.record(i < 95 ? 5 : 500);
+    assertEquals(-1, policy.stragglerMillis(runtimes)); // too few samples
+
+    runtimes.record(5);
+    assertEquals(50, policy.stragglerMillis(runtimes)); // 2 * p95 is below minRuntimeMillis
+
+    for (int i = 0; i < 100; ++i)
+      runtimes.record(100);
+    assertEquals(2 * runtimes.percentile(0.95), policy.stragglerMillis(runtimes));
+  }
+
+}
@@ -0,0 +1,118 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.deelam.vertx.jobboard.JobBoard.JobItem;
+import net.deelam.vertx.jobboard.JobBoard.JobItem.JobState;
+
+public class TenantSchedulerTest {
+
+  JobItemIndex index;
+  TenantScheduler scheduler;
+
+  @Before
+  public void setUp() throws Exception {
+    index = new JobItemIndex();
+    scheduler = new TenantScheduler();
+    index.addListener(scheduler);
+  }
+
+  private void addJobs(String tenant, int count) {
+    for (int i = 0; i < count; ++i) {
+      JobItem ji = new JobItem(new JobDTO(tenant + i, "A", null), null, null, 0);
+      ji.tenant = tenant;
+      ji.state = JobState.AVAILABLE;
+      index.put(ji);
+    }
+  }
+
+  private List<JobItem> pick(int maxJobs) {
+    return scheduler.pick("A", index.getAvailableJobsByTenant("A"), ji -> ji.offeredTo == null, maxJobs);
+  }
+
+  // picks and starts jobs one at a time, as JobBoard does for workers
+  private String startJobs(int count) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < count; ++i) {
+      List<JobItem> picked = pick(1);
+      if (picked.isEmpty())
+        break;
+      JobItem ji = picked.get(0);
+      scheduler.reserved(ji);
+      index.setState(ji, JobState.STARTED);
+      scheduler.released(ji, true);
+      sb.append(ji.tenant);
+    }
+    return sb.toString();
+  }
+
+  private static String tenants(List<JobItem> jobs) {
+    return jobs.stream().map(ji -> ji.tenant).collect(Collectors.joining());
+  }
+
+  @Test
+  public void testSingleTenantInOfferOrder() {
+    addJobs("a", 3);
+    assertEquals("[a0, a1]", pick(2).stream().map(JobItem::getId).collect(Collectors.toList()).toString());
+  }
+
+  @Test
+  public void testEqualShares() {
+    addJobs("a", 100);
+    addJobs("b", 3);
+    assertEquals("ababab" + "aaaa", startJobs(10));
+  }
+
+  @Test
+  public void testWeights() {
+    scheduler.setTenantShare("a", 3, 0);
+    addJobs("a", 100);
+    addJobs("b", 100);
+    assertEquals("aaab" + "aaab", startJobs(8));
+    assertEquals("aaab" + "aa", tenants(pick(6)));
+  }
+
+  @Test
+  public void testMaxInFlight() {
+    scheduler.setTenantShare("a", 1, 2);
+    addJobs("a", 10);
+    addJobs("b", 3);
+    assertEquals("ababb", startJobs(10)); // a is limited to 2 started jobs
+
+    index.setState(index.get("a0"), JobState.DONE);
+    assertEquals("a", startJobs(10));
+  }
+
+  @Test
+  public void testMaxInFlightSetAfterJobsStarted() {
+    addJobs("a", 10);
+    addJobs("b", 10);
+    assertEquals("abab", startJobs(4));
+
+    scheduler.setTenantShare("a", 1, 2); // a already has 2 started jobs
+    assertEquals("bb", startJobs(2));
+    index.setState(index.get("a0"), JobState.DONE);
+    assertEquals("ab", startJobs(2));
+  }
+
+  @Test
+  public void testUnstartedJobsAreRefunded() {
+    addJobs("a", 10);
+    addJobs("b", 10);
+    List<JobItem> offered = pick(4);
+    assertEquals("abab", tenants(offered));
+    offered.forEach(scheduler::reserved);
+    // worker started only the first job, so the others are refunded and picked again
+    index.setState(offered.get(0), JobState.STARTED);
+    scheduler.released(offered.get(0), true);
+    for (JobItem ji : offered.subList(1, 4))
+      scheduler.released(ji, false);
+    assertEquals("aabb", tenants(pick(4)));
+  }
+}
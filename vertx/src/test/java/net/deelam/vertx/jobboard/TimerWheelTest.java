@@ -0,0 +1,93 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimerWheelTest {
+
+  TimerWheel<String> wheel;
+  List<String> expired;
+
+  @Before
+  public void setUp() throws Exception {
+    wheel = new TimerWheel<>(10, 8, 1000);
+    expired = new ArrayList<>();
+  }
+
+  private List<String> advance(long nowMillis) {
+    expired.clear();
+    wheel.advance(nowMillis, expired::add);
+    Collections.sort(expired);
+    return expired;
+  }
+
+  @Test
+  public void testExpiry() {
+    wheel.schedule("a", 1025);
+    wheel.schedule("b", 1030);
+    wheel.schedule("c", 1500); // beyond one rotation
+    assertEquals(3, wheel.size());
+
+    assertEquals("[]", advance(1020).toString());
+    assertEquals("[a, b]", advance(1030).toString());
+    assertEquals(1, wheel.size());
+    assertEquals("[]", advance(1100).toString());
+    assertEquals("[c]", advance(1500).toString());
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  public void testLongPause() {
+    wheel.schedule("a", 1015);
+    wheel.schedule("b", 1075);
+    wheel.schedule("c", 5000);
+    assertEquals("[a, b]", advance(2000).toString());
+    assertEquals("[c]", advance(6000).toString());
+  }
+
+  @Test
+  public void testPastDeadlineExpiresOnNextTick() {
+    wheel.schedule("a", 500);
+    assertEquals("[]", advance(1005).toString());
+    assertEquals("[a]", advance(1010).toString());
+  }
+
+  @Test
+  public void testCancel() {
+    TimerWheel.Timeout<String> a = wheel.schedule("a", 1020);
+    wheel.schedule("b", 1020); // same bucket
+    TimerWheel.Timeout<String> c = wheel.schedule("c", 1020);
+    assertTrue(wheel.cancel(a));
+    assertFalse(wheel.cancel(a));
+    assertFalse(wheel.cancel(null));
+    assertEquals(2, wheel.size());
+    assertTrue(wheel.cancel(c)); // c was moved into a's place
+    assertEquals("[b]", advance(1020).toString());
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  public void testCancelExpired() {
+    TimerWheel.Timeout<String> a = wheel.schedule("a", 1010);
+    assertEquals("[a]", advance(1010).toString());
+    assertFalse(wheel.cancel(a));
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  public void testRescheduleFromHandler() {
+    wheel.schedule("a", 1010);
+    wheel.advance(1010, item -> wheel.schedule(item, 1050));
+    assertEquals(1, wheel.size());
+    assertEquals("[a]", advance(1050).toString());
+  }
+
+}
@@ -0,0 +1,122 @@
+package net.deelam.vertx.jobboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+
+public class WorkerLocationsTest {
+
+  WorkerLocations locations;
+
+  @Before
+  public void setUp() throws Exception {
+    locations = new WorkerLocations();
+  }
+
+  private static JobDTO job(String... preferredLocations) {
+    return new JobDTO("job1", "A", null).preferLocations(preferredLocations);
+  }
+
+  @Test
+  public void testLocationsFollowRegistrations() {
+    locations.workerAdded("A", "hostA", ImmutableSet.of("graph1", "dir,with,commas"));
+    locations.workerAdded("A", "hostB", ImmutableSet.of("graph1"));
+    locations.workerAdded("B", "hostC", Collections.emptySet());
+    assertEquals(ImmutableSet.of("hostA", "hostB", "graph1", "dir,with,commas"), locations.getLocations("A"));
+
+    locations.workerRemoved("A", "hostA", ImmutableSet.of("graph1", "dir,with,commas"));
+    assertEquals(ImmutableSet.of("hostB", "graph1"), locations.getLocations("A"));
+    locations.workerRemoved("A", "hostB", ImmutableSet.of("graph1"));
+    assertTrue(locations.getLocations("A").isEmpty());
+    assertEquals(ImmutableSet.of("hostC"), locations.getLocations("B"));
+  }
+
+  @Test
+  public void testHoldUntil() {
+    Set<String> noResources = Collections.emptySet();
+    locations.workerAdded("A", "hostA", ImmutableSet.of("graph1"));
+    locations.workerAdded("A", "hostB", noResources);
+
+    // local workers and jobs without preferences are never held
+    assertEquals(0, locations.holdUntil(job("graph1"), 1000, "hostA", ImmutableSet.of("graph1"), 100, 1000));
+    assertEquals(0, locations.holdUntil(job("hostB"), 1000, "hostB", noResources, 100, 1000));
+    assertEquals(0, locations.holdUntil(new JobDTO("job1", "A", null), 1000, "hostB", noResources, 100, 1000));
+
+    // held from non-local workers until localityDelay after the job became available
+    assertEquals(1100, locations.holdUntil(job("graph1"), 1000, "hostB", noResources, 100, 1050));
+    assertEquals(0, locations.holdUntil(job("graph1"), 1000, "hostB", noResources, 100, 1100));
+
+    // not held if no worker is at any of its preferred locations
+    assertEquals(0, locations.holdUntil(job("hostZ"), 1000, "hostB", noResources, 100, 1000));
+    locations.workerRemoved("A", "hostA", ImmutableSet.of("graph1"));
+    assertEquals(0, locations.holdUntil(job("graph1"), 1000, "hostB", noResources, 100, 1050));
+  }
+
+  @Test
+  public void testJobBoardFallsBackToNonLocalWorker() throws Exception {
+    Vertx vertx = Vertx.vertx();
+    try {
+      String svc = "localityTest";
+      JobBoard board = new JobBoard(svc, svc + "-board");
+      board.preferLocalWorkers(300);
+      vertx.deployVerticle(board);
+
+      Map<String, String> ranOn = new ConcurrentHashMap<>();
+      BlockingQueue<String> started = new LinkedBlockingQueue<>();
+      CountDownLatch release = new CountDownLatch(1);
+      for (String host : new String[] {"hostA", "hostB"}) {
+        JobConsumer consumer = new JobConsumer(svc, "A");
+        consumer.setHost(host);
+        if (host.equals("hostA"))
+          consumer.setCachedResources(ImmutableSet.of("graph1"));
+        consumer.setWorker(job -> {
+          ranOn.put(job.getId(), host);
+          started.add(job.getId());
+          if (job.getId().equals("busy"))
+            release.await();
+          return true;
+        });
+        vertx.deployVerticle(consumer, new DeploymentOptions().setWorker(true));
+      }
+      JobProducer producer = new JobProducer(svc);
+      CountDownLatch deployed = new CountDownLatch(1);
+      vertx.deployVerticle(producer, res -> deployed.countDown());
+      deployed.await();
+      producer.getJobBoardPrefix(); // waits for the JobBoard
+      Thread.sleep(500); // for consumers to register
+
+      producer.addJob(new JobDTO("busy", "A", null).preferLocations("graph1"));
+      assertEquals("busy", started.poll(5, TimeUnit.SECONDS));
+      long addTime = System.currentTimeMillis();
+      producer.addJob(new JobDTO("waiting", "A", null).preferLocations("graph1"));
+      assertEquals("waiting", started.poll(5, TimeUnit.SECONDS));
+      assertTrue(System.currentTimeMillis() - addTime >= 250); // held for the busy local worker
+      release.countDown();
+      assertEquals("hostA", ranOn.get("busy"));
+      assertEquals("hostB", ranOn.get("waiting"));
+
+      BlockingQueue<JobBoardStatsDTO> stats = new LinkedBlockingQueue<>();
+      vertx.eventBus().<JobBoardStatsDTO>send(svc + "-board" + JobBoard.BUS_ADDR.GET_STATS, null,
+          reply -> stats.add(reply.result().body()));
+      assertEquals(Long.valueOf(1), stats.poll(5, TimeUnit.SECONDS).getCounters().get("nonLocalStarts"));
+    } finally {
+      vertx.close();
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package net.deelam.zkbasedinit;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Supplier;
+
+import org.apache.curator.framework.CuratorFramework;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import lombok.extern.slf4j.Slf4j;
+import net.deelam.vertx.jobboard.ReplicaScaler;
+
+/**
+ * ReplicaScaler (see JobBoard.setScaler()) that starts copies of a component type configured in ZooKeeper
+ * using ZkComponentTypeStarter, e.g., a component that deploys JobConsumers for jobType.
+ * Copies are named after jobType and are stopped with ZkComponentStopper, which calls the component's stop();
+ * the component should let its running jobs end first (see JobConsumer.drain()).
+ * ZooKeeper is accessed in worker threads rather than the JobBoard's event-loop.
+ * Requires net.deelam:vertx on the classpath.
+ */
+@Slf4j
+public class ZkComponentScaler extends ReplicaScaler {
+  private static final long STOP_RETRY_MILLIS = 1000;
+  private static final int MAX_STOP_RETRIES = 60;
+
+  private final Vertx vertx;
+  private final CuratorFramework client;
+  private final String appPrefix;
+  private final String sourceSubpath;
+  private final Supplier<ComponentI> componentFactory;
+
+  private final Deque<ZkComponentTypeStarter> starters = new ArrayDeque<>();
+
+  /**
+   * @param sourceSubpath component type whose configuration is copied for each replica
+   * @param componentFactory creates the component for each copy
+   */
+  public ZkComponentScaler(Vertx vertx, String jobType, int minReplicas, int maxReplicas,
+      CuratorFramework client, String appPrefix, String sourceSubpath, Supplier<ComponentI> componentFactory) {
+    super(jobType, minReplicas, maxReplicas);
+    this.vertx = vertx;
+    this.client = client;
+    this.appPrefix = appPrefix;
+    this.sourceSubpath = sourceSubpath;
+    this.componentFactory = componentFactory;
+  }
+
+  @Override
+  protected void startReplica() {
+    Context context = vertx.getOrCreateContext();
+    ZkComponentTypeStarter starter = new ZkComponentTypeStarter(client, appPrefix);
+    starter.setExceptionWhileStartingHandler(e -> context.runOnContext(v -> {
+      log.error("Could not start copy of " + sourceSubpath, e);
+      if (starters.remove(starter))
+        replicaFailed();
+    }));
+    starters.add(starter);
+    vertx.<Void>executeBlocking(f -> {
+      try {
+        starter.startWithCopyOf(sourceSubpath, getJobType(), componentFactory.get());
+        f.complete();
+      } catch (Exception e) {
+        f.fail(e);
+      }
+    }, false, res -> {
+      if (res.failed()) {
+        log.error("Could not start copy of " + sourceSubpath, res.cause());
+        if (starters.remove(starter))
+          replicaFailed();
+      }
+    });
+  }
+
+  @Override
+  protected void stopReplica() {
+    ZkComponentTypeStarter starter = starters.pollLast(); // most recently started
+    if (starter != null)
+      stopCopy(starter, 0);
+  }
+
+  private void stopCopy(ZkComponentTypeStarter starter, int retries) {
+    String componentId = starter.getComponentId();
+    if (componentId == null) { // copy's znode has not been created yet
+      if (retries < MAX_STOP_RETRIES) {
+        vertx.setTimer(STOP_RETRY_MILLIS, id -> stopCopy(starter, retries + 1));
+      } else {
+        log.error("Copy of {} was not started after {} retries; not stopping it", sourceSubpath, retries);
+      }
+      return;
+    }
+    vertx.<Boolean>executeBlocking(f -> {
+      try {
+        f.complete(new ZkComponentStopper(client, appPrefix).stop(componentId));
+      } catch (Exception e) {
+        f.fail(e);
+      }
+    }, false, res -> {
+      if (res.failed())
+        log.error("Could not stop " + componentId, res.cause());
+      else
+        log.info("Stopped {}: {}", componentId, res.result());
+    });
+  }
+}